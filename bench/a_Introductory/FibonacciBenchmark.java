@@ -0,0 +1,31 @@
+package a_Introductory;
+
+import benchmark.Harness;
+
+/**
+ * Benchmarks for Fibonacci, against the naive double recursion fib used before.
+ */
+public class FibonacciBenchmark {
+	public static void main(String[] args) throws Exception {
+		Fibonacci cached = new Fibonacci();
+		Fibonacci uncached = new Fibonacci(0);
+		int[] index = new int[1];
+		Harness.measure("Fibonacci.fib", "n=30 mode=recursive", 1, () -> recursive(30));
+		Harness.measure("Fibonacci.fib", "n=30", 1, () -> cached.fib(30));
+		Harness.measure("Fibonacci.fibLong", "n=0..92", 1, () -> cached.fibLong(index[0]++ % 93));
+		for (int n : Harness.sizes("bench.n", "1000,100000")) {
+			Harness.measure("Fibonacci.fibBig", "n=" + n + " memo=off", 1, () -> uncached.fibBig(n).bitLength());
+			Harness.measure("Fibonacci.fibBig", "n=" + n + " memo=on", 1, () -> cached.fibBig(n).bitLength());
+		}
+		Harness.measure("Fibonacci.sequence", "n=1000", 1000, () -> cached.sequence().limit(1000).count());
+	}
+
+	/* The fib this class had before */
+	private static int recursive(int n) {
+		switch (n) {
+			case 0: return 0;
+			case 1: return 1;
+			default: return (recursive(n - 1) + recursive(n - 2));
+		}
+	}
+}
@@ -0,0 +1,66 @@
+package a_Introductory;
+
+import benchmark.Harness;
+
+/**
+ * Benchmarks for Point and Vector2D arithmetic, reporting time and bytes
+ * allocated per million operations. The boxed mode is a copy of the Point
+ * used before its coordinates became primitive.
+ */
+public class PointBenchmark {
+	/* Point as it was, with boxed coordinates */
+	private static class BoxedPoint {
+		Integer x, y;
+
+		BoxedPoint(Integer x, Integer y) {
+			this.x = x;
+			this.y = y;
+		}
+
+		BoxedPoint add(BoxedPoint p) {
+			return new BoxedPoint(x + p.x, y + p.y);
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		Point[] points = new Point[1024];
+		BoxedPoint[] boxed = new BoxedPoint[1024];
+		/* Each point is followed by its negation, so running sums stay small; Point arithmetic throws on overflow */
+		for (int i = 0; i < points.length; i++) {
+			int sign = (i & 1) == 0 ? 1 : -1;
+			points[i] = new Point(sign * (1000 + (i & ~1)), sign * (2000 - (i & ~1)));
+			boxed[i] = new BoxedPoint(points[i].x, points[i].y);
+		}
+		int[] index = new int[1];
+
+		/* Sums kept in arrays so that escape analysis cannot drop them */
+		BoxedPoint[] boxedSum = { new BoxedPoint(0, 0) };
+		run("Point.add", "mode=boxed", () -> {
+			boxedSum[0] = boxedSum[0].add(boxed[index[0]++ & 1023]);
+			return boxedSum[0].x;
+		});
+		Point[] sum = { new Point(0, 0) };
+		run("Point.add", "mode=primitive", () -> {
+			sum[0] = sum[0].add(points[index[0]++ & 1023]);
+			return sum[0].x;
+		});
+		run("Point.add", "mode=in-place", () -> {
+			return sum[0].addInPlace(points[index[0]++ & 1023]).x;
+		});
+
+		run("Vector2D.dotProduct", "mode=new", () -> {
+			int i = index[0]++ & 1023;
+			return new Vector2D(points[i], points[(i + 1) & 1023]).dotProductLong(new Vector2D(points[(i + 2) & 1023], points[(i + 3) & 1023]));
+		});
+		Vector2D v = new Vector2D(0, 0), w = new Vector2D(0, 0);
+		run("Vector2D.dotProduct", "mode=in-place", () -> {
+			int i = index[0]++ & 1023;
+			return v.set(points[i], points[(i + 1) & 1023]).dotProductLong(w.set(points[(i + 2) & 1023], points[(i + 3) & 1023]));
+		});
+	}
+
+	private static void run(String benchmark, String params, Harness.Operation operation) throws Exception {
+		Harness.measure(benchmark, params, 1, operation);
+		Harness.allocations(benchmark, params, operation);
+	}
+}
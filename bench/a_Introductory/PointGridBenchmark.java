@@ -0,0 +1,97 @@
+package a_Introductory;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import benchmark.Harness;
+
+/**
+ * Benchmarks for PointGrid against a linear scan over an array of Points,
+ * for range queries over a box about 1/10000 of the area and for the 10
+ * nearest neighbours, on uniformly random points.
+ *
+ * System properties: bench.points (point counts, default 1000000,10000000;
+ * 10M needs a heap of a few GB, e.g. -Xmx4g).
+ */
+public class PointGridBenchmark {
+	private static final int SPAN = 1 << 24, BOX = SPAN / 100, K = 10;
+
+	public static void main(String[] args) throws Exception {
+		for (int points : Harness.sizes("bench.points", "1000000,10000000")) {
+			run(points);
+		}
+	}
+
+	private static void run(int n) throws Exception {
+		String params = "points=" + n;
+		Random random = new Random(42);
+		int[] x = new int[n], y = new int[n];
+		Point[] points = new Point[n];
+		for (int i = 0; i < n; i++) {
+			x[i] = random.nextInt(SPAN);
+			y[i] = random.nextInt(SPAN);
+			points[i] = new Point(x[i], y[i]);
+		}
+		PointGrid[] grid = new PointGrid[1];
+		Harness.once("PointGrid.of", params, () -> {
+			grid[0] = PointGrid.of(x, y);
+			return grid[0].size();
+		});
+		int[] queries = new int[2048];
+		for (int i = 0; i < queries.length; i++) {
+			queries[i] = random.nextInt(SPAN - BOX);
+		}
+		int[] index = new int[1];
+
+		long[] found = new long[1];
+		Harness.measure("PointGrid.range", params + " mode=grid", 1, () -> {
+			int qx = queries[index[0]++ & 2047], qy = queries[index[0]++ & 2047];
+			return grid[0].range(qx, qy, qx + BOX, qy + BOX, id -> found[0] += id);
+		});
+		Harness.measure("PointGrid.range", params + " mode=scan", 1, () -> {
+			int qx = queries[index[0]++ & 2047], qy = queries[index[0]++ & 2047];
+			int count = 0;
+			for (Point p : points) {
+				if (p.x >= qx && p.x <= qx + BOX && p.y >= qy && p.y <= qy + BOX) {
+					found[0] += p.x;
+					count++;
+				}
+			}
+			return count;
+		});
+
+		Harness.measure("PointGrid.nearest", params + " k=" + K + " mode=grid", 1, () -> {
+			return grid[0].nearest(queries[index[0]++ & 2047], queries[index[0]++ & 2047], K)[0];
+		});
+		Harness.measure("PointGrid.nearest", params + " k=" + K + " mode=scan", 1, () -> {
+			return scanNearest(points, queries[index[0]++ & 2047], queries[index[0]++ & 2047]);
+		});
+
+		Harness.measure("PointGrid.insert+delete", params, 1, () -> {
+			int id = grid[0].insert(queries[index[0]++ & 2047], queries[index[0]++ & 2047]);
+			grid[0].delete(id);
+			return id;
+		});
+	}
+
+	/* The nearest K points by insertion into a sorted array, as a scan over a Point list would */
+	private static int scanNearest(Point[] points, int qx, int qy) {
+		long[] best = new long[K];
+		int[] ids = new int[K];
+		Arrays.fill(best, Long.MAX_VALUE);
+		for (int i = 0; i < points.length; i++) {
+			long dx = points[i].x - qx, dy = points[i].y - qy;
+			long d = dx * dx + dy * dy;
+			if (d < best[K - 1]) {
+				int j = K - 1;
+				for (; j > 0 && best[j - 1] > d; j--) {
+					best[j] = best[j - 1];
+					ids[j] = ids[j - 1];
+				}
+				best[j] = d;
+				ids[j] = i;
+			}
+		}
+		return ids[0];
+	}
+}
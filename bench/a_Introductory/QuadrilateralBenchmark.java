@@ -0,0 +1,75 @@
+package a_Introductory;
+
+import java.util.Random;
+
+import benchmark.Harness;
+
+/**
+ * Benchmarks for Quadrilateral classification, one object at a time and in
+ * batches with QuadrilateralBatch.
+ *
+ * System properties: bench.shapes (batch sizes, default 1024,1048576).
+ */
+public class QuadrilateralBenchmark {
+	public static void main(String[] args) throws Exception {
+		Random random = new Random(42);
+		Quadrilateral[] quads = new Quadrilateral[1024];
+		for (int i = 0; i < quads.length; i++) {
+			if (i % 2 == 0) {
+				/* A square rotated by (dx, dy) */
+				int x = random.nextInt(1000), y = random.nextInt(1000);
+				int dx = random.nextInt(100), dy = random.nextInt(100);
+				quads[i] = new Quadrilateral(new Point(x, y), new Point(x + dx, y + dy),
+						new Point(x + dx - dy, y + dy + dx), new Point(x - dy, y + dx));
+			} else {
+				quads[i] = new Quadrilateral(new Point(random.nextInt(1000), random.nextInt(1000)),
+						new Point(random.nextInt(1000), random.nextInt(1000)),
+						new Point(random.nextInt(1000), random.nextInt(1000)),
+						new Point(random.nextInt(1000), random.nextInt(1000)));
+			}
+		}
+		int[] index = new int[1];
+		object(quads, index);
+		for (int shapes : Harness.sizes("bench.shapes", "1024,1048576")) {
+			batch(shapes, random);
+		}
+	}
+
+	private static void object(Quadrilateral[] quads, int[] index) throws Exception {
+		Harness.measure("Quadrilateral.isSquare", "mix=half-squares", 1, () -> {
+			return quads[index[0]++ & 1023].isSquare() ? 1 : 0;
+		});
+		Harness.measure("Quadrilateral.isRectangle", "mix=half-squares", 1, () -> {
+			return quads[index[0]++ & 1023].isRectangle() ? 1 : 0;
+		});
+	}
+
+	/* The same mix of shapes in coordinate columns, classified with QuadrilateralBatch */
+	private static void batch(int shapes, Random random) throws Exception {
+		int[] x = new int[4 * shapes], y = new int[4 * shapes];
+		for (int i = 0, c = 0; i < shapes; i++, c += 4) {
+			if (i % 2 == 0) {
+				int x0 = random.nextInt(1000), y0 = random.nextInt(1000);
+				int dx = random.nextInt(100), dy = random.nextInt(100);
+				int[] px = { x0, x0 + dx, x0 + dx - dy, x0 - dy };
+				int[] py = { y0, y0 + dy, y0 + dy + dx, y0 + dx };
+				System.arraycopy(px, 0, x, c, 4);
+				System.arraycopy(py, 0, y, c, 4);
+			} else {
+				for (int j = 0; j < 4; j++) {
+					x[c + j] = random.nextInt(1000);
+					y[c + j] = random.nextInt(1000);
+				}
+			}
+		}
+		byte[] kinds = new byte[shapes];
+		Harness.measure("QuadrilateralBatch.classify", "mix=half-squares shapes=" + shapes, shapes, () -> {
+			QuadrilateralBatch.classify(x, y, kinds);
+			return kinds[shapes - 1];
+		});
+		Harness.measure("QuadrilateralBatch.classifyParallel", "mix=half-squares shapes=" + shapes, shapes, () -> {
+			QuadrilateralBatch.classifyParallel(x, y, kinds);
+			return kinds[shapes - 1];
+		});
+	}
+}
@@ -0,0 +1,112 @@
+package b_Money;
+
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+
+import benchmark.Harness;
+
+/**
+ * Benchmarks what account limits cost transfers: Bank.transfer with no
+ * limits, with a floor, and with a floor and a per-tick limit, on one thread
+ * and on threads contending for a small set of shared accounts. The floor is
+ * zero, so the contended runs also reject some transfers; their count is
+ * reported alongside the throughput.
+ *
+ * System properties: bench.threads (thread counts, default 1,2,4,8) and
+ * bench.shared (accounts shared by all threads, default 16).
+ */
+public class AccountLimitsBenchmark {
+	private static final long TIME = Long.getLong("bench.time", 1000);
+	private static final String[] LIMITS = { "none", "floor", "floor+tick" };
+
+	public static void main(String[] args) throws Exception {
+		for (String limits : LIMITS) {
+			transfer(limits);
+		}
+		int shared = Harness.sizes("bench.shared", "16")[0];
+		for (int threads : Harness.sizes("bench.threads", "1,2,4,8")) {
+			for (String limits : LIMITS) {
+				contendedTransfer(threads, shared, limits);
+			}
+		}
+	}
+
+	/**
+	 * Sets the named limits on every account of a bank: none, a floor of zero,
+	 * or a floor of zero and a per-tick limit too high to be reached.
+	 */
+	private static void limit(Bank bank, String[] ids, String limits) throws Exception {
+		if (limits.equals("none")) {
+			return;
+		}
+		Money floor = new Money(0, bank.getCurrency());
+		Money perTick = limits.equals("floor") ? null : new Money(Long.MAX_VALUE / 2, bank.getCurrency());
+		for (String id : ids) {
+			bank.setLimits(id, new AccountLimits(floor, perTick));
+		}
+	}
+
+	private static void transfer(String limits) throws Exception {
+		Currency SEK = new Currency("SEK", 0.15);
+		Bank bank = BankBenchmark.bank("SweBank", SEK, 1000);
+		String[] ids = BankBenchmark.ids(1000);
+		limit(bank, ids, limits);
+		Money amount = new Money(1, SEK);
+		int[] index = new int[1];
+		Harness.measure("Bank.transfer", "limits=" + limits, 1, () -> {
+			int i = index[0]++ % 1000;
+			bank.transfer(ids[i], ids[999 - i], amount);
+			return i;
+		});
+	}
+
+	/**
+	 * Runs transfers on a number of threads, all between the same few
+	 * accounts, and reports the combined throughput and the rejected transfers.
+	 */
+	private static void contendedTransfer(int threads, int shared, String limits) throws Exception {
+		Currency SEK = new Currency("SEK", 0.15);
+		Bank bank = BankBenchmark.bank("SweBank", SEK, shared);
+		String[] ids = BankBenchmark.ids(shared);
+		limit(bank, ids, limits);
+		Money amount = new Money(100, SEK);
+		LongAdder done = new LongAdder();
+		LongAdder rejected = new LongAdder();
+		long deadline = System.nanoTime() + TIME * 1000000 * 3;
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			final int seed = t;
+			workers[t] = new Thread(() -> {
+				Random random = new Random(seed);
+				long count = 0, failures = 0;
+				try {
+					while (System.nanoTime() < deadline) {
+						for (int i = 0; i < 1024; i++) {
+							try {
+								bank.transfer(ids[random.nextInt(shared)], ids[random.nextInt(shared)], amount);
+							} catch (LimitExceededException e) {
+								failures++;
+							}
+						}
+						count += 1024;
+					}
+				} catch (AccountDoesNotExistException e) {
+					throw new IllegalStateException(e);
+				}
+				done.add(count);
+				rejected.add(failures);
+			});
+		}
+		long start = System.nanoTime();
+		for (Thread worker : workers) {
+			worker.start();
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		String params = "threads=" + threads + " accounts=" + shared + " limits=" + limits;
+		Harness.record("Bank.transfer", params, "ops_per_sec", done.sum() / seconds);
+		Harness.record("Bank.transfer", params, "rejected", rejected.sum());
+	}
+}
@@ -0,0 +1,54 @@
+package b_Money;
+
+import java.util.PriorityQueue;
+
+import benchmark.Harness;
+
+/**
+ * Benchmarks Bank.report against the naive way of computing the same
+ * aggregates: calling getBalance for every account ID and keeping the
+ * largest in a PriorityQueue.
+ *
+ * System properties: bench.accounts (accounts, default 10000000; needs a
+ * heap of several GB, e.g. -Xmx6g) and bench.top (accounts to rank, default 100).
+ */
+public class BalanceReportBenchmark {
+	public static void main(String[] args) throws Exception {
+		int accounts = Harness.sizes("bench.accounts", "10000000")[0];
+		int top = Harness.sizes("bench.top", "100")[0];
+		String[] ids = BankBenchmark.ids(accounts);
+		Currency SEK = new Currency("SEK", 0.15);
+		Bank bank = new Bank("SweBank", SEK);
+		bank.openAccounts(ids);
+		for (int i = 0; i < accounts; i++) {
+			bank.deposit(ids[i], new Money(i % 100003, SEK));
+		}
+		String params = "accounts=" + accounts + " top=" + top;
+
+		long[] naive = new long[1];
+		Harness.measure("Bank.report", params + " mode=naive", accounts, () -> {
+			long total = 0;
+			PriorityQueue<Long> largest = new PriorityQueue<>();
+			for (String id : ids) {
+				Integer balance = bank.getBalance(id);
+				total += balance;
+				if (largest.size() < top) {
+					largest.add((long) balance);
+				} else if (balance > largest.peek()) {
+					largest.poll();
+					largest.add((long) balance);
+				}
+			}
+			naive[0] = total;
+			return total;
+		});
+		long[] report = new long[1];
+		Harness.measure("Bank.report", params + " mode=scan", accounts, () -> {
+			report[0] = bank.report(top).getTotals().get(SEK).getAmountLong();
+			return report[0];
+		});
+		if (naive[0] != report[0]) {
+			throw new IllegalStateException("Totals differ: " + naive[0] + " and " + report[0]);
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package b_Money;
+
+import benchmark.Harness;
+
+/**
+ * Benchmarks what balance snapshots cost writers: Bank.transfer with no
+ * snapshot open, with one held open throughout, and with a reader thread
+ * opening and totaling snapshots back to back. Also measures totaling a
+ * snapshot of the whole bank.
+ */
+public class BalanceSnapshotBenchmark {
+	public static void main(String[] args) throws Exception {
+		Currency SEK = new Currency("SEK", 0.15);
+		Bank bank = BankBenchmark.bank("SweBank", SEK, 1000);
+		String[] ids = BankBenchmark.ids(1000);
+		Money amount = new Money(1, SEK);
+		int[] index = new int[1];
+		Harness.Operation transfer = () -> {
+			int i = index[0]++ % 1000;
+			bank.transfer(ids[i], ids[999 - i], amount);
+			return i;
+		};
+
+		Harness.measure("Bank.transfer", "snapshot=none", 1, transfer);
+		try (BalanceSnapshot view = bank.snapshotBalances()) {
+			Harness.measure("Bank.transfer", "snapshot=open", 1, transfer);
+			Harness.record("Bank.transfer", "snapshot=open", "view_total", view.total().getAmountLong());
+		}
+
+		long[] totals = new long[1];
+		Thread reader = new Thread(() -> {
+			while (!Thread.currentThread().isInterrupted()) {
+				try (BalanceSnapshot view = bank.snapshotBalances()) {
+					view.total();
+				}
+				totals[0]++;
+			}
+		});
+		reader.start();
+		try {
+			Harness.measure("Bank.transfer", "snapshot=repeated", 1, transfer);
+		} finally {
+			reader.interrupt();
+			reader.join();
+		}
+		Harness.record("Bank.transfer", "snapshot=repeated", "snapshots", totals[0]);
+
+		Harness.measure("BalanceSnapshot.total", "accounts=1000", 1000, () -> {
+			try (BalanceSnapshot view = bank.snapshotBalances()) {
+				return view.total().getAmountLong();
+			}
+		});
+	}
+}
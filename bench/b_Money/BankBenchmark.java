@@ -0,0 +1,236 @@
+package b_Money;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+
+import benchmark.Harness;
+
+/**
+ * Benchmarks for Bank transfers, ticks and concurrent throughput.
+ *
+ * System properties: bench.accounts (bank sizes, default 1000,100000,1000000),
+ * bench.payments (scheduled payments, default 1000000),
+ * bench.intervals (payment intervals, default 9,99,999) and
+ * bench.threads (thread counts, default 1,2,4,8).
+ */
+public class BankBenchmark {
+	private static final long TIME = Long.getLong("bench.time", 1000);
+
+	public static void main(String[] args) throws Exception {
+		for (int accounts : Harness.sizes("bench.accounts", "1000,100000,1000000")) {
+			transfer(accounts);
+			transferBatch(accounts);
+		}
+		missingAccount();
+		int payments = Harness.sizes("bench.payments", "1000000")[0];
+		for (int interval : Harness.sizes("bench.intervals", "9,99,999")) {
+			tick(payments, interval);
+		}
+		for (int threads : Harness.sizes("bench.threads", "1,2,4,8")) {
+			concurrentTransfer(threads);
+			parallelTick(payments, threads);
+		}
+	}
+
+	/**
+	 * Opens a bank with a number of accounts named acc0, acc1, ..., each holding 1000.00.
+	 */
+	static Bank bank(String name, Currency currency, int accounts) throws Exception {
+		Bank bank = new Bank(name, currency);
+		for (int i = 0; i < accounts; i++) {
+			bank.openAccount("acc" + i);
+			bank.deposit("acc" + i, new Money(100000, currency));
+		}
+		return bank;
+	}
+
+	static String[] ids(int accounts) {
+		String[] ids = new String[accounts];
+		for (int i = 0; i < accounts; i++) {
+			ids[i] = "acc" + i;
+		}
+		return ids;
+	}
+
+	private static void transfer(int accounts) throws Exception {
+		Currency SEK = new Currency("SEK", 0.15);
+		Currency EUR = new Currency("EUR", 1.5);
+		Bank bank = bank("SweBank", SEK, accounts);
+		Bank other = bank("Deutsche", EUR, accounts);
+		String[] ids = ids(accounts);
+		Random random = new Random(42);
+		int[] from = new int[1 << 16], to = new int[1 << 16];
+		for (int i = 0; i < from.length; i++) {
+			from[i] = random.nextInt(accounts);
+			to[i] = random.nextInt(accounts);
+		}
+		Money amount = new Money(100, SEK);
+		int[] index = new int[1];
+		Harness.measure("Bank.transfer", "accounts=" + accounts + " currency=same", 1, () -> {
+			int i = index[0]++ & 0xFFFF;
+			bank.transfer(ids[from[i]], ids[to[i]], amount);
+			return i;
+		});
+		Harness.measure("Bank.transfer", "accounts=" + accounts + " currency=cross", 1, () -> {
+			int i = index[0]++ & 0xFFFF;
+			bank.transfer(ids[from[i]], other, ids[to[i]], amount);
+			return i;
+		});
+		AccountHandle[] handles = new AccountHandle[accounts];
+		for (int i = 0; i < accounts; i++) {
+			handles[i] = bank.handle(ids[i]);
+		}
+		Harness.measure("Bank.transfer", "accounts=" + accounts + " currency=same mode=handle", 1, () -> {
+			int i = index[0]++ & 0xFFFF;
+			handles[from[i]].transferTo(handles[to[i]], amount);
+			return i;
+		});
+	}
+
+	/**
+	 * Compares the cost of a missing account through the throwing deposit,
+	 * which builds an exception with a stack trace, and through tryDeposit.
+	 */
+	private static void missingAccount() throws Exception {
+		Currency SEK = new Currency("SEK", 0.15);
+		Bank bank = bank("SweBank", SEK, 1000);
+		Money amount = new Money(100, SEK);
+		Harness.measure("Bank.deposit", "account=missing mode=exception", 1, () -> {
+			try {
+				bank.deposit("Nobody", amount);
+				return 1;
+			} catch (AccountDoesNotExistException e) {
+				return 0;
+			}
+		});
+		Harness.measure("Bank.deposit", "account=missing mode=status", 1, () -> {
+			return bank.tryDeposit("Nobody", amount) ? 1 : 0;
+		});
+	}
+
+	/**
+	 * Compares a payroll-style batch of 10000 postings from a few payers with
+	 * looping the single transfer.
+	 */
+	private static void transferBatch(int accounts) throws Exception {
+		Currency SEK = new Currency("SEK", 0.15);
+		Bank bank = bank("SweBank", SEK, accounts);
+		String[] ids = ids(accounts);
+		Random random = new Random(42);
+		Money amount = new Money(100, SEK);
+		TransferBatch batch = new TransferBatch(10000);
+		for (int i = 0; i < 10000; i++) {
+			batch.add(ids[random.nextInt(Math.min(accounts, 10))], bank, ids[random.nextInt(accounts)], amount);
+		}
+		String params = "accounts=" + accounts + " rows=10000";
+		Harness.measure("Bank.transferBatch", params + " mode=batch", batch.size(), () -> {
+			return bank.transferBatch(batch).cardinality();
+		});
+		Harness.measure("Bank.transferBatch", params + " mode=loop", batch.size(), () -> {
+			for (int row = 0; row < batch.size(); row++) {
+				bank.transfer(batch.fromaccount(row), batch.tobank(row), batch.toaccount(row), batch.amount(row));
+			}
+			return 0;
+		});
+	}
+
+	/**
+	 * Compares Bank.tick, which visits only due payments, with scanning every
+	 * account's payments through Account.tick.
+	 */
+	private static void tick(int payments, int interval) throws Exception {
+		Currency SEK = new Currency("SEK", 0.15);
+		Bank bank = bank("SweBank", SEK, payments);
+		Account[] scanned = new Account[payments];
+		Money amount = new Money(1, SEK);
+		Random random = new Random(42);
+		for (int i = 0; i < payments; i++) {
+			int next = random.nextInt(interval + 1);
+			bank.addTimedPayment("acc" + i, "p", interval, next, amount, bank, "acc" + random.nextInt(payments));
+			scanned[i] = new Account("acc" + i, SEK);
+			scanned[i].addTimedPayment("p", interval, next, amount, bank, "acc" + random.nextInt(payments));
+		}
+		String params = "payments=" + payments + " interval=" + interval;
+		Harness.measure("Bank.tick", params + " mode=index", 1, () -> {
+			bank.tick();
+			return 0;
+		});
+		Harness.measure("Bank.tick", params + " mode=scan", 1, () -> {
+			for (Account account : scanned) {
+				account.tick();
+			}
+			return 0;
+		});
+	}
+
+	/**
+	 * Measures the parallel tick on a pool of a number of threads, with every
+	 * payment due at each tick and four shards per thread. The serial tick
+	 * is measured alongside as the baseline.
+	 */
+	private static void parallelTick(int payments, int threads) throws Exception {
+		Currency SEK = new Currency("SEK", 0.15);
+		Bank bank = bank("SweBank", SEK, payments);
+		Money amount = new Money(1, SEK);
+		Random random = new Random(42);
+		for (int i = 0; i < payments; i++) {
+			bank.addTimedPayment("acc" + i, "p", 0, 0, amount, bank, "acc" + random.nextInt(payments));
+		}
+		String params = "payments=" + payments + " interval=0";
+		if (threads == 1) {
+			Harness.measure("Bank.tick", params + " mode=serial", payments, () -> {
+				bank.tick();
+				return 0;
+			});
+		}
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		Harness.measure("Bank.tick", params + " mode=parallel threads=" + threads, payments, () -> {
+			bank.tick(pool, threads * 4);
+			return 0;
+		});
+		pool.shutdown();
+	}
+
+	/**
+	 * Runs transfers on a number of threads, each within its own range of
+	 * accounts, and reports the combined throughput.
+	 */
+	private static void concurrentTransfer(int threads) throws Exception {
+		Currency SEK = new Currency("SEK", 0.15);
+		int perThread = 1000;
+		Bank bank = bank("SweBank", SEK, perThread * threads);
+		String[] ids = ids(perThread * threads);
+		Money amount = new Money(1, SEK);
+		LongAdder done = new LongAdder();
+		long deadline = System.nanoTime() + TIME * 1000000 * 3;
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			final int base = t * perThread;
+			workers[t] = new Thread(() -> {
+				Random random = new Random(base);
+				long count = 0;
+				try {
+					while (System.nanoTime() < deadline) {
+						for (int i = 0; i < 1024; i++) {
+							bank.transfer(ids[base + random.nextInt(perThread)], ids[base + random.nextInt(perThread)], amount);
+						}
+						count += 1024;
+					}
+				} catch (AccountDoesNotExistException e) {
+					throw new IllegalStateException(e);
+				}
+				done.add(count);
+			});
+		}
+		long start = System.nanoTime();
+		for (Thread worker : workers) {
+			worker.start();
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		Harness.record("Bank.transfer", "threads=" + threads + " accounts=disjoint", "ops_per_sec", done.sum() / seconds);
+	}
+}
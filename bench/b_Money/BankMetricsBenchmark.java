@@ -0,0 +1,47 @@
+package b_Money;
+
+import benchmark.Harness;
+
+/**
+ * Benchmarks the overhead of BankMetrics on Bank.deposit, Bank.transfer,
+ * Bank.transferBatch and Bank.tick, comparing a bank with metrics attached
+ * against one without. The batch has 100 rows and the tick pays a timed
+ * payment from each of the 1000 accounts; both are reported per row or payment.
+ */
+public class BankMetricsBenchmark {
+	public static void main(String[] args) throws Exception {
+		run("metrics=off", null);
+		run("metrics=on", new BankMetrics());
+	}
+
+	private static void run(String params, BankMetrics metrics) throws Exception {
+		Currency SEK = new Currency("SEK", 0.15);
+		Bank bank = BankBenchmark.bank("SweBank", SEK, 1000);
+		String[] ids = BankBenchmark.ids(1000);
+		Money amount = new Money(1, SEK);
+		bank.setMetrics(metrics);
+		int[] index = new int[1];
+		Harness.measure("Bank.deposit", params, 1, () -> {
+			int i = index[0]++ % 1000;
+			bank.deposit(ids[i], amount);
+			return i;
+		});
+		Harness.measure("Bank.transfer", params, 1, () -> {
+			int i = index[0]++ % 1000;
+			bank.transfer(ids[i], ids[999 - i], amount);
+			return i;
+		});
+		TransferBatch batch = new TransferBatch(100);
+		for (int i = 0; i < 100; i++) {
+			batch.add(ids[i * 10], bank, ids[999 - i * 10], amount);
+		}
+		Harness.measure("Bank.transferBatch", params, 100, () -> bank.transferBatch(batch).cardinality());
+		for (int i = 0; i < 1000; i++) {
+			bank.addTimedPayment(ids[i], "pay", 0, 0, amount, bank, ids[(i + 1) % 1000]);
+		}
+		Harness.measure("Bank.tick", params, 1000, () -> {
+			bank.tick();
+			return 0;
+		});
+	}
+}
@@ -0,0 +1,81 @@
+package b_Money;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import benchmark.Harness;
+
+/**
+ * Compares the heap footprint, full collection time and transfer throughput
+ * of Bank and ColumnarBank.
+ *
+ * System properties: bench.accounts (bank sizes, default 1000000; 10000000
+ * and 50000000 need heaps of several gigabytes).
+ */
+public class ColumnarBankBenchmark {
+	public static void main(String[] args) throws Exception {
+		for (int accounts : Harness.sizes("bench.accounts", "1000000")) {
+			objects(accounts);
+			columnar(accounts);
+		}
+	}
+
+	private static void objects(int accounts) throws Exception {
+		Currency SEK = new Currency("SEK", 0.15);
+		String[] ids = BankBenchmark.ids(accounts);
+		long before = Harness.usedHeap();
+		Bank bank = new Bank("SweBank", SEK, accounts);
+		for (String id : ids) {
+			bank.openAccount(id);
+			bank.deposit(id, new Money(100000, SEK));
+		}
+		report("Bank", accounts, before);
+		Money amount = new Money(1, SEK);
+		Random random = new Random(42);
+		Harness.measure("Bank.transfer", "accounts=" + accounts, 1, () -> {
+			bank.transfer(ids[random.nextInt(accounts)], ids[random.nextInt(accounts)], amount);
+			return 0;
+		});
+	}
+
+	private static void columnar(int accounts) throws Exception {
+		Currency SEK = new Currency("SEK", 0.15);
+		String[] ids = BankBenchmark.ids(accounts);
+		long before = Harness.usedHeap();
+		ColumnarBank bank = new ColumnarBank("SweBank", SEK, accounts);
+		for (String id : ids) {
+			bank.openAccount(id);
+			bank.deposit(id, new Money(100000, SEK));
+		}
+		report("ColumnarBank", accounts, before);
+		Money amount = new Money(1, SEK);
+		Random random = new Random(42);
+		Harness.measure("ColumnarBank.transfer", "accounts=" + accounts, 1, () -> {
+			bank.transfer(ids[random.nextInt(accounts)], ids[random.nextInt(accounts)], amount);
+			return 0;
+		});
+	}
+
+	/**
+	 * Reports the heap taken by a bank beyond its account ID strings, and how
+	 * long a full collection takes with the bank live.
+	 */
+	private static void report(String benchmark, int accounts, long before) {
+		long used = Harness.usedHeap() - before;
+		Harness.record(benchmark, "accounts=" + accounts, "heap_bytes_per_account", used / (double) accounts);
+		long gcBefore = gcMillis();
+		long start = System.nanoTime();
+		System.gc();
+		Harness.record(benchmark, "accounts=" + accounts, "full_gc_ms", (System.nanoTime() - start) / 1e6);
+		Harness.record(benchmark, "accounts=" + accounts, "gc_reported_ms", gcMillis() - gcBefore);
+	}
+
+	private static long gcMillis() {
+		long total = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			total += gc.getCollectionTime();
+		}
+		return total;
+	}
+}
@@ -0,0 +1,125 @@
+package b_Money;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import benchmark.Harness;
+
+/**
+ * Benchmarks for IdempotencyCache: the heap used per remembered request
+ * ID, the cost of claiming new and duplicate IDs, concurrent claims, and
+ * what Bank.transferOnce adds to Bank.transfer. The ID strings are created
+ * up front and not counted.
+ *
+ * System properties: bench.capacity (IDs remembered, default 1000000) and
+ * bench.threads (thread counts, default 1,2,4,8).
+ */
+public class IdempotencyCacheBenchmark {
+	private static final long TIME = Long.getLong("bench.time", 1000);
+
+	public static void main(String[] args) throws Exception {
+		int capacity = Harness.sizes("bench.capacity", "1000000")[0];
+		/* Twice the capacity, so that claiming them in turn keeps evicting */
+		String[] requests = new String[2 * capacity];
+		for (int i = 0; i < requests.length; i++) {
+			requests[i] = "request-" + i;
+		}
+		memory(capacity, requests);
+
+		IdempotencyCache cache = new IdempotencyCache(capacity);
+		int[] index = new int[1];
+		Harness.measure("IdempotencyCache.claim", "capacity=" + capacity + " ids=new", 1, () -> {
+			int i = index[0]++;
+			if (index[0] == requests.length) {
+				index[0] = 0;
+			}
+			return claim(cache, requests[i]);
+		});
+		/* The last capacity IDs claimed are remembered; claim those again */
+		int first = index[0] >= capacity ? index[0] - capacity : index[0] + capacity;
+		int[] offset = new int[1];
+		Harness.measure("IdempotencyCache.claim", "capacity=" + capacity + " ids=duplicate", 1, () -> {
+			int i = offset[0]++ % capacity;
+			return claim(cache, requests[(first + i) % requests.length]);
+		});
+
+		for (int threads : Harness.sizes("bench.threads", "1,2,4,8")) {
+			concurrentClaims(capacity, requests, threads);
+		}
+		transferOnce(requests);
+	}
+
+	/* Claims an ID and completes its operation at once, returning 1 if it was new */
+	private static int claim(IdempotencyCache cache, String requestid) {
+		IdempotencyCache.Claim claim = cache.claim(requestid);
+		if (claim == null) {
+			return 0;
+		}
+		cache.complete(claim);
+		return 1;
+	}
+
+	private static void memory(int capacity, String[] requests) {
+		long before = Harness.usedHeap();
+		IdempotencyCache cache = new IdempotencyCache(capacity);
+		for (int i = 0; i < capacity; i++) {
+			claim(cache, requests[i]);
+		}
+		long after = Harness.usedHeap();
+		Harness.record("IdempotencyCache", "capacity=" + capacity, "bytes_per_id", (after - before) / (double) capacity);
+		if (cache.size() != capacity) {
+			throw new IllegalStateException("Remembered " + cache.size() + " IDs");
+		}
+	}
+
+	/* Threads claim interleaved IDs from one cache, half of them new and half retries */
+	private static void concurrentClaims(int capacity, String[] requests, int threads) throws Exception {
+		IdempotencyCache cache = new IdempotencyCache(capacity);
+		LongAdder done = new LongAdder();
+		long deadline = System.nanoTime() + TIME * 1000000 * 3;
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			final int base = t;
+			workers[t] = new Thread(() -> {
+				long count = 0;
+				int i = base;
+				while (System.nanoTime() < deadline) {
+					for (int j = 0; j < 1024; j++) {
+						claim(cache, requests[i]);
+						claim(cache, requests[i]);
+						i = (i + threads) % requests.length;
+					}
+					count += 2048;
+				}
+				done.add(count);
+			});
+		}
+		long start = System.nanoTime();
+		for (Thread worker : workers) {
+			worker.start();
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		Harness.record("IdempotencyCache.claim", "capacity=" + capacity + " threads=" + threads, "ops_per_sec", done.sum() / seconds);
+	}
+
+	private static void transferOnce(String[] requests) throws Exception {
+		Currency SEK = new Currency("SEK", 0.15);
+		Bank bank = BankBenchmark.bank("SweBank", SEK, 1000);
+		String[] ids = BankBenchmark.ids(1000);
+		Money amount = new Money(1, SEK);
+		bank.setIdempotencyCache(new IdempotencyCache(requests.length / 2));
+		int[] index = new int[1];
+		Harness.measure("Bank.transfer", "mode=plain", 1, () -> {
+			int i = index[0]++ % 1000;
+			bank.transfer(ids[i], ids[999 - i], amount);
+			return i;
+		});
+		Harness.measure("Bank.transfer", "mode=once", 1, () -> {
+			int r = index[0]++ % requests.length;
+			int i = r % 1000;
+			return bank.transferOnce(requests[r], ids[i], ids[999 - i], amount) ? 1 : 0;
+		});
+	}
+}
@@ -0,0 +1,103 @@
+package b_Money;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.LongAdder;
+
+import benchmark.Harness;
+
+/**
+ * Benchmarks Bank.deposit throughput with a journal at each durability level,
+ * and GROUP_COMMIT against SYNC on threads depositing to accounts of their
+ * own, reporting how many appends each force covered.
+ *
+ * System properties: bench.commit (BUFFERED commit intervals in ms, default
+ * 1,10) and bench.threads (thread counts, default 1,4,16).
+ */
+public class JournalBenchmark {
+	private static final long TIME = Long.getLong("bench.time", 1000);
+
+	public static void main(String[] args) throws Exception {
+		run("durability=none", null, 0);
+		for (int interval : Harness.sizes("bench.commit", "1,10")) {
+			run("durability=BUFFERED commit_ms=" + interval, Journal.Durability.BUFFERED, interval);
+		}
+		run("durability=GROUP_COMMIT", Journal.Durability.GROUP_COMMIT, 0);
+		run("durability=SYNC", Journal.Durability.SYNC, 0);
+		for (int threads : Harness.sizes("bench.threads", "1,4,16")) {
+			concurrent(threads, Journal.Durability.GROUP_COMMIT);
+			concurrent(threads, Journal.Durability.SYNC);
+		}
+	}
+
+	private static void run(String params, Journal.Durability durability, long interval) throws Exception {
+		Currency SEK = new Currency("SEK", 0.15);
+		Bank bank = BankBenchmark.bank("SweBank", SEK, 1000);
+		String[] ids = BankBenchmark.ids(1000);
+		Money amount = new Money(1, SEK);
+		Path file = Files.createTempFile("bank", ".journal");
+		Journal journal = durability == null ? null : new Journal(file, durability, interval);
+		bank.setJournal(journal);
+		int[] index = new int[1];
+		try {
+			Harness.measure("Journal.deposit", params, 1, () -> {
+				int i = index[0]++ % 1000;
+				bank.deposit(ids[i], amount);
+				return i;
+			});
+		} finally {
+			if (journal != null) {
+				journal.close();
+			}
+			Files.delete(file);
+		}
+	}
+
+	/**
+	 * Runs deposits on a number of threads, each to its own account, and
+	 * reports the combined throughput and the appends per force.
+	 */
+	private static void concurrent(int threads, Journal.Durability durability) throws Exception {
+		Currency SEK = new Currency("SEK", 0.15);
+		Bank bank = BankBenchmark.bank("SweBank", SEK, threads);
+		String[] ids = BankBenchmark.ids(threads);
+		Money amount = new Money(1, SEK);
+		Path file = Files.createTempFile("bank", ".journal");
+		Journal journal = new Journal(file, durability, 0);
+		bank.setJournal(journal);
+		LongAdder done = new LongAdder();
+		long deadline = System.nanoTime() + TIME * 1000000;
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			String id = ids[t];
+			workers[t] = new Thread(() -> {
+				long count = 0;
+				try {
+					while (System.nanoTime() < deadline) {
+						bank.deposit(id, amount);
+						count++;
+					}
+				} catch (AccountDoesNotExistException e) {
+					throw new IllegalStateException(e);
+				}
+				done.add(count);
+			});
+		}
+		long start = System.nanoTime();
+		try {
+			for (Thread worker : workers) {
+				worker.start();
+			}
+			for (Thread worker : workers) {
+				worker.join();
+			}
+			double seconds = (System.nanoTime() - start) / 1e9;
+			String params = "durability=" + durability + " threads=" + threads;
+			Harness.record("Journal.deposit", params, "ops_per_sec", done.sum() / seconds);
+			Harness.record("Journal.deposit", params, "appends_per_force", (double) done.sum() / Math.max(1, journal.forces()));
+		} finally {
+			journal.close();
+			Files.delete(file);
+		}
+	}
+}
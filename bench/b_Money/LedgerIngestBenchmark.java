@@ -0,0 +1,104 @@
+package b_Money;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import benchmark.Harness;
+
+/**
+ * Benchmarks LedgerIngest on generated CSV and binary files against reading
+ * the CSV line by line and calling Bank.openAccount, deposit and transfer
+ * per row. Each file opens every account and then holds random transfers.
+ *
+ * System properties: bench.rows (transfer rows, default 10000000; raise it
+ * for multi-GB files) and bench.accounts (accounts, default 100000).
+ */
+public class LedgerIngestBenchmark {
+	private static final int ID_WIDTH = 16;
+
+	public static void main(String[] args) throws Exception {
+		int rows = Harness.sizes("bench.rows", "10000000")[0];
+		int accounts = Harness.sizes("bench.accounts", "100000")[0];
+		Currency SEK = new Currency("SEK", 0.15);
+		Path csv = Files.createTempFile("ledger", ".csv");
+		Path binary = Files.createTempFile("ledger", ".bin");
+		try {
+			write(csv, binary, accounts, rows);
+			String params = "rows=" + (accounts + rows) + " accounts=" + accounts;
+			long csvBytes = Files.size(csv), binaryBytes = Files.size(binary);
+
+			Bank bank = new Bank("SweBank", SEK, accounts);
+			long nanos = Harness.once("LedgerIngest.readCsv", params, () -> new LedgerIngest(bank).readCsv(csv));
+			report("LedgerIngest.readCsv", params, accounts + rows, csvBytes, nanos);
+
+			Bank binaryBank = new Bank("SweBank", SEK, accounts);
+			nanos = Harness.once("LedgerIngest.readBinary", params, () -> new LedgerIngest(binaryBank).readBinary(binary, ID_WIDTH));
+			report("LedgerIngest.readBinary", params, accounts + rows, binaryBytes, nanos);
+
+			Bank naiveBank = new Bank("SweBank", SEK, accounts);
+			nanos = Harness.once("LedgerIngest.naive", params, () -> naive(naiveBank, csv));
+			report("LedgerIngest.naive", params, accounts + rows, csvBytes, nanos);
+		} finally {
+			Files.delete(csv);
+			Files.delete(binary);
+		}
+	}
+
+	private static void report(String benchmark, String params, long rows, long bytes, long nanos) {
+		Harness.record(benchmark, params, "rows_per_sec", rows / (nanos / 1e9));
+		Harness.record(benchmark, params, "mb_per_sec", bytes / 1e6 / (nanos / 1e9));
+	}
+
+	/*
+	 * The caller-side parsing that LedgerIngest replaces.
+	 */
+	private static long naive(Bank bank, Path csv) throws Exception {
+		long applied = 0;
+		Currency currency = bank.getCurrency();
+		try (BufferedReader in = Files.newBufferedReader(csv)) {
+			String line;
+			while ((line = in.readLine()) != null) {
+				String[] fields = line.split(",");
+				if (fields[0].equals("open")) {
+					bank.openAccount(fields[1]);
+					bank.deposit(fields[1], new Money(Long.parseLong(fields[2]), currency));
+				} else {
+					bank.transfer(fields[1], fields[2], new Money(Long.parseLong(fields[3]), currency));
+				}
+				applied++;
+			}
+		}
+		return applied;
+	}
+
+	private static void write(Path csv, Path binary, int accounts, int rows) throws Exception {
+		Random random = new Random(42);
+		try (OutputStream text = new BufferedOutputStream(Files.newOutputStream(csv), 1 << 16);
+				DataOutputStream records = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(binary), 1 << 16))) {
+			for (int i = 0; i < accounts; i++) {
+				text.write(("open,acc" + i + ",100000\n").getBytes(StandardCharsets.US_ASCII));
+				record(records, LedgerIngest.OPEN, "acc" + i, "", 100000);
+			}
+			for (int i = 0; i < rows; i++) {
+				String from = "acc" + random.nextInt(accounts), to = "acc" + random.nextInt(accounts);
+				int amount = random.nextInt(1000);
+				text.write(("transfer," + from + "," + to + "," + amount + "\n").getBytes(StandardCharsets.US_ASCII));
+				record(records, LedgerIngest.TRANSFER, from, to, amount);
+			}
+		}
+	}
+
+	private static void record(DataOutputStream out, byte type, String from, String to, long amount) throws Exception {
+		out.writeByte(type);
+		out.write(Arrays.copyOf(from.getBytes(StandardCharsets.US_ASCII), ID_WIDTH));
+		out.write(Arrays.copyOf(to.getBytes(StandardCharsets.US_ASCII), ID_WIDTH));
+		out.writeLong(amount);
+	}
+}
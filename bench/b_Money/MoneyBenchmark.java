@@ -0,0 +1,47 @@
+package b_Money;
+
+import benchmark.Harness;
+
+/**
+ * Benchmarks for Money arithmetic and Currency conversion.
+ */
+public class MoneyBenchmark {
+	public static void main(String[] args) throws Exception {
+		Currency SEK = Currency.register("SEK", 0.15);
+		Currency EUR = Currency.register("EUR", 1.5);
+		Money[] sek = new Money[1024];
+		Money[] eur = new Money[1024];
+		for (int i = 0; i < sek.length; i++) {
+			sek[i] = new Money(i * 100, SEK);
+			eur[i] = new Money(i * 10, EUR);
+		}
+		Money balance = new Money(1000000, SEK);
+
+		int[] index = new int[1];
+		Harness.measure("Money.add", "currency=same", 1, () -> {
+			int i = index[0]++ & 1023;
+			return balance.add(sek[i]).getAmountLong();
+		});
+		Harness.measure("Money.add", "currency=cross mode=rate-table", 1, () -> {
+			int i = index[0]++ & 1023;
+			return balance.add(eur[i]).getAmountLong();
+		});
+		Harness.measure("Money.add", "currency=cross mode=universal-double", 1, () -> {
+			/* The conversion Money.add used before the rate table */
+			int i = index[0]++ & 1023;
+			return new Money(balance.getAmountLong() + (long) (eur[i].universalValueLong() / SEK.getRate()), SEK).getAmountLong();
+		});
+		Harness.measure("Money.sub", "currency=same", 1, () -> {
+			int i = index[0]++ & 1023;
+			return balance.sub(sek[i]).getAmountLong();
+		});
+		Harness.measure("Money.compareTo", "currency=cross", 1, () -> {
+			int i = index[0]++ & 1023;
+			return sek[i].compareTo(eur[i]);
+		});
+		Harness.measure("Currency.valueInThisCurrency", "currency=cross", 1, () -> {
+			int i = index[0]++ & 1023;
+			return SEK.valueInThisCurrency(i * 10, EUR);
+		});
+	}
+}
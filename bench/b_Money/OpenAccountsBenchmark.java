@@ -0,0 +1,50 @@
+package b_Money;
+
+import benchmark.Harness;
+
+/**
+ * Benchmarks opening a large number of accounts with Bank.openAccounts
+ * against calling Bank.openAccount in a loop, reporting the time taken and
+ * the heap used per account. The IDs are created up front and not counted.
+ *
+ * System properties: bench.accounts (accounts, default 10000000; needs a
+ * heap of several GB, e.g. -Xmx6g).
+ */
+public class OpenAccountsBenchmark {
+	public static void main(String[] args) throws Exception {
+		int accounts = Harness.sizes("bench.accounts", "10000000")[0];
+		String[] ids = BankBenchmark.ids(accounts);
+		Currency SEK = new Currency("SEK", 0.15);
+		run("mode=loop", accounts, () -> {
+			Bank bank = new Bank("SweBank", SEK);
+			for (String id : ids) {
+				bank.openAccount(id);
+			}
+			return bank;
+		});
+		run("mode=bulk", accounts, () -> {
+			Bank bank = new Bank("SweBank", SEK);
+			bank.openAccounts(ids);
+			return bank;
+		});
+	}
+
+	private interface Opener {
+		Bank open() throws Exception;
+	}
+
+	private static void run(String params, int accounts, Opener opener) throws Exception {
+		params = "accounts=" + accounts + " " + params;
+		long before = Harness.usedHeap();
+		Bank[] bank = new Bank[1];
+		Harness.once("Bank.openAccounts", params, () -> {
+			bank[0] = opener.open();
+			return bank[0].accounts().size();
+		});
+		long after = Harness.usedHeap();
+		Harness.record("Bank.openAccounts", params, "bytes_per_account", (after - before) / (double) accounts);
+		if (bank[0].accounts().size() != accounts) {
+			throw new IllegalStateException("Opened " + bank[0].accounts().size() + " accounts");
+		}
+	}
+}
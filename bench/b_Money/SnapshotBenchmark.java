@@ -0,0 +1,79 @@
+package b_Money;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import benchmark.Harness;
+
+/**
+ * Benchmarks writing a snapshot and starting a bank from it.
+ *
+ * System properties: bench.accounts (bank sizes, default 1000000; 10000000
+ * needs a heap of a few gigabytes).
+ */
+public class SnapshotBenchmark {
+	public static void main(String[] args) throws Exception {
+		for (int accounts : Harness.sizes("bench.accounts", "1000000")) {
+			run(accounts);
+		}
+	}
+
+	private static void run(int accounts) throws Exception {
+		Currency SEK = new Currency("SEK", 0.15);
+		Map<String, Currency> currencies = new HashMap<>();
+		currencies.put("SEK", SEK);
+		Bank bank = BankBenchmark.bank("SweBank", SEK, accounts);
+		Path file = Files.createTempFile("bank", ".snapshot");
+		String params = "accounts=" + accounts;
+		try {
+			Snapshot[] snapshot = new Snapshot[1];
+			Harness.once("Snapshot.capture", params, () -> {
+				snapshot[0] = Snapshot.capture(bank);
+				return snapshot[0].accounts();
+			});
+			Harness.record("Snapshot.capture", params, "tick_blocked_ms", tickBlockedDuringCapture(bank));
+			Harness.once("Snapshot.write", params, () -> {
+				snapshot[0].write(file);
+				return 0;
+			});
+			Harness.record("Snapshot.write", params, "file_mb", Files.size(file) / 1e6);
+			snapshot[0] = null;
+			Harness.once("Snapshot.load", params, () -> {
+				return Snapshot.load(file, new HashMap<>(), currencies).accounts().size();
+			});
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	/*
+	 * How long a thread ticking the bank while another thread captures it
+	 * spends blocked on the schedule's monitor, in milliseconds. Unlike the
+	 * ticks' elapsed time, this leaves out CPU sharing and GC pauses.
+	 */
+	private static double tickBlockedDuringCapture(Bank bank) throws Exception {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		threads.setThreadContentionMonitoringEnabled(true);
+		AtomicBoolean done = new AtomicBoolean();
+		Thread ticker = new Thread(() -> {
+			while (!done.get()) {
+				try {
+					bank.tick();
+				} catch (AccountDoesNotExistException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		});
+		ticker.start();
+		Snapshot.capture(bank);
+		long blocked = threads.getThreadInfo(ticker.getId()).getBlockedTime();
+		done.set(true);
+		ticker.join();
+		return blocked;
+	}
+}
@@ -0,0 +1,100 @@
+package b_Money;
+
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+import benchmark.Harness;
+
+/**
+ * Benchmarks transfers through a TransferPipeline against calling
+ * Bank.transfer directly, reporting throughput and latency percentiles from
+ * submission to completion while a number of producers keep it loaded.
+ *
+ * System properties: bench.transfers (transfers per run, default 1000000),
+ * bench.threads (producer counts, default 1,2,4),
+ * bench.shards (shard counts, default 1,2,4) and
+ * bench.capacity (transfers in flight, default 4096).
+ */
+public class TransferPipelineBenchmark {
+	private static final int ACCOUNTS = 10000;
+
+	public static void main(String[] args) throws Exception {
+		int transfers = Harness.sizes("bench.transfers", "1000000")[0];
+		int capacity = Harness.sizes("bench.capacity", "4096")[0];
+		for (int producers : Harness.sizes("bench.threads", "1,2,4")) {
+			run(transfers, producers, 0, capacity);
+			for (int shards : Harness.sizes("bench.shards", "1,2,4")) {
+				run(transfers, producers, shards, capacity);
+			}
+		}
+	}
+
+	/*
+	 * Runs one round of transfers, directly when shards is 0 and through a
+	 * pipeline otherwise. The first half of each producer's transfers warms up.
+	 */
+	private static void run(int transfers, int producers, int shards, int capacity) throws Exception {
+		Currency SEK = new Currency("SEK", 0.15);
+		Bank bank = BankBenchmark.bank("SweBank", SEK, ACCOUNTS);
+		String[] ids = BankBenchmark.ids(ACCOUNTS);
+		Money amount = new Money(1, SEK);
+		TransferPipeline pipeline = shards == 0 ? null : new TransferPipeline(shards, capacity);
+		int perProducer = transfers / producers;
+		long[] latencies = new long[perProducer / 2 * producers];
+		Thread[] workers = new Thread[producers];
+		long[] measuredStart = new long[producers];
+		for (int t = 0; t < producers; t++) {
+			final int producer = t;
+			workers[t] = new Thread(() -> {
+				Random random = new Random(producer);
+				CompletableFuture<Void> last = null;
+				try {
+					for (int i = 0; i < perProducer; i++) {
+						if (i == perProducer / 2) {
+							if (last != null) {
+								last.join();
+							}
+							measuredStart[producer] = System.nanoTime();
+						}
+						String from = ids[random.nextInt(ACCOUNTS)], to = ids[random.nextInt(ACCOUNTS)];
+						int slot = i < perProducer / 2 ? -1 : producer * (perProducer / 2) + i - perProducer / 2;
+						long start = System.nanoTime();
+						if (pipeline == null) {
+							bank.transfer(from, to, amount);
+							if (slot >= 0) {
+								latencies[slot] = System.nanoTime() - start;
+							}
+						} else {
+							last = pipeline.submit(bank, from, bank, to, amount);
+							if (slot >= 0) {
+								last.thenRun(() -> latencies[slot] = System.nanoTime() - start);
+							}
+						}
+					}
+					if (last != null) {
+						last.join();
+					}
+				} catch (Exception e) {
+					throw new IllegalStateException(e);
+				}
+			});
+		}
+		for (Thread worker : workers) {
+			worker.start();
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		if (pipeline != null) {
+			pipeline.close();
+		}
+		long start = Long.MAX_VALUE;
+		for (long s : measuredStart) {
+			start = Math.min(start, s);
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		String params = "producers=" + producers + (pipeline == null ? " mode=direct" : " mode=pipeline shards=" + shards + " capacity=" + capacity);
+		Harness.record("TransferPipeline", params, "ops_per_sec", latencies.length / seconds);
+		Harness.percentiles("TransferPipeline", params, latencies);
+	}
+}
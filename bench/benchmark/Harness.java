@@ -0,0 +1,200 @@
+package benchmark;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * A minimal benchmark harness: runs an operation in timed iterations after a
+ * warmup and reports the results as CSV lines of benchmark, parameters,
+ * metric and value. The benchmarks live next to the code they measure, in
+ * the bench source folder, and are run through their main methods with
+ * src and bench compiled together, e.g. java -cp out b_Money.BankBenchmark.
+ *
+ * Configured through system properties:
+ * bench.warmup (warmup iterations, default 3),
+ * bench.iterations (measured iterations, default 5),
+ * bench.time (milliseconds per iteration, default 1000) and
+ * bench.out (file to append the CSV lines to, default standard output only).
+ */
+public final class Harness {
+	private static final int WARMUP = Integer.getInteger("bench.warmup", 3);
+	private static final int ITERATIONS = Integer.getInteger("bench.iterations", 5);
+	private static final long TIME = Long.getLong("bench.time", 1000);
+	private static final String OUT = System.getProperty("bench.out");
+	private static boolean headerPrinted;
+
+	/* Keeps results alive so the JIT cannot remove the measured work. */
+	private static volatile long sink;
+
+	/**
+	 * An operation to measure.
+	 */
+	public interface Operation {
+		/**
+		 * Runs the operation once.
+		 *
+		 * @return Any value derived from the work, consumed by the harness.
+		 * @throws Exception if the operation fails.
+		 */
+		long run() throws Exception;
+	}
+
+	private Harness() {
+	}
+
+	/**
+	 * Measures an operation and reports its throughput.
+	 *
+	 * @param benchmark  The name of the benchmark.
+	 * @param params     The parameters of this run, e.g. "accounts=1000".
+	 * @param opsPerCall The number of logical operations one call performs.
+	 * @param operation  The operation to measure.
+	 * @return The measured throughput in operations per second.
+	 * @throws Exception if the operation fails.
+	 */
+	public static double measure(String benchmark, String params, long opsPerCall, Operation operation) throws Exception {
+		for (int i = 0; i < WARMUP; i++) {
+			iterate(operation);
+		}
+		long calls = 0, nanos = 0;
+		for (int i = 0; i < ITERATIONS; i++) {
+			long[] result = iterate(operation);
+			calls += result[0];
+			nanos += result[1];
+		}
+		double opsPerSecond = calls * opsPerCall * 1e9 / nanos;
+		record(benchmark, params, "ops_per_sec", opsPerSecond);
+		record(benchmark, params, "ns_per_op", nanos / (double) (calls * opsPerCall));
+		return opsPerSecond;
+	}
+
+	/**
+	 * Times a single run of an operation, for setup-heavy work such as loading
+	 * a large bank, and reports the elapsed time.
+	 *
+	 * @param benchmark The name of the benchmark.
+	 * @param params    The parameters of this run.
+	 * @param operation The operation to time.
+	 * @return The elapsed time in nanoseconds.
+	 * @throws Exception if the operation fails.
+	 */
+	public static long once(String benchmark, String params, Operation operation) throws Exception {
+		long start = System.nanoTime();
+		sink += operation.run();
+		long elapsed = System.nanoTime() - start;
+		record(benchmark, params, "elapsed_ms", elapsed / 1e6);
+		return elapsed;
+	}
+
+	/**
+	 * Reports a free-form measurement, such as a heap footprint.
+	 *
+	 * @param benchmark The name of the benchmark.
+	 * @param params    The parameters of this run.
+	 * @param metric    The name of the measured quantity.
+	 * @param value     The measured value.
+	 */
+	public static synchronized void record(String benchmark, String params, String metric, double value) {
+		String line = benchmark + "," + params + "," + metric + "," + String.format(Locale.ROOT, "%.2f", value);
+		if (!headerPrinted) {
+			System.out.println("benchmark,params,metric,value");
+			headerPrinted = true;
+		}
+		System.out.println(line);
+		if (OUT != null) {
+			try (PrintWriter out = new PrintWriter(new FileWriter(OUT, true))) {
+				out.println(line);
+			} catch (IOException e) {
+				System.err.println("Could not write " + OUT + ": " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Reports the p50, p99 and p99.9 of a set of latencies.
+	 *
+	 * @param benchmark The name of the benchmark.
+	 * @param params    The parameters of this run.
+	 * @param latencies The latencies in nanoseconds; sorted in place.
+	 */
+	public static void percentiles(String benchmark, String params, long[] latencies) {
+		Arrays.sort(latencies);
+		record(benchmark, params, "p50_ns", latencies[(int) (latencies.length * 0.5)]);
+		record(benchmark, params, "p99_ns", latencies[(int) (latencies.length * 0.99)]);
+		record(benchmark, params, "p999_ns", latencies[(int) (latencies.length * 0.999)]);
+	}
+
+	/**
+	 * Runs an operation a million times and reports the bytes the current
+	 * thread allocated meanwhile, where the JVM can count them. Measure the
+	 * operation first, so that it runs compiled.
+	 *
+	 * @param benchmark The name of the benchmark.
+	 * @param params    The parameters of this run.
+	 * @param operation The operation.
+	 * @throws Exception if the operation fails.
+	 */
+	public static void allocations(String benchmark, String params, Operation operation) throws Exception {
+		if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+			return;
+		}
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long value = 0;
+		long before = threads.getCurrentThreadAllocatedBytes();
+		for (int i = 0; i < 1000000; i++) {
+			value += operation.run();
+		}
+		long after = threads.getCurrentThreadAllocatedBytes();
+		sink = value;
+		record(benchmark, params, "bytes_per_million_ops", after - before);
+	}
+
+	/**
+	 * Gets the heap currently in use, after requesting a garbage collection.
+	 *
+	 * @return The used heap in bytes.
+	 */
+	public static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/**
+	 * Parses a comma-separated list of sizes, e.g. "1000,1000000".
+	 *
+	 * @param property The system property holding the list.
+	 * @param defaults The list to use if the property is not set.
+	 * @return The sizes.
+	 */
+	public static int[] sizes(String property, String defaults) {
+		String[] parts = System.getProperty(property, defaults).split(",");
+		int[] sizes = new int[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			sizes[i] = Integer.parseInt(parts[i].trim());
+		}
+		return sizes;
+	}
+
+	private static long[] iterate(Operation operation) throws Exception {
+		long calls = 0, value = 0;
+		long start = System.nanoTime();
+		long deadline = start + TIME * 1000000;
+		long now;
+		do {
+			for (int i = 0; i < 64; i++) {
+				value += operation.run();
+			}
+			calls += 64;
+			now = System.nanoTime();
+		} while (now < deadline);
+		sink += value;
+		return new long[] { calls, now - start };
+	}
+}
@@ -1,11 +1,99 @@
 package a_Introductory;
 
+import java.math.BigInteger;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
 public class Fibonacci {
+	/* fib(92) is the largest that fits in a long, so every long result is in this table */
+	private static final long[] LONGS = new long[93];
+	private static final int MEMO_CAPACITY = 1024;
+
+	static {
+		LONGS[1] = 1;
+		for (int i = 2; i < LONGS.length; i++) {
+			LONGS[i] = LONGS[i - 1] + LONGS[i - 2];
+		}
+	}
+
+	/* Results of fibBig past the long range; full caches stop taking new entries */
+	private final ConcurrentHashMap<Integer, BigInteger> memo = new ConcurrentHashMap<>();
+	private final int memoCapacity;
+
+	public Fibonacci() {
+		this(MEMO_CAPACITY);
+	}
+
+	Fibonacci(int memoCapacity) {
+		this.memoCapacity = memoCapacity;
+	}
+
+	/* Throws ArithmeticException past fib(46), which does not fit in an int */
 	public int fib(int n) {
-		switch (n) {
-			case 0: return 0;
-			case 1: return 1;
-			default: return (fib(n - 1) + fib(n - 2));
+		return Math.toIntExact(fibLong(n));
+	}
+
+	/* Throws ArithmeticException past fib(92), which does not fit in a long */
+	public long fibLong(int n) {
+		check(n);
+		if (n >= LONGS.length) {
+			throw new ArithmeticException("fib(" + n + ") overflows long");
+		}
+		return LONGS[n];
+	}
+
+	public BigInteger fibBig(int n) {
+		check(n);
+		if (n < LONGS.length) {
+			return BigInteger.valueOf(LONGS[n]);
+		}
+		BigInteger cached = memo.get(n);
+		if (cached != null) {
+			return cached;
+		}
+		BigInteger result = doubling(n)[0];
+		if (memo.size() < memoCapacity) {
+			memo.putIfAbsent(n, result);
+		}
+		return result;
+	}
+
+	/* The sequence fib(0), fib(1), ... up to fib(92) */
+	public LongStream longs() {
+		return LongStream.of(LONGS);
+	}
+
+	/* The whole, endless sequence fib(0), fib(1), ... */
+	public Stream<BigInteger> sequence() {
+		return Stream.iterate(new BigInteger[] { BigInteger.ZERO, BigInteger.ONE }, pair -> new BigInteger[] { pair[1], pair[0].add(pair[1]) })
+				.map(pair -> pair[0]);
+	}
+
+	/*
+	 * Fast doubling: fib(2k) = fib(k) * (2 * fib(k + 1) - fib(k)) and
+	 * fib(2k + 1) = fib(k)^2 + fib(k + 1)^2, taking the bits of n from the top.
+	 * Returns fib(n) and fib(n + 1).
+	 */
+	private static BigInteger[] doubling(int n) {
+		BigInteger a = BigInteger.ZERO, b = BigInteger.ONE;
+		for (int bit = Integer.highestOneBit(n); bit != 0; bit >>>= 1) {
+			BigInteger even = a.multiply(b.shiftLeft(1).subtract(a));
+			BigInteger odd = a.multiply(a).add(b.multiply(b));
+			if ((n & bit) == 0) {
+				a = even;
+				b = odd;
+			} else {
+				a = odd;
+				b = even.add(odd);
+			}
+		}
+		return new BigInteger[] { a, b };
+	}
+
+	private static void check(int n) {
+		if (n < 0) {
+			throw new IllegalArgumentException("Negative index: " + n);
 		}
 	}
 }
@@ -1,18 +1,35 @@
 package a_Introductory;
 
 public class Point {
-	public Integer x, y;
+	/* Primitive, so arithmetic on points neither unboxes nor boxes */
+	public int x, y;
 
-	Point(Integer x, Integer y) {
+	Point(int x, int y) {
 		this.x = x;
 		this.y = y;
 	}
 
+	/* Arithmetic throws ArithmeticException on int overflow instead of wrapping */
 	public Point add(Point p) {
-		return new Point(x + p.x, y + p.y);
+		return new Point(Math.addExact(x, p.x), Math.addExact(y, p.y));
 	}
 
 	public Point sub(Point p) {
-		return new Point(x - p.x, y - p.y);
+		return new Point(Math.subtractExact(x, p.x), Math.subtractExact(y, p.y));
 	}
-}
\ No newline at end of file
+
+	/* In-place forms for accumulating without allocating; they return this point, left unchanged on overflow */
+	public Point addInPlace(Point p) {
+		return set(Math.addExact(x, p.x), Math.addExact(y, p.y));
+	}
+
+	public Point subInPlace(Point p) {
+		return set(Math.subtractExact(x, p.x), Math.subtractExact(y, p.y));
+	}
+
+	public Point set(int x, int y) {
+		this.x = x;
+		this.y = y;
+		return this;
+	}
+}
@@ -0,0 +1,314 @@
+package a_Introductory;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/*
+ * A uniform grid index over a set of points, for range and nearest-neighbour
+ * queries without scanning every point.
+ *
+ * Points are kept in primitive coordinate columns and known by the id insert
+ * returns; ids of deleted points are reused. Each cell lists the ids of its
+ * points. The grid is sized for the bounds and the number of points given
+ * up front; points outside the bounds go to the nearest edge cell, so they
+ * are found but make those cells slower. Nearest-neighbour distances are
+ * exact for coordinates of magnitude below 2^30. Not thread-safe.
+ */
+public class PointGrid {
+	/* Points per cell the grid is sized for */
+	private static final int PER_CELL = 2;
+
+	private final long minX, minY, cell;
+	private final int cols, rows;
+	private final int[][] cells;
+	private final int[] counts;
+
+	private int[] xs, ys;
+	/* Cell of each id, or -1 for a free id */
+	private int[] cellOf;
+	private int[] free = new int[0];
+	private int frees, ids, size;
+
+	public PointGrid(int minX, int minY, int maxX, int maxY, int expectedPoints) {
+		if (maxX < minX || maxY < minY) {
+			throw new IllegalArgumentException("Empty bounds");
+		}
+		long width = (long) maxX - minX + 1, height = (long) maxY - minY + 1;
+		long cell = Math.max(1, (long) Math.ceil(Math.sqrt((double) width * height * PER_CELL / Math.max(1, expectedPoints))));
+		/* Keep the number of cells within an int, even for long narrow bounds */
+		while ((width + cell - 1) / cell * ((height + cell - 1) / cell) > Math.max(1, expectedPoints / PER_CELL) * 4L + 16) {
+			cell *= 2;
+		}
+		this.minX = minX;
+		this.minY = minY;
+		this.cell = cell;
+		this.cols = (int) ((width + this.cell - 1) / this.cell);
+		this.rows = (int) ((height + this.cell - 1) / this.cell);
+		this.cells = new int[cols * rows][];
+		this.counts = new int[cols * rows];
+		int capacity = Math.max(16, expectedPoints);
+		this.xs = new int[capacity];
+		this.ys = new int[capacity];
+		this.cellOf = new int[capacity];
+	}
+
+	/* Bulk load: point i of the columns gets id i */
+	public static PointGrid of(int[] x, int[] y) {
+		if (x.length != y.length) {
+			throw new IllegalArgumentException("Columns differ in length");
+		}
+		int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+		for (int i = 0; i < x.length; i++) {
+			minX = Math.min(minX, x[i]);
+			maxX = Math.max(maxX, x[i]);
+			minY = Math.min(minY, y[i]);
+			maxY = Math.max(maxY, y[i]);
+		}
+		PointGrid grid = x.length == 0 ? new PointGrid(0, 0, 0, 0, 0) : new PointGrid(minX, minY, maxX, maxY, x.length);
+		int n = x.length;
+		System.arraycopy(x, 0, grid.xs, 0, n);
+		System.arraycopy(y, 0, grid.ys, 0, n);
+		/* Count first, so that every cell gets an array of exactly its size */
+		for (int i = 0; i < n; i++) {
+			int c = grid.cellAt(x[i], y[i]);
+			grid.cellOf[i] = c;
+			grid.counts[c]++;
+		}
+		for (int c = 0; c < grid.cells.length; c++) {
+			if (grid.counts[c] > 0) {
+				grid.cells[c] = new int[grid.counts[c]];
+				grid.counts[c] = 0;
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			int c = grid.cellOf[i];
+			grid.cells[c][grid.counts[c]++] = i;
+		}
+		grid.ids = grid.size = n;
+		return grid;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int x(int id) {
+		live(id);
+		return xs[id];
+	}
+
+	public int y(int id) {
+		live(id);
+		return ys[id];
+	}
+
+	public int insert(int x, int y) {
+		int id;
+		if (frees > 0) {
+			id = free[--frees];
+		} else {
+			if (ids == xs.length) {
+				int capacity = xs.length * 2;
+				xs = Arrays.copyOf(xs, capacity);
+				ys = Arrays.copyOf(ys, capacity);
+				cellOf = Arrays.copyOf(cellOf, capacity);
+			}
+			id = ids++;
+		}
+		int c = cellAt(x, y);
+		xs[id] = x;
+		ys[id] = y;
+		cellOf[id] = c;
+		if (cells[c] == null) {
+			cells[c] = new int[PER_CELL * 2];
+		} else if (counts[c] == cells[c].length) {
+			cells[c] = Arrays.copyOf(cells[c], counts[c] * 2);
+		}
+		cells[c][counts[c]++] = id;
+		size++;
+		return id;
+	}
+
+	/* Returns whether the id was a point of this grid */
+	public boolean delete(int id) {
+		if (id < 0 || id >= ids || cellOf[id] < 0) {
+			return false;
+		}
+		int c = cellOf[id];
+		int[] list = cells[c];
+		for (int i = 0; i < counts[c]; i++) {
+			if (list[i] == id) {
+				list[i] = list[--counts[c]];
+				break;
+			}
+		}
+		cellOf[id] = -1;
+		if (frees == free.length) {
+			free = Arrays.copyOf(free, Math.max(16, frees * 2));
+		}
+		free[frees++] = id;
+		size--;
+		return true;
+	}
+
+	/* Passes the id of every point inside the bounding box of q, edges included, to action; returns how many */
+	public int range(Quadrilateral q, IntConsumer action) {
+		return range(q.getMinX(), q.getMinY(), q.getMaxX(), q.getMaxY(), action);
+	}
+
+	public int range(int minX, int minY, int maxX, int maxY, IntConsumer action) {
+		if (maxX < minX || maxY < minY) {
+			return 0;
+		}
+		int found = 0;
+		int col1 = col(minX), col2 = col(maxX), row1 = row(minY), row2 = row(maxY);
+		for (int row = row1; row <= row2; row++) {
+			for (int col = col1; col <= col2; col++) {
+				int c = row * cols + col;
+				int[] list = cells[c];
+				for (int i = 0; i < counts[c]; i++) {
+					int id = list[i];
+					int x = xs[id], y = ys[id];
+					if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+						action.accept(id);
+						found++;
+					}
+				}
+			}
+		}
+		return found;
+	}
+
+	/* The ids of the k points nearest to (x, y), nearest first; ties go to the lower id */
+	public int[] nearest(int x, int y, int k) {
+		if (k < 0) {
+			throw new IllegalArgumentException("Negative number of points: " + k);
+		}
+		if (k == 0 || size == 0) {
+			return new int[0];
+		}
+		Nearest nearest = new Nearest(Math.min(k, size));
+		int col = col(x), row = row(y);
+		int maxRing = Math.max(Math.max(col, cols - 1 - col), Math.max(row, rows - 1 - row));
+		for (int ring = 0; ring <= maxRing; ring++) {
+			for (int r = row - ring; r <= row + ring; r++) {
+				if (r < 0 || r >= rows) {
+					continue;
+				}
+				/* Whole rows at the top and bottom of the ring, only its two ends in between */
+				int step = r == row - ring || r == row + ring ? 1 : Math.max(1, 2 * ring);
+				for (int c = col - ring; c <= col + ring; c += step) {
+					if (c >= 0 && c < cols) {
+						nearest.scan(this, r * cols + c, x, y);
+					}
+				}
+			}
+			/* Every cell of the next ring is at least ring cells away; equally far points there may have lower ids */
+			long reach = ring * cell;
+			if (nearest.full() && nearest.worst() < reach * reach) {
+				break;
+			}
+		}
+		return nearest.sorted();
+	}
+
+	private int cellAt(int x, int y) {
+		return row(y) * cols + col(x);
+	}
+
+	private int col(int x) {
+		return (int) Math.max(0, Math.min(cols - 1, Math.floorDiv(x - minX, cell)));
+	}
+
+	private int row(int y) {
+		return (int) Math.max(0, Math.min(rows - 1, Math.floorDiv(y - minY, cell)));
+	}
+
+	private void live(int id) {
+		if (id < 0 || id >= ids || cellOf[id] < 0) {
+			throw new IllegalArgumentException("No point " + id);
+		}
+	}
+
+	/* The k nearest points so far, as a max-heap of ids and squared distances */
+	private static class Nearest {
+		final int[] ids;
+		final long[] distances;
+		int count;
+
+		Nearest(int k) {
+			ids = new int[k];
+			distances = new long[k];
+		}
+
+		boolean full() {
+			return count == ids.length;
+		}
+
+		long worst() {
+			return distances[0];
+		}
+
+		void scan(PointGrid grid, int c, int x, int y) {
+			int[] list = grid.cells[c];
+			for (int i = 0; i < grid.counts[c]; i++) {
+				int id = list[i];
+				long dx = (long) grid.xs[id] - x, dy = (long) grid.ys[id] - y;
+				offer(id, dx * dx + dy * dy);
+			}
+		}
+
+		void offer(int id, long distance) {
+			if (count < ids.length) {
+				ids[count] = id;
+				distances[count] = distance;
+				for (int i = count++; i > 0 && farther(i, (i - 1) / 2); i = (i - 1) / 2) {
+					swap(i, (i - 1) / 2);
+				}
+			} else if (count > 0 && (distance < distances[0] || (distance == distances[0] && id < ids[0]))) {
+				ids[0] = id;
+				distances[0] = distance;
+				for (int i = 0; ; ) {
+					int child = 2 * i + 1;
+					if (child >= count) {
+						break;
+					}
+					if (child + 1 < count && farther(child + 1, child)) {
+						child++;
+					}
+					if (!farther(child, i)) {
+						break;
+					}
+					swap(i, child);
+					i = child;
+				}
+			}
+		}
+
+		int[] sorted() {
+			Integer[] order = new Integer[count];
+			for (int i = 0; i < count; i++) {
+				order[i] = i;
+			}
+			Arrays.sort(order, (a, b) -> farther(a, b) ? 1 : farther(b, a) ? -1 : 0);
+			int[] result = new int[count];
+			for (int i = 0; i < count; i++) {
+				result[i] = ids[order[i]];
+			}
+			return result;
+		}
+
+		private boolean farther(int i, int j) {
+			return distances[i] > distances[j] || (distances[i] == distances[j] && ids[i] > ids[j]);
+		}
+
+		private void swap(int i, int j) {
+			int id = ids[i];
+			ids[i] = ids[j];
+			ids[j] = id;
+			long distance = distances[i];
+			distances[i] = distances[j];
+			distances[j] = distance;
+		}
+	}
+}
@@ -34,4 +34,21 @@ public class Quadrilateral {
 				l1.isSameLengthAs(l3) &&
 				l1.isSameLengthAs(l4);
 	}
+
+	/* The bounding box of the corners */
+	public int getMinX() {
+		return Math.min(Math.min(p1.x, p2.x), Math.min(p3.x, p4.x));
+	}
+
+	public int getMinY() {
+		return Math.min(Math.min(p1.y, p2.y), Math.min(p3.y, p4.y));
+	}
+
+	public int getMaxX() {
+		return Math.max(Math.max(p1.x, p2.x), Math.max(p3.x, p4.x));
+	}
+
+	public int getMaxY() {
+		return Math.max(Math.max(p1.y, p2.y), Math.max(p3.y, p4.y));
+	}
 }
@@ -0,0 +1,93 @@
+package a_Introductory;
+
+import java.util.stream.IntStream;
+
+/*
+ * Classifies many quadrilaterals at once from primitive coordinate columns:
+ * quadrilateral i has its corners at x[4i..4i+3], y[4i..4i+3], in the same
+ * order as the points given to Quadrilateral. Nothing is allocated per shape,
+ * and lengths are compared squared and exactly instead of through sqrt.
+ *
+ * Results match Quadrilateral.isRectangle and isSquare for coordinates of
+ * magnitude below 2^14. Beyond that, Quadrilateral's 1e-5 tolerance on
+ * lengths can equate different lengths, while this class stays exact for
+ * all int coordinates: side spans reach 2^32, so once one reaches 2^31 the
+ * squares and dot products are taken in 128 bits.
+ */
+public class QuadrilateralBatch {
+	public static final byte OTHER = 0, RECTANGLE = 1, SQUARE = 2;
+
+	/* Quadrilaterals classified per task in parallel mode */
+	private static final int CHUNK = 4096;
+
+	private QuadrilateralBatch() {
+	}
+
+	/* Writes OTHER, RECTANGLE or SQUARE for each quadrilateral to kinds; a square is also a rectangle */
+	public static void classify(int[] x, int[] y, byte[] kinds) {
+		check(x, y, kinds);
+		classify(x, y, kinds, 0, kinds.length);
+	}
+
+	/* As classify, spread over the common fork-join pool */
+	public static void classifyParallel(int[] x, int[] y, byte[] kinds) {
+		check(x, y, kinds);
+		int chunks = (kinds.length + CHUNK - 1) / CHUNK;
+		IntStream.range(0, chunks).parallel().forEach(chunk -> {
+			int from = chunk * CHUNK;
+			classify(x, y, kinds, from, Math.min(kinds.length, from + CHUNK));
+		});
+	}
+
+	public static byte classify(int x1, int y1, int x2, int y2, int x3, int y3, int x4, int y4) {
+		long ax = (long) x2 - x1, ay = (long) y2 - y1;
+		long bx = (long) x3 - x2, by = (long) y3 - y2;
+		long cx = (long) x4 - x3, cy = (long) y4 - y3;
+		long dx = (long) x1 - x4, dy = (long) y1 - y4;
+		/* Below 2^31, every product and sum of two products fits in a long */
+		if ((Math.abs(ax) | Math.abs(ay) | Math.abs(bx) | Math.abs(by) | Math.abs(cx) | Math.abs(cy) | Math.abs(dx) | Math.abs(dy)) >= 1L << 31) {
+			return classifyWide(ax, ay, bx, by, cx, cy, dx, dy);
+		}
+		if (ax * bx + ay * by != 0 || bx * cx + by * cy != 0 || cx * dx + cy * dy != 0 || dx * ax + dy * ay != 0) {
+			return OTHER;
+		}
+		long a = ax * ax + ay * ay;
+		if (a != bx * bx + by * by || a != cx * cx + cy * cy || a != dx * dx + dy * dy) {
+			return RECTANGLE;
+		}
+		return SQUARE;
+	}
+
+	private static byte classifyWide(long ax, long ay, long bx, long by, long cx, long cy, long dx, long dy) {
+		if (!equal(ax, bx, ay, by, 0, 0, 0, 0) || !equal(bx, cx, by, cy, 0, 0, 0, 0)
+				|| !equal(cx, dx, cy, dy, 0, 0, 0, 0) || !equal(dx, ax, dy, ay, 0, 0, 0, 0)) {
+			return OTHER;
+		}
+		if (!equal(ax, ax, ay, ay, bx, bx, by, by) || !equal(ax, ax, ay, ay, cx, cx, cy, cy)
+				|| !equal(ax, ax, ay, ay, dx, dx, dy, dy)) {
+			return RECTANGLE;
+		}
+		return SQUARE;
+	}
+
+	/* Whether p*q + r*s == t*u + v*w, in 128 bits; the factors are below 2^33 in magnitude */
+	private static boolean equal(long p, long q, long r, long s, long t, long u, long v, long w) {
+		long pq = p * q, rs = r * s, tu = t * u, vw = v * w;
+		long left = pq + rs, right = tu + vw;
+		long leftHigh = Math.multiplyHigh(p, q) + Math.multiplyHigh(r, s) + (Long.compareUnsigned(left, pq) < 0 ? 1 : 0);
+		long rightHigh = Math.multiplyHigh(t, u) + Math.multiplyHigh(v, w) + (Long.compareUnsigned(right, tu) < 0 ? 1 : 0);
+		return left == right && leftHigh == rightHigh;
+	}
+
+	private static void classify(int[] x, int[] y, byte[] kinds, int from, int to) {
+		for (int i = from, c = 4 * from; i < to; i++, c += 4) {
+			kinds[i] = classify(x[c], y[c], x[c + 1], y[c + 1], x[c + 2], y[c + 2], x[c + 3], y[c + 3]);
+		}
+	}
+
+	private static void check(int[] x, int[] y, byte[] kinds) {
+		if (x.length < 4L * kinds.length || y.length < 4L * kinds.length) {
+			throw new IllegalArgumentException("Need 4 corners for each of " + kinds.length + " quadrilaterals");
+		}
+	}
+}
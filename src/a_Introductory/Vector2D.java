@@ -1,24 +1,52 @@
 package a_Introductory;
 
 public class Vector2D {
-	public Integer x, y;
+	/* Primitive, so arithmetic on vectors neither unboxes nor boxes */
+	public int x, y;
 
-	Vector2D(Integer x, Integer y) {
+	Vector2D(int x, int y) {
 		this.x = x;
 		this.y = y;
 	}
 
 	/* Construct Vector2D from two points */
 	Vector2D(Point p1, Point p2) {
-		this.x = p2.x - p1.x;
-		this.y = p2.y - p1.y;
+		set(p1, p2);
 	}
 
+	/* Throws ArithmeticException if the dot product does not fit in an int */
 	public int dotProduct(Vector2D v) {
-		return (x * v.x) + (y * v.y); // Corrected dot product calculation
+		return Math.toIntExact(dotProductLong(v));
 	}
 
+	/*
+	 * Each product fits in a long, but their sum overflows when both are 2^62,
+	 * as with all components Integer.MIN_VALUE; that throws ArithmeticException
+	 */
+	public long dotProductLong(Vector2D v) {
+		return Math.addExact((long) x * v.x, (long) y * v.y);
+	}
+
+	/* Exact for all int components: the products are compared, not summed */
 	public boolean isOrthogonalTo(Vector2D v) {
-		return (dotProduct(v) == 0); // Corrected orthogonality check
+		return ((long) x * v.x) == -((long) y * v.y);
+	}
+
+	/*
+	 * In-place forms for reusing one vector without allocating; they return this vector.
+	 * Like Point, they throw ArithmeticException on int overflow and leave the vector unchanged.
+	 */
+	public Vector2D set(Point p1, Point p2) {
+		int dx = Math.subtractExact(p2.x, p1.x);
+		this.y = Math.subtractExact(p2.y, p1.y);
+		this.x = dx;
+		return this;
+	}
+
+	public Vector2D addInPlace(Vector2D v) {
+		int sx = Math.addExact(x, v.x);
+		y = Math.addExact(y, v.y);
+		x = sx;
+		return this;
 	}
 }
@@ -1,10 +1,27 @@
 package b_Money;
 
+import java.util.Collections;
 import java.util.Hashtable;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class Account {
-	private Money content;
-	private Hashtable<String, TimedPayment> timedpayments = new Hashtable<>();
+	private static final AtomicLong ORDINALS = new AtomicLong();
+
+	/*
+	 * The balance, newest first, with the older balances open balance snapshots
+	 * may still read. Updates hold this account's monitor; reads do not lock.
+	 */
+	private volatile Version content;
+	private final long ordinal = ORDINALS.getAndIncrement();
+	private final String name;
+	private final Bank bank;
+	/* Created with the first timed payment, since most accounts never have one. */
+	private volatile Hashtable<String, TimedPayment> timedpayments;
+	/* Null for an account without limits, so that debits cost it one read. */
+	private volatile Limits limits;
+	/* The debits counted against the per-tick limit, and their tick; guarded by this account's monitor. */
+	private long spent, spentTick;
 
 	/**
 	 * Creates an account with a specified name and currency.
@@ -13,7 +30,74 @@ public class Account {
 	 * @param currency The currency of the account.
 	 */
 	public Account(String name, Currency currency) {
-		this.content = new Money(0, currency);
+		this(name, currency, null);
+	}
+
+	/**
+	 * Creates an account held by a bank, which journals its balance changes.
+	 *
+	 * @param name     The name of the account holder.
+	 * @param currency The currency of the account.
+	 * @param bank     The bank holding the account.
+	 */
+	Account(String name, Currency currency, Bank bank) {
+		this.name = name;
+		this.bank = bank;
+		this.content = new Version(new Money(0, currency), 0, 0, 0, null);
+	}
+
+	/* AccountLimits in this account's minor units. */
+	private static final class Limits {
+		final AccountLimits source;
+		final long floor, perTick;
+
+		Limits(AccountLimits source, Currency currency) {
+			this.source = source;
+			this.floor = source.getFloor() == null ? Long.MIN_VALUE : source.getFloor().amountIn(currency);
+			this.perTick = source.getPerTick() == null ? Long.MAX_VALUE : source.getPerTick().amountIn(currency);
+		}
+	}
+
+	/*
+	 * A balance after a change, linked to the older balances still visible to
+	 * snapshots. Versions are linked in the order they were written, so their
+	 * clocks never increase along the chain, but their epochs may: an
+	 * operation of an older epoch can still be running when a newer one writes.
+	 */
+	private static final class Version {
+		final Money balance;
+		/* The change, in minor units, and the epoch of the operation making it. */
+		final long delta, epoch;
+		/* The epoch clock when the change was written. */
+		final long clock;
+		/* Cut once no open snapshot can reach past this version. */
+		Version older;
+
+		Version(Money balance, long delta, long epoch, long clock, Version older) {
+			this.balance = balance;
+			this.delta = delta;
+			this.epoch = epoch;
+			this.clock = clock;
+			this.older = older;
+		}
+	}
+
+	/**
+	 * Gets the name of the account holder, which is the account ID in its bank.
+	 *
+	 * @return The name of the account holder.
+	 */
+	String getName() {
+		return name;
+	}
+
+	/**
+	 * Gets the number of this account, unique among all accounts and fixed for its lifetime.
+	 *
+	 * @return The account ordinal.
+	 */
+	long getOrdinal() {
+		return ordinal;
 	}
 
 	/**
@@ -27,8 +111,22 @@ public class Account {
 	 * @param toaccount   The ID of the receiving account.
 	 */
 	public void addTimedPayment(String id, Integer interval, Integer next, Money amount, Bank tobank, String toaccount) {
-		TimedPayment tp = new TimedPayment(interval, next, amount, this, tobank, toaccount);
-		timedpayments.put(id, tp);
+		putTimedPayment(id, interval, next, amount, tobank, toaccount);
+	}
+
+	/**
+	 * Adds a timed payment and returns it, so that a Bank can schedule it.
+	 * A payment previously registered under the same ID is cancelled.
+	 *
+	 * @return The new timed payment.
+	 */
+	TimedPayment putTimedPayment(String id, Integer interval, Integer next, Money amount, Bank tobank, String toaccount) {
+		TimedPayment tp = new TimedPayment(id, interval, next, amount, this, tobank, toaccount);
+		TimedPayment previous = timedPayments().put(id, tp);
+		if (previous != null) {
+			previous.cancel();
+		}
+		return tp;
 	}
 
 	/**
@@ -37,7 +135,11 @@ public class Account {
 	 * @param id The ID of the timed payment to remove.
 	 */
 	public void removeTimedPayment(String id) {
-		timedpayments.remove(id);
+		Hashtable<String, TimedPayment> table = timedpayments;
+		TimedPayment tp = table == null ? null : table.remove(id);
+		if (tp != null) {
+			tp.cancel();
+		}
 	}
 
 	/**
@@ -47,14 +149,41 @@ public class Account {
 	 * @return True if it exists, false otherwise.
 	 */
 	public boolean timedPaymentExists(String id) {
-		return timedpayments.containsKey(id);
+		Hashtable<String, TimedPayment> table = timedpayments;
+		return table != null && table.containsKey(id);
+	}
+
+	/**
+	 * Gets the timed payments of this account by ID.
+	 *
+	 * @return The timed payments.
+	 */
+	Map<String, TimedPayment> getTimedPayments() {
+		Hashtable<String, TimedPayment> table = timedpayments;
+		return table == null ? Collections.emptyMap() : table;
+	}
+
+	/*
+	 * Gets the table of timed payments, creating it on first use.
+	 */
+	private Hashtable<String, TimedPayment> timedPayments() {
+		Hashtable<String, TimedPayment> table = timedpayments;
+		if (table == null) {
+			synchronized (this) {
+				table = timedpayments;
+				if (table == null) {
+					timedpayments = table = new Hashtable<>();
+				}
+			}
+		}
+		return table;
 	}
 
 	/**
 	 * A time unit passes in the system, triggering any due timed payments.
 	 */
 	public void tick() {
-		for (TimedPayment tp : timedpayments.values()) {
+		for (TimedPayment tp : getTimedPayments().values()) {
 			tp.tick();
 		}
 	}
@@ -65,16 +194,263 @@ public class Account {
 	 * @param money The money to deposit.
 	 */
 	public void deposit(Money money) {
-		content = content.add(money);
+		long epoch = Epoch.enter();
+		Journal journal = bank == null ? null : bank.openGroup();
+		long seq;
+		try {
+			deposit(money, epoch);
+		} finally {
+			seq = Journal.closeGroup(journal);
+			Epoch.exit(epoch);
+		}
+		Journal.await(journal, seq);
 	}
 
 	/**
 	 * Withdraws money from the account.
 	 *
 	 * @param money The money to withdraw.
+	 * @throws LimitExceededException if the withdrawal would break the account's limits.
 	 */
 	public void withdraw(Money money) {
-		content = content.sub(money);
+		long epoch = Epoch.enter();
+		Journal journal = bank == null ? null : bank.openGroup();
+		long seq;
+		try {
+			withdraw(money, epoch);
+		} finally {
+			seq = Journal.closeGroup(journal);
+			Epoch.exit(epoch);
+		}
+		Journal.await(journal, seq);
+	}
+
+	/**
+	 * Deposits money as part of an operation in an epoch.
+	 *
+	 * @param money The money to deposit.
+	 * @param epoch The epoch the operation entered.
+	 */
+	synchronized void deposit(Money money, long epoch) {
+		update(content.balance.add(money), epoch);
+	}
+
+	/**
+	 * Withdraws money as part of an operation in an epoch.
+	 *
+	 * @param money The money to withdraw.
+	 * @param epoch The epoch the operation entered.
+	 */
+	synchronized void withdraw(Money money, long epoch) {
+		Money balance = content.balance;
+		Money updated = balance.sub(money);
+		limit(Math.subtractExact(balance.getAmountLong(), updated.getAmountLong()), updated.getAmountLong());
+		update(updated, epoch);
+	}
+
+	/**
+	 * Changes the balance by an amount in this account's own currency.
+	 *
+	 * @param delta The change in minor units, negative for a withdrawal.
+	 */
+	void adjust(long delta) {
+		long epoch = Epoch.enter();
+		Journal journal = bank == null ? null : bank.openGroup();
+		long seq;
+		try {
+			adjust(delta, epoch);
+		} finally {
+			seq = Journal.closeGroup(journal);
+			Epoch.exit(epoch);
+		}
+		Journal.await(journal, seq);
+	}
+
+	/**
+	 * Changes the balance as part of an operation in an epoch.
+	 *
+	 * @param delta The change in minor units, negative for a withdrawal.
+	 * @param epoch The epoch the operation entered.
+	 */
+	synchronized void adjust(long delta, long epoch) {
+		Money balance = content.balance;
+		update(new Money(Math.addExact(balance.getAmountLong(), delta), balance.getCurrency()), epoch);
+	}
+
+	/**
+	 * Changes the balance as part of an operation in an epoch like adjust,
+	 * but holding a debit to the account's limits.
+	 *
+	 * @param delta The change in minor units, negative for a debit.
+	 * @param epoch The epoch the operation entered.
+	 * @throws LimitExceededException if a debit would break the limits.
+	 */
+	synchronized void post(long delta, long epoch) {
+		Money balance = content.balance;
+		long updated = Math.addExact(balance.getAmountLong(), delta);
+		limit(-delta, updated);
+		update(new Money(updated, balance.getCurrency()), epoch);
+	}
+
+	/**
+	 * Takes back a debit made by post in this tick, with its use of the per-tick limit.
+	 *
+	 * @param delta The change post made, negative.
+	 * @param epoch The epoch the operation entered.
+	 */
+	synchronized void unpost(long delta, long epoch) {
+		adjust(-delta, epoch);
+		if (limits != null && spentTick == ticks()) {
+			spent = Math.addExact(spent, delta);
+		}
+	}
+
+	/**
+	 * Sets or removes the limits on debits from this account, journaling the
+	 * change first if the bank keeps a journal. The debits already made in
+	 * the current tick count toward new limits.
+	 *
+	 * @param limits The limits, or null for none.
+	 * @return The journal's sequence number for the change, to await once
+	 *         the monitor is released, or 0 without a journal.
+	 */
+	synchronized long setLimits(AccountLimits limits) {
+		long seq = bank == null ? 0 : bank.journalLimits(name, limits);
+		this.limits = limits == null ? null : new Limits(limits, content.balance.getCurrency());
+		return seq;
+	}
+
+	/**
+	 * Gets the limits on debits from this account.
+	 *
+	 * @return The limits, or null if there are none.
+	 */
+	AccountLimits getLimits() {
+		Limits limits = this.limits;
+		return limits == null ? null : limits.source;
+	}
+
+	/**
+	 * Checks whether the account has a floor, below which its balance may not fall.
+	 *
+	 * @return True if the account's limits include a floor.
+	 */
+	boolean hasFloor() {
+		Limits limits = this.limits;
+		return limits != null && limits.source.getFloor() != null;
+	}
+
+	/**
+	 * Checks a debit against the limits and counts it toward the current
+	 * tick's. Callers hold this account's monitor.
+	 *
+	 * @param debit   The money leaving the account, in minor units.
+	 * @param balance The balance after the debit.
+	 * @throws LimitExceededException if the debit would break the limits.
+	 */
+	private void limit(long debit, long balance) {
+		Limits limits = this.limits;
+		if (limits == null || debit <= 0) {
+			return;
+		}
+		if (balance < limits.floor) {
+			throw new LimitExceededException(name, "Balance of " + name + " would fall below " + limits.source.getFloor());
+		}
+		long tick = ticks();
+		long total = Math.addExact(tick == spentTick ? spent : 0, debit);
+		if (total > limits.perTick) {
+			throw new LimitExceededException(name, "Debits from " + name + " would exceed " + limits.source.getPerTick() + " this tick");
+		}
+		spent = total;
+		spentTick = tick;
+	}
+
+	/**
+	 * Gets the tick the bank is in, which per-tick limits are counted against.
+	 *
+	 * @return The number of ticks the bank has done, or 0 outside a bank.
+	 */
+	private long ticks() {
+		return bank == null ? 0 : bank.ticks();
+	}
+
+	/**
+	 * Sets the balance without journaling, when restoring a snapshot.
+	 *
+	 * @param balance The balance in minor units of this account's currency.
+	 */
+	synchronized void restore(long balance) {
+		content = new Version(new Money(balance, content.balance.getCurrency()), 0, 0, 0, null);
+	}
+
+	/**
+	 * Replaces the balance, journaling the change first if the bank keeps a journal.
+	 * The previous versions are kept only while an open snapshot may need them.
+	 * Callers hold this account's monitor.
+	 *
+	 * @param updated The new balance.
+	 * @param epoch   The epoch of the operation making the change.
+	 */
+	private void update(Money updated, long epoch) {
+		Version current = content;
+		long delta = Math.subtractExact(updated.getAmountLong(), current.balance.getAmountLong());
+		if (bank != null) {
+			bank.journalAdjust(name, delta, epoch);
+		}
+		/* Read the clock before the open snapshots, so a snapshot opened in between sees this change. */
+		long clock = Epoch.now();
+		long oldest = Epoch.oldestReader();
+		if (oldest == Long.MAX_VALUE) {
+			content = new Version(updated, delta, epoch, clock, null);
+			return;
+		}
+		long newest = Epoch.newestReader();
+		Version version;
+		if (epoch > newest && current.epoch > newest && current.clock > newest) {
+			/* No open snapshot tells this change apart from the previous one, so merge them. */
+			version = new Version(updated, Math.addExact(current.delta, delta), Math.max(epoch, current.epoch), clock, current.older);
+		} else {
+			version = new Version(updated, delta, epoch, clock, current);
+		}
+		for (Version older = version; older != null; older = older.older) {
+			if (older.clock <= oldest) {
+				older.older = null;
+				break;
+			}
+		}
+		content = version;
+	}
+
+	/**
+	 * Moves money from this account to another one as a single step.
+	 * Both monitors are taken in creation order, so concurrent transfers
+	 * in opposite directions cannot deadlock.
+	 *
+	 * @param to    The receiving account.
+	 * @param money The money to transfer.
+	 */
+	void transferTo(Account to, Money money) {
+		Account first = ordinal < to.ordinal ? this : to;
+		Account second = first == this ? to : this;
+		long epoch = Epoch.enter();
+		Journal journal = bank == null ? null : bank.openGroup();
+		Journal tojournal = to.bank == null || to.bank == bank ? null : to.bank.openGroup();
+		long seq, toseq;
+		try {
+			synchronized (first) {
+				synchronized (second) {
+					withdraw(money, epoch);
+					to.deposit(money, epoch);
+				}
+			}
+		} finally {
+			toseq = Journal.closeGroup(tojournal);
+			seq = Journal.closeGroup(journal);
+			Epoch.exit(epoch);
+		}
+		/* Wait for the disk only after letting go of both accounts. */
+		Journal.await(journal, seq);
+		Journal.await(tojournal, toseq);
 	}
 
 	/**
@@ -83,12 +459,36 @@ public class Account {
 	 * @return The current balance.
 	 */
 	public Money getBalance() {
-		return content;
+		return content.balance;
 	}
 
-	/* Everything below belongs to the private inner class, TimedPayment */
-	private class TimedPayment {
+	/**
+	 * Gets the balance of the account as seen by a snapshot.
+	 *
+	 * @param epoch The epoch of an open snapshot.
+	 * @return The balance as of the epoch.
+	 */
+	Money getBalance(long epoch) {
+		long late = 0;
+		Version version = content;
+		/*
+		 * The newest version written before the snapshot was opened holds its balance,
+		 * plus the changes of operations of its epoch that were still running then.
+		 */
+		for (; version.clock > epoch; version = version.older) {
+			if (version.epoch <= epoch) {
+				late = Math.addExact(late, version.delta);
+			}
+		}
+		return late == 0 ? version.balance : new Money(Math.addExact(version.balance.getAmountLong(), late), version.balance.getCurrency());
+	}
+
+	/* Everything below belongs to the inner class, TimedPayment */
+	class TimedPayment {
+		private final String id;
 		private int interval, next;
+		private volatile boolean cancelled;
+		private long due;
 		private Account fromaccount;
 		private Money amount;
 		private Bank tobank;
@@ -99,6 +499,7 @@ public class Account {
 		 *
 		 * [Change] Ensures that 'tobank' is not null to prevent NullPointerException.
 		 *
+		 * @param id          The ID of the payment.
 		 * @param interval    Interval between payments.
 		 * @param next        Ticks until next payment.
 		 * @param amount      Amount to be transferred.
@@ -106,7 +507,8 @@ public class Account {
 		 * @param tobank      Bank to which funds are transferred.
 		 * @param toaccount   Account to which funds are transferred.
 		 */
-		TimedPayment(Integer interval, Integer next, Money amount, Account fromaccount, Bank tobank, String toaccount) {
+		TimedPayment(String id, Integer interval, Integer next, Money amount, Account fromaccount, Bank tobank, String toaccount) {
+			this.id = id;
 			this.interval = interval;
 			this.next = next;
 			this.amount = amount;
@@ -123,20 +525,167 @@ public class Account {
 		public Boolean tick() {
 			if (next == 0) {
 				next = interval;
-
-				fromaccount.withdraw(amount);
-				if (tobank != null) { // [Change] Added null check for 'tobank'.
-					try {
-						tobank.deposit(toaccount, amount);
-					} catch (AccountDoesNotExistException e) {
-						fromaccount.deposit(amount);
-					}
-				}
+				pay();
 				return true;
 			} else {
 				next--;
 				return false;
 			}
 		}
+
+		/**
+		 * Moves the amount from the paying account to the receiving account,
+		 * refunding the paying account if the receiver does not exist. The
+		 * payment is skipped if it would break the paying account's limits.
+		 *
+		 * @return True if the payment was made, false if skipped or refunded.
+		 */
+		boolean pay() {
+			long epoch = Epoch.enter();
+			Journal journal = bank == null ? null : bank.openGroup();
+			Journal tojournal = tobank == null || tobank == bank ? null : tobank.openGroup();
+			boolean paid;
+			long seq, toseq;
+			try {
+				paid = pay(epoch);
+			} finally {
+				toseq = Journal.closeGroup(tojournal);
+				seq = Journal.closeGroup(journal);
+				Epoch.exit(epoch);
+			}
+			Journal.await(journal, seq);
+			Journal.await(tojournal, toseq);
+			return paid;
+		}
+
+		/**
+		 * Pays as part of an operation in an epoch, so that snapshots see
+		 * the withdrawal and the deposit together.
+		 *
+		 * @param epoch The epoch the operation entered.
+		 * @return True if the payment was made, false if skipped or refunded.
+		 */
+		boolean pay(long epoch) {
+			try {
+				if (bank == null) {
+					fromaccount.withdraw(amount, epoch);
+				} else {
+					bank.withdraw(fromaccount, amount, epoch);
+				}
+			} catch (LimitExceededException e) {
+				return false;
+			}
+			if (tobank != null && !tobank.tryDeposit(toaccount, amount, epoch)) { // [Change] Added null check for 'tobank'.
+				fromaccount.deposit(amount, epoch);
+				return false;
+			}
+			return true;
+		}
+
+		/**
+		 * Gets the number of ticks from one payment to the next.
+		 *
+		 * @return The payment period in ticks.
+		 */
+		int period() {
+			return interval + 1;
+		}
+
+		/**
+		 * Gets the number of ticks until the first payment.
+		 *
+		 * @return The ticks until this payment is first due.
+		 */
+		int firstDue() {
+			return next + 1;
+		}
+
+		/**
+		 * Gets the tick this payment is next due at in its bank's schedule.
+		 *
+		 * @return The due tick.
+		 */
+		long getDue() {
+			return due;
+		}
+
+		/**
+		 * Sets the tick this payment is next due at in its bank's schedule.
+		 *
+		 * @param due The due tick.
+		 */
+		void setDue(long due) {
+			this.due = due;
+		}
+
+		/**
+		 * Gets the ID of the payment.
+		 *
+		 * @return The ID.
+		 */
+		String getId() {
+			return id;
+		}
+
+		/**
+		 * Gets the interval between payments.
+		 *
+		 * @return The interval in ticks.
+		 */
+		int getInterval() {
+			return interval;
+		}
+
+		/**
+		 * Gets the paying account.
+		 *
+		 * @return The paying account.
+		 */
+		Account getFromAccount() {
+			return fromaccount;
+		}
+
+		/**
+		 * Gets the amount paid each time.
+		 *
+		 * @return The amount.
+		 */
+		Money getAmount() {
+			return amount;
+		}
+
+		/**
+		 * Gets the bank of the receiving account.
+		 *
+		 * @return The receiving bank, or null if there is none.
+		 */
+		Bank getToBank() {
+			return tobank;
+		}
+
+		/**
+		 * Gets the ID of the receiving account.
+		 *
+		 * @return The receiving account ID.
+		 */
+		String getToAccount() {
+			return toaccount;
+		}
+
+		/**
+		 * Marks this payment as removed, so a schedule holding it skips it.
+		 */
+		void cancel() {
+			cancelled = true;
+		}
+
+		/**
+		 * Checks if this payment has been removed.
+		 *
+		 * @return True if cancelled, false otherwise.
+		 */
+		boolean isCancelled() {
+			return cancelled;
+		}
 	}
 }
@@ -0,0 +1,76 @@
+package b_Money;
+
+/**
+ * A resolved reference to an account in a Bank, obtained from Bank.handle.
+ *
+ * Operations through a handle do the same as the Bank operations taking
+ * the account's ID, including journaling and metrics, but go straight to
+ * the account instead of looking it up first. They cannot fail for a
+ * missing account, so they throw no AccountDoesNotExistException.
+ */
+public final class AccountHandle {
+	private final Bank bank;
+	private final Account account;
+
+	AccountHandle(Bank bank, Account account) {
+		this.bank = bank;
+		this.account = account;
+	}
+
+	/**
+	 * Gets the bank of the account.
+	 *
+	 * @return The bank.
+	 */
+	public Bank getBank() {
+		return bank;
+	}
+
+	/**
+	 * Gets the ID of the account in its bank.
+	 *
+	 * @return The account ID.
+	 */
+	public String getId() {
+		return account.getName();
+	}
+
+	/**
+	 * Deposits money into the account.
+	 *
+	 * @param money The money to deposit.
+	 */
+	public void deposit(Money money) {
+		bank.deposit(account, money);
+	}
+
+	/**
+	 * Withdraws money from the account.
+	 *
+	 * @param money The money to withdraw.
+	 * @throws LimitExceededException if the withdrawal would break the account's limits.
+	 */
+	public void withdraw(Money money) {
+		bank.withdraw(account, money);
+	}
+
+	/**
+	 * Gets the balance of the account.
+	 *
+	 * @return The balance, in the currency of the bank.
+	 */
+	public Money getBalance() {
+		return account.getBalance();
+	}
+
+	/**
+	 * Transfers money from this account to another, atomically like Bank.transfer.
+	 *
+	 * @param to     The receiving account, in any bank.
+	 * @param amount The amount of money to transfer.
+	 * @throws LimitExceededException if the debit would break this account's limits.
+	 */
+	public void transferTo(AccountHandle to, Money amount) {
+		bank.transfer(account, to.account, amount);
+	}
+}
@@ -0,0 +1,118 @@
+package b_Money;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * An open-addressing map from account IDs to dense slot numbers, kept in two
+ * flat arrays instead of one entry object per account.
+ *
+ * Lookups take no lock: a key is published with release semantics after its
+ * slot, and a grown table is published as a whole. Inserts are serialized by
+ * the caller.
+ */
+class AccountIndex {
+	private static final VarHandle KEYS = MethodHandles.arrayElementVarHandle(String[].class);
+
+	/* Keys and slots of one table; replaced as a whole when growing. */
+	private static final class Table {
+		final String[] keys;
+		final int[] slots;
+		final int mask;
+
+		Table(int capacity) {
+			keys = new String[capacity];
+			slots = new int[capacity];
+			mask = capacity - 1;
+		}
+	}
+
+	private volatile Table table;
+	private int size;
+
+	/**
+	 * Creates an index with room for a number of IDs.
+	 *
+	 * @param expected The number of IDs to make room for.
+	 */
+	AccountIndex(int expected) {
+		table = new Table(capacityFor(expected));
+	}
+
+	/**
+	 * Gets the slot of an ID.
+	 *
+	 * @param key The account ID.
+	 * @return The slot, or -1 if the ID is not in the index.
+	 */
+	int get(String key) {
+		Table t = table;
+		for (int i = spread(key.hashCode()) & t.mask; ; i = (i + 1) & t.mask) {
+			String k = (String) KEYS.getAcquire(t.keys, i);
+			if (k == null) {
+				return -1;
+			}
+			if (k.equals(key)) {
+				return t.slots[i];
+			}
+		}
+	}
+
+	/**
+	 * Adds an ID with the next free slot. Callers must not insert concurrently.
+	 *
+	 * @param key The account ID.
+	 * @return The new slot, or -1 if the ID is already in the index.
+	 */
+	int insert(String key) {
+		if (get(key) >= 0) {
+			return -1;
+		}
+		if ((size + 1) * 2 > table.keys.length) {
+			grow();
+		}
+		put(table, key, size);
+		return size++;
+	}
+
+	/**
+	 * Gets the number of IDs in the index.
+	 *
+	 * @return The number of IDs.
+	 */
+	int size() {
+		return size;
+	}
+
+	private void grow() {
+		Table old = table;
+		Table larger = new Table(old.keys.length * 2);
+		for (int i = 0; i < old.keys.length; i++) {
+			if (old.keys[i] != null) {
+				put(larger, old.keys[i], old.slots[i]);
+			}
+		}
+		table = larger;
+	}
+
+	private static void put(Table t, String key, int slot) {
+		int i = spread(key.hashCode()) & t.mask;
+		while (t.keys[i] != null) {
+			i = (i + 1) & t.mask;
+		}
+		t.slots[i] = slot;
+		KEYS.setRelease(t.keys, i, key);
+	}
+
+	private static int spread(int h) {
+		return h ^ (h >>> 16);
+	}
+
+	private static int capacityFor(int expected) {
+		int capacity = 16;
+		while (capacity < expected * 2L && capacity < 1 << 30) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+}
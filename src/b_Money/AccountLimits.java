@@ -0,0 +1,48 @@
+package b_Money;
+
+/**
+ * Limits on the money that may leave an account: a floor its balance may
+ * not fall below, and a most that may be debited from it per tick of its
+ * bank. Either may be left out.
+ *
+ * Every debit counts toward the per-tick limit: withdrawals, transfers out,
+ * timed payments and net debits of a transfer batch. Deposits do not give
+ * the allowance back. Limits are checked while the account is locked for
+ * the update itself, so concurrent debits cannot together overrun them.
+ */
+public class AccountLimits {
+	private final Money floor;
+	private final Money perTick;
+
+	/**
+	 * Creates limits.
+	 *
+	 * @param floor   The lowest balance allowed, e.g. zero for no overdraft, or null for none.
+	 * @param perTick The most that may be debited per tick, or null for no limit.
+	 */
+	public AccountLimits(Money floor, Money perTick) {
+		if (perTick != null && perTick.getAmountLong() < 0) {
+			throw new IllegalArgumentException("Negative limit per tick: " + perTick);
+		}
+		this.floor = floor;
+		this.perTick = perTick;
+	}
+
+	/**
+	 * Gets the lowest balance allowed.
+	 *
+	 * @return The floor, or null if there is none.
+	 */
+	public Money getFloor() {
+		return floor;
+	}
+
+	/**
+	 * Gets the most that may be debited per tick.
+	 *
+	 * @return The limit, or null if there is none.
+	 */
+	public Money getPerTick() {
+		return perTick;
+	}
+}
@@ -0,0 +1,250 @@
+package b_Money;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Aggregated balances of one or more banks: the total in universal value,
+ * the sums per currency and the largest accounts.
+ *
+ * A report is computed in one parallel scan over the accounts, as of a
+ * single point in time shared by all the banks, as with a BalanceSnapshot:
+ * every transfer between them is counted entirely or not at all. Sums are
+ * kept in minor units and each currency's sum is converted to universal
+ * value once, so the total does not collect a rounding error per account.
+ */
+public class BalanceReport {
+	/*
+	 * Largest first. Universal values are rounded, so ties are broken by minor
+	 * units, then by bank and account ID so that reports are reproducible.
+	 */
+	private static final Comparator<Holding> LARGEST_FIRST = Comparator.comparingLong((Holding holding) -> holding.universal)
+			.thenComparingLong(holding -> holding.balance.getAmountLong()).reversed()
+			.thenComparing(holding -> holding.bank.getName()).thenComparing(holding -> holding.accountid);
+
+	private final long total;
+	private final Map<Currency, Money> totals;
+	private final List<Holding> top;
+
+	/**
+	 * An account among the largest in a report.
+	 */
+	public static class Holding {
+		private final Bank bank;
+		private final String accountid;
+		private final Money balance;
+		private final long universal;
+
+		Holding(Bank bank, String accountid, Money balance) {
+			this.bank = bank;
+			this.accountid = accountid;
+			this.balance = balance;
+			this.universal = balance.universalValueLong();
+		}
+
+		/**
+		 * Gets the bank of the account.
+		 *
+		 * @return The bank.
+		 */
+		public Bank getBank() {
+			return bank;
+		}
+
+		/**
+		 * Gets the ID of the account.
+		 *
+		 * @return The account ID.
+		 */
+		public String getAccountId() {
+			return accountid;
+		}
+
+		/**
+		 * Gets the balance of the account when the report was made.
+		 *
+		 * @return The balance.
+		 */
+		public Money getBalance() {
+			return balance;
+		}
+
+		@Override
+		public String toString() {
+			return bank.getName() + "/" + accountid + " " + balance;
+		}
+	}
+
+	private BalanceReport(long total, Map<Currency, Money> totals, List<Holding> top) {
+		this.total = total;
+		this.totals = totals;
+		this.top = top;
+	}
+
+	/**
+	 * Aggregates the balances of some banks as of now. Like opening a
+	 * BalanceSnapshot, this waits only for the operations already running.
+	 *
+	 * @param top   The number of largest accounts to report.
+	 * @param banks The banks.
+	 * @return The report.
+	 */
+	public static BalanceReport of(int top, Bank... banks) {
+		if (top < 0) {
+			throw new IllegalArgumentException("Negative number of accounts: " + top);
+		}
+		long epoch = Epoch.open();
+		try {
+			Map<Currency, Long> sums = new LinkedHashMap<>();
+			PriorityQueue<Holding> largest = new PriorityQueue<>(LARGEST_FIRST.reversed());
+			for (Bank bank : banks) {
+				Partial partial = bank.accounts().parallelStream().collect(() -> new Partial(top, epoch), Partial::add, Partial::merge);
+				sums.merge(bank.getCurrency(), partial.sum, Math::addExact);
+				for (int i = 0; i < partial.count; i++) {
+					offer(largest, top, new Holding(bank, partial.accounts[i].getName(), new Money(partial.amounts[i], bank.getCurrency())));
+				}
+			}
+			long total = 0;
+			Map<Currency, Money> totals = new LinkedHashMap<>();
+			for (Map.Entry<Currency, Long> sum : sums.entrySet()) {
+				Money money = new Money(sum.getValue(), sum.getKey());
+				totals.put(sum.getKey(), money);
+				total = Math.addExact(total, money.universalValueLong());
+			}
+			List<Holding> holdings = new ArrayList<>(largest);
+			holdings.sort(LARGEST_FIRST);
+			return new BalanceReport(total, Collections.unmodifiableMap(totals), Collections.unmodifiableList(holdings));
+		} finally {
+			Epoch.close(epoch);
+		}
+	}
+
+	/**
+	 * Gets the total of all balances in universal value.
+	 *
+	 * @return The total, as Money.universalValueLong would give it.
+	 */
+	public long getTotal() {
+		return total;
+	}
+
+	/**
+	 * Gets the sum of the balances in each currency.
+	 *
+	 * @return The sums, by currency, in the order the banks were given.
+	 */
+	public Map<Currency, Money> getTotals() {
+		return totals;
+	}
+
+	/**
+	 * Gets the largest accounts by universal value.
+	 *
+	 * @return The accounts, largest first; fewer than asked for if the banks have fewer.
+	 */
+	public List<Holding> getTop() {
+		return top;
+	}
+
+	private static void offer(PriorityQueue<Holding> largest, int top, Holding holding) {
+		if (largest.size() < top) {
+			largest.add(holding);
+		} else if (top > 0 && LARGEST_FIRST.compare(holding, largest.peek()) < 0) {
+			largest.poll();
+			largest.add(holding);
+		}
+	}
+
+	/*
+	 * The sum and the largest balances of part of one bank. All its accounts
+	 * share a currency, so they are ranked by minor units and no Money is made
+	 * per account. The largest are kept as a min-heap in parallel arrays.
+	 */
+	private static class Partial {
+		final int top;
+		final long epoch;
+		final Account[] accounts;
+		final long[] amounts;
+		int count;
+		long sum;
+
+		Partial(int top, long epoch) {
+			this.top = top;
+			this.epoch = epoch;
+			this.accounts = new Account[top];
+			this.amounts = new long[top];
+		}
+
+		void add(Account account) {
+			long amount = account.getBalance(epoch).getAmountLong();
+			sum = Math.addExact(sum, amount);
+			offer(account, amount);
+		}
+
+		void merge(Partial other) {
+			sum = Math.addExact(sum, other.sum);
+			for (int i = 0; i < other.count; i++) {
+				offer(other.accounts[i], other.amounts[i]);
+			}
+		}
+
+		private void offer(Account account, long amount) {
+			if (count < top) {
+				accounts[count] = account;
+				amounts[count] = amount;
+				up(count++);
+			} else if (top > 0 && smaller(0, account, amount)) {
+				accounts[0] = account;
+				amounts[0] = amount;
+				down(0);
+			}
+		}
+
+		/* Whether the entry at i ranks below the given account. */
+		private boolean smaller(int i, Account account, long amount) {
+			return amounts[i] < amount || (amounts[i] == amount && accounts[i].getName().compareTo(account.getName()) > 0);
+		}
+
+		private void up(int i) {
+			while (i > 0) {
+				int parent = (i - 1) / 2;
+				if (!smaller(i, accounts[parent], amounts[parent])) {
+					break;
+				}
+				swap(i, parent);
+				i = parent;
+			}
+		}
+
+		private void down(int i) {
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= count) {
+					break;
+				}
+				if (child + 1 < count && smaller(child + 1, accounts[child], amounts[child])) {
+					child++;
+				}
+				if (!smaller(child, accounts[i], amounts[i])) {
+					break;
+				}
+				swap(i, child);
+				i = child;
+			}
+		}
+
+		private void swap(int i, int j) {
+			Account account = accounts[i];
+			accounts[i] = accounts[j];
+			accounts[j] = account;
+			long amount = amounts[i];
+			amounts[i] = amounts[j];
+			amounts[j] = amount;
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package b_Money;
+
+/**
+ * A point-in-time view of the balances of a Bank, from Bank.snapshotBalances.
+ *
+ * The view reads the balances as of the moment it was opened while the bank
+ * keeps changing: every operation appears in it entirely or not at all, so
+ * its total is the money in the bank at that moment. Operations that move
+ * money in several steps, such as transfers through a TransferPipeline,
+ * may be seen between steps. Accounts opened after the view are seen with
+ * a zero balance.
+ *
+ * An open view keeps the balances it may still read alive; close it when done.
+ */
+public class BalanceSnapshot implements AutoCloseable {
+	private final Bank bank;
+	private final long epoch;
+	private boolean closed;
+
+	/**
+	 * Creates a view of a bank at an epoch opened with Epoch.open.
+	 *
+	 * @param bank  The bank.
+	 * @param epoch The epoch of the view.
+	 */
+	BalanceSnapshot(Bank bank, long epoch) {
+		this.bank = bank;
+		this.epoch = epoch;
+	}
+
+	/**
+	 * Gets the balance of an account as of this view.
+	 *
+	 * @param accountid The ID of the account.
+	 * @return The balance, or null if the account does not exist.
+	 */
+	public Money getBalance(String accountid) {
+		check();
+		Account account = bank.account(accountid);
+		return account == null ? null : balance(account);
+	}
+
+	/**
+	 * Sums all balances as of this view.
+	 *
+	 * @return The total, in the currency of the bank.
+	 */
+	public Money total() {
+		check();
+		long total = 0;
+		for (Account account : bank.accounts()) {
+			total = Math.addExact(total, balance(account).getAmountLong());
+		}
+		return new Money(total, bank.getCurrency());
+	}
+
+	/**
+	 * Gets the epoch of this view.
+	 *
+	 * @return The epoch.
+	 */
+	long epoch() {
+		return epoch;
+	}
+
+	/**
+	 * Closes this view. Closing it again has no effect.
+	 */
+	@Override
+	public synchronized void close() {
+		if (!closed) {
+			closed = true;
+			Epoch.close(epoch);
+		}
+	}
+
+	/*
+	 * Gets a balance as of this view. An account opened after it starts out empty.
+	 */
+	Money balance(Account account) {
+		return account.getBalance(epoch);
+	}
+
+	private synchronized void check() {
+		if (closed) {
+			throw new IllegalStateException("Balance snapshot is closed");
+		}
+	}
+}
@@ -1,9 +1,34 @@
 package b_Money;
 
-import java.util.Hashtable;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
+/**
+ * A bank holding accounts in one currency. All operations are thread-safe:
+ * account lookups do not lock, and balance updates only lock the accounts
+ * involved, so operations on disjoint accounts run in parallel.
+ */
 public class Bank {
-	private Hashtable<String, Account> accountlist = new Hashtable<String, Account>();
+	/* Replaced only while empty, by openAccounts. */
+	private volatile ConcurrentHashMap<String, Account> accountlist = new ConcurrentHashMap<String, Account>();
+	/* Held while opening accounts, and guards the size the account table was made for. */
+	private final Object opening = new Object();
+	private int presized = 16;
+	/* Guarded by its own monitor. */
+	private TimedPaymentSchedule schedule = new TimedPaymentSchedule();
+	private volatile Journal journal;
+	private volatile BankMetrics metrics;
+	private volatile IdempotencyCache requests;
+	/* The number of ticks so far, which per-tick limits are counted by. */
+	private volatile long ticks;
 	private String name;
 	private Currency currency;
 
@@ -18,6 +43,19 @@ public class Bank {
 		this.currency = currency;
 	}
 
+	/**
+	 * Constructs a new Bank with room for a number of accounts.
+	 *
+	 * @param name             The name of the bank.
+	 * @param currency         The base currency of the bank.
+	 * @param expectedAccounts The number of accounts to make room for.
+	 */
+	public Bank(String name, Currency currency, int expectedAccounts) {
+		this(name, currency);
+		this.accountlist = new ConcurrentHashMap<String, Account>(expectedAccounts);
+		this.presized = expectedAccounts;
+	}
+
 	/**
 	 * Gets the name of the bank.
 	 *
@@ -43,10 +81,62 @@ public class Bank {
 	 * @throws AccountExistsException if the account already exists.
 	 */
 	public void openAccount(String accountid) throws AccountExistsException {
-		if (accountlist.containsKey(accountid)) {
+		long seq;
+		synchronized (opening) {
+			seq = open(accountid);
+		}
+		if (seq < 0) {
 			throw new AccountExistsException();
-		} else {
-			accountlist.put(accountid, new Account(accountid, this.currency));
+		}
+		Journal.await(journal, seq);
+	}
+
+	/**
+	 * Opens a number of accounts at once. An ID that already exists, in the
+	 * bank or earlier in the array, is rejected instead of aborting the rest.
+	 * If the bank has no accounts yet, its account table is first sized for
+	 * all of them so that it does not grow while they are added; for a bank
+	 * that already has accounts, construct it with its expected size instead.
+	 *
+	 * @param accountids The IDs of the new accounts.
+	 * @return The indexes of the rejected IDs.
+	 */
+	public BitSet openAccounts(String[] accountids) {
+		BitSet rejected = new BitSet();
+		long last = 0;
+		synchronized (opening) {
+			if (accountlist.isEmpty() && accountids.length > presized) {
+				accountlist = new ConcurrentHashMap<String, Account>(accountids.length);
+				presized = accountids.length;
+			}
+			for (int i = 0; i < accountids.length; i++) {
+				long seq = open(accountids[i]);
+				if (seq < 0) {
+					rejected.set(i);
+				} else {
+					last = Math.max(last, seq);
+				}
+			}
+		}
+		/* Records reach the disk in order, so waiting for the last one waits for all. */
+		Journal.await(journal, last);
+		return rejected;
+	}
+
+	/*
+	 * Adds a new account, unless one with the ID exists. Callers hold the
+	 * opening lock, and await the returned journal sequence number after
+	 * releasing it. Returns -1 if the account exists.
+	 */
+	private long open(String accountid) {
+		Account account = new Account(accountid, this.currency, this);
+		/* Holding the new account keeps its first balance change from being journaled before it is opened. */
+		synchronized (account) {
+			if (accountlist.putIfAbsent(accountid, account) != null) {
+				return -1;
+			}
+			Journal journal = this.journal;
+			return journal == null ? 0 : journal.open(accountid);
 		}
 	}
 
@@ -58,30 +148,77 @@ public class Bank {
 	 * @throws AccountDoesNotExistException if the account does not exist.
 	 */
 	public void deposit(String accountid, Money money) throws AccountDoesNotExistException {
-		if (!accountlist.containsKey(accountid)) {
+		if (!tryDeposit(accountid, money)) {
 			throw new AccountDoesNotExistException();
-		} else {
-			Account account = accountlist.get(accountid);
-			account.deposit(money);
 		}
 	}
 
+	/**
+	 * Deposits money into an account, reporting a missing account by the
+	 * result instead of an exception.
+	 *
+	 * @param accountid The ID of the account.
+	 * @param money     The money to deposit.
+	 * @return True if the money was deposited, false if the account does not exist.
+	 */
+	public boolean tryDeposit(String accountid, Money money) {
+		Account account = accountlist.get(accountid);
+		if (account == null) {
+			return missing(metrics);
+		}
+		deposit(account, money);
+		return true;
+	}
+
+	/**
+	 * Deposits money into an account as part of an operation in an epoch.
+	 *
+	 * @param accountid The ID of the account.
+	 * @param money     The money to deposit.
+	 * @param epoch     The epoch the operation entered.
+	 * @return True if the money was deposited, false if the account does not exist.
+	 */
+	boolean tryDeposit(String accountid, Money money, long epoch) {
+		Account account = accountlist.get(accountid);
+		if (account == null) {
+			return missing(metrics);
+		}
+		deposit(account, money, epoch);
+		return true;
+	}
+
 	/**
 	 * Withdraws money from an account.
 	 * [Change] Corrected the method to actually withdraw money instead of depositing it.
 	 * @param accountid The ID of the account.
 	 * @param money The money to withdraw.
 	 * @throws AccountDoesNotExistException if the account does not exist.
+	 * @throws LimitExceededException if the debit would break the paying account's limits.
 	 */
 	public void withdraw(String accountid, Money money) throws AccountDoesNotExistException {
-		if (!accountlist.containsKey(accountid)) {
+		if (!tryWithdraw(accountid, money)) {
 			throw new AccountDoesNotExistException();
-		} else {
-			Account account = accountlist.get(accountid);
-			account.withdraw(money);
 		}
 	}
 
+	/**
+	 * Withdraws money from an account, reporting a missing account by the
+	 * result instead of an exception.
+	 *
+	 * @param accountid The ID of the account.
+	 * @param money     The money to withdraw.
+	 * @return True if the money was withdrawn, false if the account does not exist.
+	 * @throws LimitExceededException if the debit would break the paying account's limits.
+	 */
+	public boolean tryWithdraw(String accountid, Money money) {
+		Account account = accountlist.get(accountid);
+		if (account == null) {
+			return missing(metrics);
+		}
+		withdraw(account, money);
+		return true;
+	}
+
 	/**
 	 * Gets the balance of an account.
 	 *
@@ -90,28 +227,193 @@ public class Bank {
 	 * @throws AccountDoesNotExistException if the account does not exist.
 	 */
 	public Integer getBalance(String accountid) throws AccountDoesNotExistException {
-		if (!accountlist.containsKey(accountid)) {
+		Money balance = findBalance(accountid);
+		if (balance == null) {
 			throw new AccountDoesNotExistException();
-		} else {
-			return accountlist.get(accountid).getBalance().getAmount();
 		}
+		return balance.getAmount();
+	}
+
+	/**
+	 * Gets the balance of an account, reporting a missing account by the
+	 * result instead of an exception.
+	 *
+	 * @param accountid The ID of the account.
+	 * @return The balance of the account, or null if the account does not exist.
+	 */
+	public Money findBalance(String accountid) {
+		Account account = accountlist.get(accountid);
+		if (account == null) {
+			missing(metrics);
+			return null;
+		}
+		return account.getBalance();
 	}
 
 	/**
 	 * Transfers money between two accounts.
+	 * The withdrawal and the deposit happen atomically with respect to other
+	 * operations on either account, also when the accounts are in different banks.
 	 *
 	 * @param fromaccount The ID of the account to deduct from in this bank.
 	 * @param tobank      The bank where the receiving account resides.
 	 * @param toaccount   The ID of the receiving account.
 	 * @param amount      The amount of money to transfer.
 	 * @throws AccountDoesNotExistException if one of the accounts does not exist.
+	 * @throws LimitExceededException if the debit would break the paying account's limits.
 	 */
 	public void transfer(String fromaccount, Bank tobank, String toaccount, Money amount) throws AccountDoesNotExistException {
-		if (!accountlist.containsKey(fromaccount) || !tobank.accountlist.containsKey(toaccount)) {
+		if (!tryTransfer(fromaccount, tobank, toaccount, amount)) {
+			throw new AccountDoesNotExistException();
+		}
+	}
+
+	/**
+	 * Transfers money between two accounts like transfer, reporting a missing
+	 * account by the result instead of an exception.
+	 *
+	 * @param fromaccount The ID of the account to deduct from in this bank.
+	 * @param tobank      The bank where the receiving account resides.
+	 * @param toaccount   The ID of the receiving account.
+	 * @param amount      The amount of money to transfer.
+	 * @return True if the money was transferred, false if one of the accounts
+	 *         does not exist, in which case no money is moved.
+	 * @throws LimitExceededException if the debit would break the paying account's limits.
+	 */
+	public boolean tryTransfer(String fromaccount, Bank tobank, String toaccount, Money amount) {
+		Account from = accountlist.get(fromaccount);
+		Account to = tobank.accountlist.get(toaccount);
+		if (from == null || to == null) {
+			return missing(metrics);
+		}
+		transfer(from, to, amount);
+		return true;
+	}
+
+	/**
+	 * Resolves an account ID to a handle for repeated operations on the
+	 * account. Operations through the handle skip the account lookup, and
+	 * since accounts are never closed, the handle stays valid for the
+	 * lifetime of the bank.
+	 *
+	 * @param accountid The ID of the account.
+	 * @return The handle.
+	 * @throws AccountDoesNotExistException if the account does not exist.
+	 */
+	public AccountHandle handle(String accountid) throws AccountDoesNotExistException {
+		Account account = accountlist.get(accountid);
+		if (account == null) {
+			missing(metrics);
 			throw new AccountDoesNotExistException();
-		} else {
-			accountlist.get(fromaccount).withdraw(amount);
-			tobank.accountlist.get(toaccount).deposit(amount);
+		}
+		return new AccountHandle(this, account);
+	}
+
+	/**
+	 * Opens a consistent view of all balances in this bank as of now.
+	 * Opening waits only for the operations already running; writers carry
+	 * on while the view is open and are never blocked by it. The view shows
+	 * every transfer, deposit and withdrawal either entirely or not at all.
+	 * Close the view when done, as open views keep old balances alive.
+	 *
+	 * @return The view.
+	 */
+	public BalanceSnapshot snapshotBalances() {
+		return new BalanceSnapshot(this, Epoch.open());
+	}
+
+	/**
+	 * Aggregates the balances in this bank as of now, in one parallel scan.
+	 *
+	 * @param top The number of largest accounts to report.
+	 * @return The total, the sum per currency and the largest accounts.
+	 */
+	public BalanceReport report(int top) {
+		return BalanceReport.of(top, this);
+	}
+
+	/**
+	 * Deposits money into an account of this bank, recording it in the metrics.
+	 *
+	 * @param account The account.
+	 * @param money   The money to deposit.
+	 */
+	void deposit(Account account, Money money) {
+		long epoch = Epoch.enter();
+		Journal journal = openGroup();
+		long seq;
+		try {
+			deposit(account, money, epoch);
+		} finally {
+			seq = Journal.closeGroup(journal);
+			Epoch.exit(epoch);
+		}
+		Journal.await(journal, seq);
+	}
+
+	/**
+	 * Deposits money into an account of this bank as part of an operation in
+	 * an epoch, recording it in the metrics.
+	 *
+	 * @param account The account.
+	 * @param money   The money to deposit.
+	 * @param epoch   The epoch the operation entered.
+	 */
+	void deposit(Account account, Money money, long epoch) {
+		BankMetrics metrics = this.metrics;
+		long start = metrics == null ? 0 : System.nanoTime();
+		account.deposit(money, epoch);
+		if (metrics != null) {
+			metrics.deposit(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Withdraws money from an account of this bank, recording it in the metrics.
+	 *
+	 * @param account The account.
+	 * @param money   The money to withdraw.
+	 */
+	void withdraw(Account account, Money money) {
+		BankMetrics metrics = this.metrics;
+		long start = metrics == null ? 0 : System.nanoTime();
+		account.withdraw(money);
+		if (metrics != null) {
+			metrics.withdraw(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Withdraws money from an account of this bank as part of an operation in
+	 * an epoch, recording it in the metrics.
+	 *
+	 * @param account The account.
+	 * @param money   The money to withdraw.
+	 * @param epoch   The epoch the operation entered.
+	 * @throws LimitExceededException if the debit would break the account's limits.
+	 */
+	void withdraw(Account account, Money money, long epoch) {
+		BankMetrics metrics = this.metrics;
+		long start = metrics == null ? 0 : System.nanoTime();
+		account.withdraw(money, epoch);
+		if (metrics != null) {
+			metrics.withdraw(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Transfers money from an account of this bank, recording it in the metrics.
+	 *
+	 * @param from   The paying account, in this bank.
+	 * @param to     The receiving account, in any bank.
+	 * @param amount The amount of money to transfer.
+	 */
+	void transfer(Account from, Account to, Money amount) {
+		BankMetrics metrics = this.metrics;
+		long start = metrics == null ? 0 : System.nanoTime();
+		from.transferTo(to, amount);
+		if (metrics != null) {
+			metrics.transfer(System.nanoTime() - start);
 		}
 	}
 
@@ -122,11 +424,260 @@ public class Bank {
 	 * @param toaccount   The ID of the receiving account.
 	 * @param amount      The amount of money to transfer.
 	 * @throws AccountDoesNotExistException if one of the accounts does not exist.
+	 * @throws LimitExceededException if the debit would break the paying account's limits.
 	 */
 	public void transfer(String fromaccount, String toaccount, Money amount) throws AccountDoesNotExistException {
 		transfer(fromaccount, this, toaccount, amount);
 	}
 
+	/**
+	 * Transfers money between two accounts like transfer, unless a request
+	 * with the same ID was already carried out by this bank. Retrying a
+	 * request whose outcome is unknown is then safe; a retry arriving while
+	 * the request is still being carried out waits for its outcome. Requires
+	 * an IdempotencyCache, see setIdempotencyCache.
+	 *
+	 * @param requestid   The ID of the request, unique per intended transfer.
+	 * @param fromaccount The ID of the account to deduct from in this bank.
+	 * @param tobank      The bank where the receiving account resides.
+	 * @param toaccount   The ID of the receiving account.
+	 * @param amount      The amount of money to transfer.
+	 * @return True if the money was transferred, false if the request is a duplicate.
+	 * @throws AccountDoesNotExistException if one of the accounts does not exist;
+	 *         the request ID is then not remembered.
+	 * @throws LimitExceededException if the debit would break the paying account's limits;
+	 *         the request ID is then not remembered.
+	 */
+	public boolean transferOnce(String requestid, String fromaccount, Bank tobank, String toaccount, Money amount) throws AccountDoesNotExistException {
+		IdempotencyCache requests = requests();
+		IdempotencyCache.Claim claim = requests.claim(requestid);
+		if (claim == null) {
+			return false;
+		}
+		boolean done = false;
+		try {
+			done = tryTransfer(fromaccount, tobank, toaccount, amount);
+		} finally {
+			if (done) {
+				requests.complete(claim);
+			} else {
+				requests.release(claim);
+			}
+		}
+		if (!done) {
+			throw new AccountDoesNotExistException();
+		}
+		return true;
+	}
+
+	/**
+	 * Transfers money between two accounts within the same bank, unless a
+	 * request with the same ID was already carried out by this bank.
+	 *
+	 * @param requestid   The ID of the request, unique per intended transfer.
+	 * @param fromaccount The ID of the account to deduct from.
+	 * @param toaccount   The ID of the receiving account.
+	 * @param amount      The amount of money to transfer.
+	 * @return True if the money was transferred, false if the request is a duplicate.
+	 * @throws AccountDoesNotExistException if one of the accounts does not exist;
+	 *         the request ID is then not remembered.
+	 * @throws LimitExceededException if the debit would break the paying account's limits;
+	 *         the request ID is then not remembered.
+	 */
+	public boolean transferOnce(String requestid, String fromaccount, String toaccount, Money amount) throws AccountDoesNotExistException {
+		return transferOnce(requestid, fromaccount, this, toaccount, amount);
+	}
+
+	/**
+	 * Deposits money into an account, unless a request with the same ID was
+	 * already carried out by this bank. Requires an IdempotencyCache.
+	 *
+	 * @param requestid The ID of the request, unique per intended deposit.
+	 * @param accountid The ID of the account.
+	 * @param money     The money to deposit.
+	 * @return True if the money was deposited, false if the request is a duplicate.
+	 * @throws AccountDoesNotExistException if the account does not exist;
+	 *         the request ID is then not remembered.
+	 */
+	public boolean depositOnce(String requestid, String accountid, Money money) throws AccountDoesNotExistException {
+		IdempotencyCache requests = requests();
+		IdempotencyCache.Claim claim = requests.claim(requestid);
+		if (claim == null) {
+			return false;
+		}
+		boolean done = false;
+		try {
+			done = tryDeposit(accountid, money);
+		} finally {
+			if (done) {
+				requests.complete(claim);
+			} else {
+				requests.release(claim);
+			}
+		}
+		if (!done) {
+			throw new AccountDoesNotExistException();
+		}
+		return true;
+	}
+
+	/**
+	 * Withdraws money from an account, unless a request with the same ID was
+	 * already carried out by this bank. Requires an IdempotencyCache.
+	 *
+	 * @param requestid The ID of the request, unique per intended withdrawal.
+	 * @param accountid The ID of the account.
+	 * @param money     The money to withdraw.
+	 * @return True if the money was withdrawn, false if the request is a duplicate.
+	 * @throws AccountDoesNotExistException if the account does not exist;
+	 *         the request ID is then not remembered.
+	 * @throws LimitExceededException if the debit would break the paying account's limits;
+	 *         the request ID is then not remembered.
+	 */
+	public boolean withdrawOnce(String requestid, String accountid, Money money) throws AccountDoesNotExistException {
+		IdempotencyCache requests = requests();
+		IdempotencyCache.Claim claim = requests.claim(requestid);
+		if (claim == null) {
+			return false;
+		}
+		boolean done = false;
+		try {
+			done = tryWithdraw(accountid, money);
+		} finally {
+			if (done) {
+				requests.complete(claim);
+			} else {
+				requests.release(claim);
+			}
+		}
+		if (!done) {
+			throw new AccountDoesNotExistException();
+		}
+		return true;
+	}
+
+	private IdempotencyCache requests() {
+		IdempotencyCache requests = this.requests;
+		if (requests == null) {
+			throw new IllegalStateException("No idempotency cache attached to bank " + name);
+		}
+		return requests;
+	}
+
+	/**
+	 * Applies a batch of transfers from accounts in this bank.
+	 * Each distinct account is looked up once, and all postings to the same
+	 * account are netted into a single balance update. Rows naming an account
+	 * that does not exist are skipped and reported instead of aborting the batch.
+	 * Each account's update is atomic, and balance snapshots see either none
+	 * or all of them, but other operations may see the batch half applied.
+	 * If a net debit would break an account's limits, no row is applied.
+	 *
+	 * @param batch The transfers to apply.
+	 * @return The rows that failed because an account does not exist.
+	 * @throws LimitExceededException if a net debit would break an account's
+	 *         limits, naming that account; the batch is then not applied at all.
+	 */
+	public BitSet transferBatch(TransferBatch batch) {
+		BankMetrics metrics = this.metrics;
+		long start = metrics == null ? 0 : System.nanoTime();
+		BitSet failed = new BitSet();
+		HashMap<String, Posting> local = new HashMap<>(batch.size() * 2);
+		HashMap<Bank, HashMap<String, Posting>> remote = new HashMap<>();
+		ArrayList<Posting> postings = new ArrayList<>();
+		for (int row = 0; row < batch.size(); row++) {
+			Bank tobank = batch.tobank(row);
+			HashMap<String, Posting> toPostings = local;
+			if (tobank != this) {
+				toPostings = remote.get(tobank);
+				if (toPostings == null) {
+					toPostings = new HashMap<>();
+					remote.put(tobank, toPostings);
+				}
+			}
+			Posting from = posting(local, postings, this, batch.fromaccount(row));
+			Posting to = posting(toPostings, postings, tobank, batch.toaccount(row));
+			if (from == Posting.MISSING || to == Posting.MISSING) {
+				failed.set(row);
+				missing(metrics);
+				continue;
+			}
+			Money amount = batch.amount(row);
+			from.delta = Math.subtractExact(from.delta, amount.amountIn(from.currency));
+			to.delta = Math.addExact(to.delta, amount.amountIn(to.currency));
+		}
+		ArrayList<Bank> banks = new ArrayList<>(remote.keySet());
+		banks.add(this);
+		long epoch = Epoch.enter();
+		ArrayList<Journal> journals = openGroups(banks);
+		HashMap<Journal, Long> seqs = new HashMap<>();
+		try {
+			/* Debits first, since they may break a limit, and then there is nothing to take back but debits. */
+			for (int i = 0; i < postings.size(); i++) {
+				Posting posting = postings.get(i);
+				if (posting.delta < 0) {
+					try {
+						posting.account.post(posting.delta, epoch);
+					} catch (LimitExceededException e) {
+						for (int j = 0; j < i; j++) {
+							if (postings.get(j).delta < 0) {
+								postings.get(j).account.unpost(postings.get(j).delta, epoch);
+							}
+						}
+						throw e;
+					}
+				}
+			}
+			for (Posting posting : postings) {
+				if (posting.delta > 0) {
+					posting.account.adjust(posting.delta, epoch);
+				}
+			}
+		} finally {
+			closeGroups(journals, seqs);
+			Epoch.exit(epoch);
+		}
+		awaitAll(seqs);
+		if (metrics != null) {
+			metrics.batch(System.nanoTime() - start, 0, 0, batch.size() - failed.cardinality());
+		}
+		return failed;
+	}
+
+	/**
+	 * Resolves an account for a batch, looking each one up only once.
+	 *
+	 * @return The posting for the account, or Posting.MISSING if it does not exist.
+	 */
+	private static Posting posting(HashMap<String, Posting> resolved, ArrayList<Posting> postings, Bank bank, String accountid) {
+		Posting posting = resolved.get(accountid);
+		if (posting == null) {
+			Account account = bank.accountlist.get(accountid);
+			if (account == null) {
+				posting = Posting.MISSING;
+			} else {
+				posting = new Posting(account);
+				postings.add(posting);
+			}
+			resolved.put(accountid, posting);
+		}
+		return posting;
+	}
+
+	/* The net change to one account within a batch. */
+	private static class Posting {
+		static final Posting MISSING = new Posting(null);
+
+		private final Account account;
+		private final Currency currency;
+		private long delta;
+
+		Posting(Account account) {
+			this.account = account;
+			this.currency = account == null ? null : account.getBalance().getCurrency();
+		}
+	}
+
 	/**
 	 * Adds a timed payment.
 	 *
@@ -140,7 +691,15 @@ public class Bank {
 	 */
 	public void addTimedPayment(String accountid, String payid, Integer interval, Integer next, Money amount, Bank tobank, String toaccount) {
 		Account account = accountlist.get(accountid);
-		account.addTimedPayment(payid, interval, next, amount, tobank, toaccount);
+		Journal journal;
+		long seq;
+		synchronized (schedule) {
+			journal = this.journal;
+			seq = journal == null ? 0 : journal.addPayment(accountid, payid, interval, next, amount, tobank, toaccount);
+			Account.TimedPayment tp = account.putTimedPayment(payid, interval, next, amount, tobank, toaccount);
+			schedule.schedule(tp, tp.firstDue());
+		}
+		Journal.await(journal, seq);
 	}
 
 	/**
@@ -151,17 +710,567 @@ public class Bank {
 	 */
 	public void removeTimedPayment(String accountid, String id) {
 		Account account = accountlist.get(accountid);
-		account.removeTimedPayment(id);
+		Journal journal;
+		long seq;
+		synchronized (schedule) {
+			journal = this.journal;
+			seq = journal == null ? 0 : journal.removePayment(accountid, id);
+			account.removeTimedPayment(id);
+		}
+		Journal.await(journal, seq);
 	}
 
 	/**
 	 * Processes a time unit passing in the system, triggering timed payments.
 	 * [Change] Added method to process time units for timed payments.
+	 * Only the payments due at this tick are visited; each is rescheduled
+	 * one period ahead after it has been paid.
 	 * @throws AccountDoesNotExistException if an account involved in a timed payment does not exist.
 	 */
 	public void tick() throws AccountDoesNotExistException {
-		for (Account account : accountlist.values()) {
-			account.tick();
+		BankMetrics metrics = this.metrics;
+		long start = metrics == null ? 0 : System.nanoTime();
+		int paid = 0;
+		HashMap<Journal, Long> seqs = new HashMap<>();
+		synchronized (schedule) {
+			/* The tick and its payments are journaled as one group, which the schedule's monitor keeps snapshots out of. */
+			Journal journal = openGroup();
+			try {
+				if (journal != null) {
+					journal.tick();
+				}
+				ArrayList<Account.TimedPayment> due = schedule.advance();
+				ticks++;
+				paid = payDue(due, seqs);
+			} finally {
+				closed(journal, Journal.closeGroup(journal), seqs);
+			}
+		}
+		awaitAll(seqs);
+		if (metrics != null) {
+			metrics.tick(System.nanoTime() - start, paid);
+		}
+	}
+
+	/*
+	 * Pays the due timed payments one after another and reschedules them;
+	 * callers hold the schedule's monitor and this bank's journal group.
+	 * A deposit to another bank is journaled there in a group of its own,
+	 * whose sequence number goes into seqs to await after the monitor is
+	 * released. Returns how many were paid, not counting those skipped for
+	 * the paying account's limits or refunded.
+	 */
+	private int payDue(ArrayList<Account.TimedPayment> due, HashMap<Journal, Long> seqs) {
+		int paid = 0;
+		if (due != null) {
+			for (Account.TimedPayment tp : due) {
+				if (!tp.isCancelled()) {
+					Bank tobank = tp.getToBank();
+					long epoch = Epoch.enter();
+					Journal journal = tobank == null || tobank == this ? null : tobank.openGroup();
+					try {
+						if (tp.pay(epoch)) {
+							paid++;
+						}
+					} finally {
+						closed(journal, Journal.closeGroup(journal), seqs);
+						Epoch.exit(epoch);
+					}
+					schedule.schedule(tp, tp.period());
+				}
+			}
+		}
+		return paid;
+	}
+
+	/**
+	 * Processes a time unit passing in the system like tick(), paying the due
+	 * timed payments on a pool of threads.
+	 * The paying accounts are split into shards by account. Each shard first
+	 * withdraws its payments and posts each deposit to an account of this bank
+	 * into the inbox of the receiving account's shard; then each shard applies
+	 * the deposits in its inboxes. Every account is updated by one thread per
+	 * phase, and the balances end up exactly as after tick().
+	 * Whether a payment from an account with a floor is made depends on the
+	 * deposits paid before it in the same tick, which the shards see in a
+	 * different order, so a tick with such a payment due is paid serially.
+	 *
+	 * @param executor The pool to run the shards on.
+	 * @param shards   The number of shards.
+	 * @throws AccountDoesNotExistException if an account involved in a timed payment does not exist.
+	 * @throws InterruptedException if interrupted while waiting for the shards.
+	 */
+	public void tick(ExecutorService executor, int shards) throws AccountDoesNotExistException, InterruptedException {
+		if (shards < 1) {
+			throw new IllegalArgumentException("shards must be positive: " + shards);
+		}
+		BankMetrics metrics = this.metrics;
+		long start = metrics == null ? 0 : System.nanoTime();
+		int paid = 0;
+		HashMap<Journal, Long> seqs = new HashMap<>();
+		synchronized (schedule) {
+			Journal journal = openGroup();
+			try {
+				if (journal != null) {
+					journal.tick();
+				}
+				ArrayList<Account.TimedPayment> due = schedule.advance();
+				ticks++;
+				if (due == null || floored(due)) {
+					paid = payDue(due, seqs);
+				} else {
+					paid = payParallel(due, journal, executor, shards, seqs);
+				}
+			} finally {
+				closed(journal, Journal.closeGroup(journal), seqs);
+			}
+		}
+		awaitAll(seqs);
+		if (metrics != null) {
+			metrics.tick(System.nanoTime() - start, paid);
+		}
+	}
+
+	/*
+	 * Pays the due timed payments of a parallel tick on the pool, like payDue.
+	 * The threads journal into the caller's group on this bank's journal and
+	 * into one group for each other bank paid, closed before the tick's
+	 * epoch ends.
+	 */
+	private int payParallel(ArrayList<Account.TimedPayment> due, Journal journal, ExecutorService executor, int shards, HashMap<Journal, Long> seqs) throws InterruptedException {
+		ArrayList<ArrayList<Account.TimedPayment>> payments = new ArrayList<>(shards);
+		for (int p = 0; p < shards; p++) {
+			payments.add(new ArrayList<>());
+		}
+		for (Account.TimedPayment tp : due) {
+			if (!tp.isCancelled()) {
+				payments.get(shard(tp.getFromAccount(), shards)).add(tp);
+				schedule.schedule(tp, tp.period());
+			}
+		}
+		/* The payments each shard made, written only by that shard */
+		int[] made = new int[shards];
+		/* inboxes[producer * shards + consumer], written only by the producer's shard */
+		ArrayList<ArrayList<Deposit>> inboxes = new ArrayList<>(shards * shards);
+		for (int i = 0; i < shards * shards; i++) {
+			inboxes.add(new ArrayList<>());
+		}
+		/* The whole tick is one operation, so snapshots never see a payment half made. */
+		long epoch = Epoch.enter();
+		ArrayList<Journal> others = openGroups(tobanks(due));
+		ArrayList<Journal> journals = new ArrayList<>(others);
+		if (journal != null) {
+			journals.add(journal);
+		}
+		Journal.Group[] groups = new Journal.Group[journals.size()];
+		for (int i = 0; i < groups.length; i++) {
+			groups[i] = journals.get(i).group();
+		}
+		try {
+			ArrayList<Callable<Void>> work = new ArrayList<>(shards);
+			for (int p = 0; p < shards; p++) {
+				final int producer = p;
+				work.add(joined(journals, groups, () -> {
+					for (Account.TimedPayment tp : payments.get(producer)) {
+						if (withdrawDue(tp, inboxes, producer * shards, shards, epoch)) {
+							made[producer]++;
+						}
+					}
+					return null;
+				}));
+			}
+			runAll(executor, work);
+			work.clear();
+			for (int c = 0; c < shards; c++) {
+				final int consumer = c;
+				work.add(joined(journals, groups, () -> {
+					for (int producer = 0; producer < shards; producer++) {
+						for (Deposit deposit : inboxes.get(producer * shards + consumer)) {
+							deposit(deposit.account, deposit.amount, epoch);
+						}
+					}
+					return null;
+				}));
+			}
+			runAll(executor, work);
+		} finally {
+			/* This bank's group stays open until the caller closes it. */
+			closeGroups(others, seqs);
+			Epoch.exit(epoch);
+		}
+		int paid = 0;
+		for (int count : made) {
+			paid += count;
+		}
+		return paid;
+	}
+
+	/* The other banks the payments deposit into. */
+	private Collection<Bank> tobanks(ArrayList<Account.TimedPayment> due) {
+		ArrayList<Bank> tobanks = new ArrayList<>();
+		if (due != null) {
+			for (Account.TimedPayment tp : due) {
+				Bank tobank = tp.getToBank();
+				if (tobank != null && tobank != this && !tobanks.contains(tobank)) {
+					tobanks.add(tobank);
+				}
+			}
+		}
+		return tobanks;
+	}
+
+	/* Runs the work with this thread journaling into the groups of the journals. */
+	private static Callable<Void> joined(ArrayList<Journal> journals, Journal.Group[] groups, Callable<Void> work) {
+		return () -> {
+			Journal.Group[] previous = new Journal.Group[groups.length];
+			for (int i = 0; i < groups.length; i++) {
+				previous[i] = journals.get(i).group();
+				journals.get(i).join(groups[i]);
+			}
+			try {
+				return work.call();
+			} finally {
+				for (int i = groups.length - 1; i >= 0; i--) {
+					journals.get(i).join(previous[i]);
+				}
+			}
+		};
+	}
+
+	/* Whether any of the payments is from an account with a floor. */
+	private static boolean floored(ArrayList<Account.TimedPayment> due) {
+		for (Account.TimedPayment tp : due) {
+			if (!tp.isCancelled() && tp.getFromAccount().hasFloor()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/* A deposit to an account of this bank, waiting in an inbox during a parallel tick. */
+	private static class Deposit {
+		final Account account;
+		final Money amount;
+
+		Deposit(Account account, Money amount) {
+			this.account = account;
+			this.amount = amount;
+		}
+	}
+
+	/*
+	 * The first phase of a parallel tick for one payment: the same steps as
+	 * TimedPayment.pay(), except that a deposit to this bank goes to an inbox.
+	 * Returns whether the payment was made.
+	 */
+	private boolean withdrawDue(Account.TimedPayment tp, ArrayList<ArrayList<Deposit>> inboxes, int base, int shards, long epoch) {
+		Account from = tp.getFromAccount();
+		Money amount = tp.getAmount();
+		Bank tobank = tp.getToBank();
+		try {
+			withdraw(from, amount, epoch);
+		} catch (LimitExceededException e) {
+			return false;
+		}
+		if (tobank == this) {
+			Account to = accountlist.get(tp.getToAccount());
+			if (to == null) {
+				missing(metrics);
+				from.deposit(amount, epoch);
+				return false;
+			}
+			inboxes.get(base + shard(to, shards)).add(new Deposit(to, amount));
+		} else if (tobank != null && !tobank.tryDeposit(tp.getToAccount(), amount, epoch)) {
+			from.deposit(amount, epoch);
+			return false;
+		}
+		return true;
+	}
+
+	private static boolean missing(BankMetrics metrics) {
+		if (metrics != null) {
+			metrics.missingAccount();
+		}
+		return false;
+	}
+
+	private static int shard(Account account, int shards) {
+		return (int) (account.getOrdinal() % shards);
+	}
+
+	private static void runAll(ExecutorService executor, ArrayList<Callable<Void>> work) throws InterruptedException {
+		for (Future<Void> result : executor.invokeAll(work)) {
+			try {
+				result.get();
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw new IllegalStateException(cause);
+			}
+		}
+	}
+
+	/**
+	 * Looks up an account of this bank.
+	 *
+	 * @param accountid The ID of the account.
+	 * @return The account, or null if it does not exist.
+	 */
+	Account account(String accountid) {
+		return accountlist.get(accountid);
+	}
+
+	/**
+	 * Gets the accounts of this bank.
+	 *
+	 * @return A live view of the accounts.
+	 */
+	Collection<Account> accounts() {
+		return accountlist.values();
+	}
+
+	/**
+	 * Gets the attached metrics.
+	 *
+	 * @return The metrics, or null if none are attached.
+	 */
+	BankMetrics metrics() {
+		return metrics;
+	}
+
+	/**
+	 * Opens a journal group on this thread, if a journal is attached.
+	 *
+	 * @return The journal, to close the group on, or null if none is attached.
+	 */
+	Journal openGroup() {
+		Journal journal = this.journal;
+		if (journal != null) {
+			journal.openGroup();
+		}
+		return journal;
+	}
+
+	/*
+	 * Opens a journal group on this thread on each distinct journal of the
+	 * banks, and returns those journals.
+	 */
+	private static ArrayList<Journal> openGroups(Collection<Bank> banks) {
+		ArrayList<Journal> journals = new ArrayList<>();
+		for (Bank bank : banks) {
+			Journal journal = bank.journal;
+			if (journal != null && !journals.contains(journal)) {
+				journal.openGroup();
+				journals.add(journal);
+			}
+		}
+		return journals;
+	}
+
+	/* Closes the groups openGroups opened, adding the sequence numbers to await to seqs. */
+	private static void closeGroups(ArrayList<Journal> journals, HashMap<Journal, Long> seqs) {
+		for (int i = journals.size() - 1; i >= 0; i--) {
+			closed(journals.get(i), journals.get(i).closeGroup(), seqs);
+		}
+	}
+
+	/*
+	 * Adds the sequence number of a closed group to seqs. Records reach the
+	 * disk in order, so only the last one of each journal is awaited, but a
+	 * failure is kept.
+	 */
+	private static void closed(Journal journal, long seq, HashMap<Journal, Long> seqs) {
+		if (journal != null && seq != 0) {
+			seqs.merge(journal, seq, (a, b) -> a < 0 || b < 0 ? -1 : Math.max(a, b));
+		}
+	}
+
+	/* Waits for the groups in seqs; callers hold no monitors. */
+	private static void awaitAll(HashMap<Journal, Long> seqs) {
+		for (Map.Entry<Journal, Long> entry : seqs.entrySet()) {
+			entry.getKey().await(entry.getValue());
+		}
+	}
+
+	/**
+	 * Gets the attached journal.
+	 *
+	 * @return The journal, or null if none is attached.
+	 */
+	Journal journal() {
+		return journal;
+	}
+
+	/**
+	 * Gets the timed payment schedule, whose monitor guards it.
+	 *
+	 * @return The schedule.
+	 */
+	TimedPaymentSchedule schedule() {
+		return schedule;
+	}
+
+	/**
+	 * Adds an account with a balance, without journaling, when restoring a snapshot.
+	 *
+	 * @param accountid The ID of the account.
+	 * @param balance   The balance in minor units of this bank's currency.
+	 * @throws AccountExistsException if the account already exists.
+	 */
+	void restoreAccount(String accountid, long balance) throws AccountExistsException {
+		Account account = new Account(accountid, this.currency, this);
+		synchronized (opening) {
+			if (accountlist.putIfAbsent(accountid, account) != null) {
+				throw new AccountExistsException();
+			}
+		}
+		account.restore(balance);
+	}
+
+	/**
+	 * Adds a timed payment due a number of ticks from now, without journaling,
+	 * when restoring a snapshot.
+	 *
+	 * @param accountid   The ID of the account to deduct from.
+	 * @param payid       The ID of the timed payment.
+	 * @param interval    The number of ticks between payments.
+	 * @param ticks       The number of ticks till the next payment, at least 1.
+	 * @param amount      The amount of money to transfer each payment.
+	 * @param tobank      The bank where the receiving account resides.
+	 * @param toaccount   The ID of the receiving account.
+	 */
+	void restoreTimedPayment(String accountid, String payid, int interval, long ticks, Money amount, Bank tobank, String toaccount) {
+		Account account = accountlist.get(accountid);
+		synchronized (schedule) {
+			schedule.schedule(account.putTimedPayment(payid, interval, 0, amount, tobank, toaccount), ticks);
+		}
+	}
+
+	/**
+	 * Attaches a journal that every later change to this bank is logged to,
+	 * or detaches it if null. Attach it before the bank is shared between threads.
+	 *
+	 * @param journal The journal to log to.
+	 */
+	public void setJournal(Journal journal) {
+		this.journal = journal;
+	}
+
+	/**
+	 * Attaches metrics that record this bank's operations from now on.
+	 *
+	 * @param metrics The metrics, or null to stop recording.
+	 */
+	public void setMetrics(BankMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Sets or removes the limits on debits from an account.
+	 *
+	 * @param accountid The ID of the account.
+	 * @param limits    The limits, or null for none.
+	 * @throws AccountDoesNotExistException if the account does not exist.
+	 */
+	public void setLimits(String accountid, AccountLimits limits) throws AccountDoesNotExistException {
+		Account account = accountlist.get(accountid);
+		if (account == null) {
+			throw new AccountDoesNotExistException();
+		}
+		Journal.await(journal, account.setLimits(limits));
+	}
+
+	/**
+	 * Gets the limits on debits from an account.
+	 *
+	 * @param accountid The ID of the account.
+	 * @return The limits, or null if there are none.
+	 * @throws AccountDoesNotExistException if the account does not exist.
+	 */
+	public AccountLimits getLimits(String accountid) throws AccountDoesNotExistException {
+		Account account = accountlist.get(accountid);
+		if (account == null) {
+			throw new AccountDoesNotExistException();
+		}
+		return account.getLimits();
+	}
+
+	/**
+	 * Gets the number of ticks this bank has processed.
+	 *
+	 * @return The number of ticks.
+	 */
+	long ticks() {
+		return ticks;
+	}
+
+	/**
+	 * Attaches the cache of request IDs that transferOnce, depositOnce and
+	 * withdrawOnce check. The IDs of all three share it.
+	 *
+	 * @param requests The cache, or null to detach it.
+	 */
+	public void setIdempotencyCache(IdempotencyCache requests) {
+		this.requests = requests;
+	}
+
+	/**
+	 * Logs a balance change of one of this bank's accounts, if a journal is attached.
+	 *
+	 * @param accountid The ID of the account.
+	 * @param delta     The change in the account's minor units.
+	 * @param epoch     The epoch of the operation making the change.
+	 */
+	void journalAdjust(String accountid, long delta, long epoch) {
+		Journal journal = this.journal;
+		if (journal != null && delta != 0) {
+			journal.adjust(accountid, delta, epoch);
+		}
+	}
+
+	/**
+	 * Logs a change of the limits of one of this bank's accounts, if a journal is attached.
+	 *
+	 * @param accountid The ID of the account.
+	 * @param limits    The new limits, or null for none.
+	 * @return The journal's sequence number for the change, or 0 without a journal.
+	 */
+	long journalLimits(String accountid, AccountLimits limits) {
+		Journal journal = this.journal;
+		return journal == null ? 0 : journal.limits(accountid, limits);
+	}
+
+	/**
+	 * Applies a journaled balance change.
+	 *
+	 * @param accountid The ID of the account.
+	 * @param delta     The change in the account's minor units.
+	 */
+	void replayAdjust(String accountid, long delta) {
+		accountlist.get(accountid).adjust(delta);
+	}
+
+	/**
+	 * Applies a journaled tick: advances the schedule like tick() does, but
+	 * without paying, since the payments were journaled as balance changes.
+	 */
+	void replayTick() {
+		synchronized (schedule) {
+			ArrayList<Account.TimedPayment> due = schedule.advance();
+			ticks++;
+			if (due == null) {
+				return;
+			}
+			for (Account.TimedPayment tp : due) {
+				if (!tp.isCancelled()) {
+					schedule.schedule(tp, tp.period());
+				}
+			}
 		}
 	}
 }
@@ -0,0 +1,167 @@
+package b_Money;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters and latency histograms for the operations of a Bank.
+ *
+ * A bank records into its metrics only while they are attached with
+ * Bank.setMetrics; with none attached, each operation pays a single null
+ * check and does not read the clock. Counters are LongAdders, so threads
+ * recording at once do not contend on one variable.
+ */
+public class BankMetrics implements BankMetricsMXBean {
+	private final LongAdder deposits = new LongAdder();
+	private final LongAdder withdrawals = new LongAdder();
+	private final LongAdder transfers = new LongAdder();
+	private final LongAdder ticks = new LongAdder();
+	private final LongAdder fired = new LongAdder();
+	private final LongAdder missing = new LongAdder();
+	private final LongAdder batches = new LongAdder();
+	private final LatencyHistogram depositLatency = new LatencyHistogram();
+	private final LatencyHistogram withdrawLatency = new LatencyHistogram();
+	private final LatencyHistogram transferLatency = new LatencyHistogram();
+	private final LatencyHistogram tickLatency = new LatencyHistogram();
+	private final LatencyHistogram batchLatency = new LatencyHistogram();
+
+	/**
+	 * Publishes these metrics as an MXBean on the platform MBean server.
+	 *
+	 * @param name The name to publish under, usually the bank's name.
+	 * @return The object name of the MXBean.
+	 * @throws JMException if the MXBean cannot be registered.
+	 */
+	public ObjectName register(String name) throws JMException {
+		ObjectName object = new ObjectName("b_Money:type=BankMetrics,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, object);
+		return object;
+	}
+
+	@Override
+	public long getDeposits() {
+		return deposits.sum();
+	}
+
+	@Override
+	public long getWithdrawals() {
+		return withdrawals.sum();
+	}
+
+	@Override
+	public long getTransfers() {
+		return transfers.sum();
+	}
+
+	@Override
+	public long getTicks() {
+		return ticks.sum();
+	}
+
+	@Override
+	public long getTimedPaymentsFired() {
+		return fired.sum();
+	}
+
+	@Override
+	public long getMissingAccounts() {
+		return missing.sum();
+	}
+
+	@Override
+	public long getBatches() {
+		return batches.sum();
+	}
+
+	@Override
+	public long latencyNanos(String operation, double percentile) {
+		return latency(operation).percentile(percentile);
+	}
+
+	/**
+	 * Gets the latency histogram of an operation.
+	 *
+	 * @param operation One of deposit, withdraw, transfer, tick or batch.
+	 * @return The histogram.
+	 * @throws IllegalArgumentException if the operation is unknown.
+	 */
+	public LatencyHistogram latency(String operation) {
+		switch (operation) {
+			case "deposit": return depositLatency;
+			case "withdraw": return withdrawLatency;
+			case "transfer": return transferLatency;
+			case "tick": return tickLatency;
+			case "batch": return batchLatency;
+			default: throw new IllegalArgumentException("Unknown operation " + operation);
+		}
+	}
+
+	/**
+	 * Records a deposit.
+	 *
+	 * @param nanos The time it took.
+	 */
+	void deposit(long nanos) {
+		deposits.increment();
+		depositLatency.record(nanos);
+	}
+
+	/**
+	 * Records a withdrawal.
+	 *
+	 * @param nanos The time it took.
+	 */
+	void withdraw(long nanos) {
+		withdrawals.increment();
+		withdrawLatency.record(nanos);
+	}
+
+	/**
+	 * Records a transfer.
+	 *
+	 * @param nanos The time it took.
+	 */
+	void transfer(long nanos) {
+		transfers.increment();
+		transferLatency.record(nanos);
+	}
+
+	/**
+	 * Records a tick.
+	 *
+	 * @param nanos The time it took.
+	 * @param paid  The number of timed payments it paid.
+	 */
+	void tick(long nanos, int paid) {
+		ticks.increment();
+		fired.add(paid);
+		tickLatency.record(nanos);
+	}
+
+	/**
+	 * Records a batch of rows applied together, counting each row as the
+	 * deposit, withdrawal or transfer it is. The latency is the whole batch's.
+	 *
+	 * @param nanos       The time it took.
+	 * @param deposits    The number of deposit rows.
+	 * @param withdrawals The number of withdrawal rows.
+	 * @param transfers   The number of transfer rows.
+	 */
+	void batch(long nanos, int deposits, int withdrawals, int transfers) {
+		batches.increment();
+		this.deposits.add(deposits);
+		this.withdrawals.add(withdrawals);
+		this.transfers.add(transfers);
+		batchLatency.record(nanos);
+	}
+
+	/**
+	 * Records an operation failing because an account does not exist.
+	 */
+	void missingAccount() {
+		missing.increment();
+	}
+}
@@ -0,0 +1,65 @@
+package b_Money;
+
+/**
+ * The management interface of BankMetrics, as published through JMX.
+ */
+public interface BankMetricsMXBean {
+	/**
+	 * Gets the number of deposits made.
+	 *
+	 * @return The number of deposits.
+	 */
+	long getDeposits();
+
+	/**
+	 * Gets the number of withdrawals made.
+	 *
+	 * @return The number of withdrawals.
+	 */
+	long getWithdrawals();
+
+	/**
+	 * Gets the number of transfers made from the bank.
+	 *
+	 * @return The number of transfers.
+	 */
+	long getTransfers();
+
+	/**
+	 * Gets the number of ticks processed.
+	 *
+	 * @return The number of ticks.
+	 */
+	long getTicks();
+
+	/**
+	 * Gets the number of timed payments paid by ticks.
+	 *
+	 * @return The number of timed payments fired.
+	 */
+	long getTimedPaymentsFired();
+
+	/**
+	 * Gets the number of operations that failed because an account did not exist.
+	 *
+	 * @return The number of missing account lookups.
+	 */
+	long getMissingAccounts();
+
+	/**
+	 * Gets the number of batches applied, by Bank.transferBatch or a LedgerIngest.
+	 * Their rows are also counted as deposits, withdrawals and transfers.
+	 *
+	 * @return The number of batches.
+	 */
+	long getBatches();
+
+	/**
+	 * Gets a latency percentile of an operation.
+	 *
+	 * @param operation  One of deposit, withdraw, transfer, tick or batch.
+	 * @param percentile The percentile, from 0 to 100.
+	 * @return The latency in nanoseconds.
+	 */
+	long latencyNanos(String operation, double percentile);
+}
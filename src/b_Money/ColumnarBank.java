@@ -0,0 +1,202 @@
+package b_Money;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bank for very large numbers of accounts, keeping each balance in a
+ * primitive column instead of an Account object.
+ *
+ * Accounts are numbered densely in the order they are opened. An
+ * AccountIndex maps IDs to these slots, and the balances are long minor
+ * units in fixed-size chunks that are never moved, so an account costs
+ * its ID, two index entries and eight bytes of balance.
+ *
+ * It offers the same account operations as Bank. Balance updates lock one
+ * of a fixed set of stripes, and transfers lock both stripes in a global
+ * order, so they are atomic and deadlock-free like Bank's. Timed payments
+ * and journaling are not supported; use Bank for those.
+ */
+public class ColumnarBank {
+	private static final AtomicLong ORDINALS = new AtomicLong();
+	private static final int CHUNK_BITS = 16, CHUNK = 1 << CHUNK_BITS;
+	private static final int STRIPES = 1024;
+
+	private final long ordinal = ORDINALS.getAndIncrement();
+	private final String name;
+	private final Currency currency;
+	private final AccountIndex index;
+	/* Chunks are allocated as accounts are opened and then never replaced. */
+	private final long[][] balances = new long[1 << (31 - CHUNK_BITS)][];
+	private final Object[] stripes = new Object[STRIPES];
+
+	/**
+	 * Constructs a new ColumnarBank.
+	 *
+	 * @param name     The name of the bank.
+	 * @param currency The base currency of the bank.
+	 */
+	public ColumnarBank(String name, Currency currency) {
+		this(name, currency, 16);
+	}
+
+	/**
+	 * Constructs a new ColumnarBank with room for a number of accounts.
+	 *
+	 * @param name             The name of the bank.
+	 * @param currency         The base currency of the bank.
+	 * @param expectedAccounts The number of accounts to make room for.
+	 */
+	public ColumnarBank(String name, Currency currency, int expectedAccounts) {
+		this.name = name;
+		this.currency = currency;
+		this.index = new AccountIndex(expectedAccounts);
+		for (int i = 0; i < STRIPES; i++) {
+			stripes[i] = new Object();
+		}
+	}
+
+	/**
+	 * Gets the name of the bank.
+	 *
+	 * @return The name of the bank.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Gets the currency of the bank.
+	 *
+	 * @return The currency of the bank.
+	 */
+	public Currency getCurrency() {
+		return currency;
+	}
+
+	/**
+	 * Gets the number of accounts in the bank.
+	 *
+	 * @return The number of accounts.
+	 */
+	public int size() {
+		return index.size();
+	}
+
+	/**
+	 * Opens a new account in the bank.
+	 *
+	 * @param accountid The ID of the new account.
+	 * @throws AccountExistsException if the account already exists.
+	 */
+	public synchronized void openAccount(String accountid) throws AccountExistsException {
+		int slot = index.size();
+		if (balances[slot >>> CHUNK_BITS] == null) {
+			balances[slot >>> CHUNK_BITS] = new long[CHUNK];
+		}
+		if (index.insert(accountid) < 0) {
+			throw new AccountExistsException();
+		}
+	}
+
+	/**
+	 * Deposits money into an account.
+	 *
+	 * @param accountid The ID of the account.
+	 * @param money     The money to deposit.
+	 * @throws AccountDoesNotExistException if the account does not exist.
+	 */
+	public void deposit(String accountid, Money money) throws AccountDoesNotExistException {
+		add(slot(accountid), money.amountIn(currency));
+	}
+
+	/**
+	 * Withdraws money from an account.
+	 *
+	 * @param accountid The ID of the account.
+	 * @param money     The money to withdraw.
+	 * @throws AccountDoesNotExistException if the account does not exist.
+	 */
+	public void withdraw(String accountid, Money money) throws AccountDoesNotExistException {
+		add(slot(accountid), Math.negateExact(money.amountIn(currency)));
+	}
+
+	/**
+	 * Gets the balance of an account.
+	 *
+	 * @param accountid The ID of the account.
+	 * @return The balance of the account.
+	 * @throws AccountDoesNotExistException if the account does not exist.
+	 */
+	public Integer getBalance(String accountid) throws AccountDoesNotExistException {
+		return Math.toIntExact(getBalanceLong(accountid));
+	}
+
+	/**
+	 * Gets the balance of an account in minor units, without boxing.
+	 *
+	 * @param accountid The ID of the account.
+	 * @return The balance of the account.
+	 * @throws AccountDoesNotExistException if the account does not exist.
+	 */
+	public long getBalanceLong(String accountid) throws AccountDoesNotExistException {
+		int slot = slot(accountid);
+		synchronized (stripe(slot)) {
+			return balances[slot >>> CHUNK_BITS][slot & (CHUNK - 1)];
+		}
+	}
+
+	/**
+	 * Transfers money between two accounts, atomically.
+	 *
+	 * @param fromaccount The ID of the account to deduct from in this bank.
+	 * @param tobank      The bank where the receiving account resides.
+	 * @param toaccount   The ID of the receiving account.
+	 * @param amount      The amount of money to transfer.
+	 * @throws AccountDoesNotExistException if one of the accounts does not exist.
+	 */
+	public void transfer(String fromaccount, ColumnarBank tobank, String toaccount, Money amount) throws AccountDoesNotExistException {
+		int from = slot(fromaccount);
+		int to = tobank.slot(toaccount);
+		long debit = amount.amountIn(currency);
+		long credit = amount.amountIn(tobank.currency);
+		Object fromstripe = stripe(from), tostripe = tobank.stripe(to);
+		boolean fromfirst = ordinal < tobank.ordinal || (ordinal == tobank.ordinal && (from & (STRIPES - 1)) <= (to & (STRIPES - 1)));
+		synchronized (fromfirst ? fromstripe : tostripe) {
+			synchronized (fromfirst ? tostripe : fromstripe) {
+				add(from, Math.negateExact(debit));
+				tobank.add(to, credit);
+			}
+		}
+	}
+
+	/**
+	 * Transfers money between two accounts within the same bank.
+	 *
+	 * @param fromaccount The ID of the account to deduct from.
+	 * @param toaccount   The ID of the receiving account.
+	 * @param amount      The amount of money to transfer.
+	 * @throws AccountDoesNotExistException if one of the accounts does not exist.
+	 */
+	public void transfer(String fromaccount, String toaccount, Money amount) throws AccountDoesNotExistException {
+		transfer(fromaccount, this, toaccount, amount);
+	}
+
+	private int slot(String accountid) throws AccountDoesNotExistException {
+		int slot = index.get(accountid);
+		if (slot < 0) {
+			throw new AccountDoesNotExistException();
+		}
+		return slot;
+	}
+
+	private Object stripe(int slot) {
+		return stripes[slot & (STRIPES - 1)];
+	}
+
+	private void add(int slot, long delta) {
+		synchronized (stripe(slot)) {
+			long[] chunk = balances[slot >>> CHUNK_BITS];
+			chunk[slot & (CHUNK - 1)] = Math.addExact(chunk[slot & (CHUNK - 1)], delta);
+		}
+	}
+}
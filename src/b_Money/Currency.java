@@ -1,8 +1,36 @@
 package b_Money;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A currency with an exchange rate to a universal currency.
+ *
+ * Currencies are interned by name through register(), so there is one
+ * Currency per name and currencies can be compared by identity. Each
+ * registered currency has a small ordinal that indexes the exchange rate
+ * table and can stand in for the Currency wherever Money is packed into
+ * primitives. The package-private constructor creates an unregistered
+ * currency, which isRegistered() reports; it is meant for tests and one-off
+ * conversions. It takes no place in the rate table, has no ordinal, and
+ * converts through its own rate in double arithmetic.
+ *
+ * The universal value is computed exactly from the rate taken as the decimal
+ * it prints as, and truncated toward zero. A value that does not fit in a
+ * long throws rather than being clamped, so that Money compares correctly
+ * over its whole range.
+ */
 public class Currency {
+	private static final ConcurrentHashMap<String, Currency> registry = new ConcurrentHashMap<>();
+	private static volatile Currency[] byOrdinal = new Currency[0];
+
 	private String name;
-	private Double rate;
+	private volatile double rate;
+	private volatile Universal universal;
+	private final int ordinal;
+	private final boolean registered;
 
 	/**
 	 * Constructor for Currency.
@@ -10,17 +38,141 @@ public class Currency {
 	 * @param rate The exchange rate of this Currency.
 	 */
 	Currency(String name, Double rate) {
+		this(name, rate, false);
+	}
+
+	private Currency(String name, double rate, boolean registered) {
 		this.name = name;
 		this.rate = rate;
+		this.universal = new Universal(rate);
+		this.registered = registered;
+		if (!registered) {
+			this.ordinal = -1;
+			return;
+		}
+		synchronized (ExchangeRates.class) {
+			this.ordinal = ExchangeRates.register(rate);
+			Currency[] currencies = Arrays.copyOf(byOrdinal, ordinal + 1);
+			currencies[ordinal] = this;
+			byOrdinal = currencies;
+		}
+	}
+
+	/**
+	 * The rate of a currency as a decimal fixed-point number, unscaled / pow,
+	 * for converting to the universal currency.
+	 */
+	private static final class Universal {
+		private final BigDecimal decimal;
+		/* unscaled and pow, or pow 0 where unscaled * pow would not fit in a long */
+		private final long unscaled;
+		private final long pow;
+		/* The largest magnitude of amount whose product with unscaled fits in a long */
+		private final long limit;
+
+		/**
+		 * Creates the fixed-point form of a rate.
+		 * @param rate The exchange rate.
+		 */
+		Universal(double rate) {
+			if (!Double.isFinite(rate)) {
+				this.decimal = null;
+				this.unscaled = 0;
+				this.pow = 0;
+				this.limit = 0;
+				return;
+			}
+			BigDecimal decimal = BigDecimal.valueOf(rate);
+			if (decimal.scale() < 0) {
+				decimal = decimal.setScale(0);
+			}
+			this.decimal = decimal;
+			long unscaled = 0, pow = 0;
+			if (decimal.scale() <= 18 && decimal.unscaledValue().bitLength() < 63) {
+				unscaled = decimal.unscaledValue().longValue();
+				pow = BigDecimal.ONE.scaleByPowerOfTen(decimal.scale()).longValueExact();
+				if (Math.multiplyHigh(Math.abs(unscaled), pow) != 0 || Math.abs(unscaled) * pow < 0) {
+					pow = 0;
+				}
+			}
+			this.unscaled = unscaled;
+			this.pow = pow;
+			this.limit = unscaled == 0 ? Long.MAX_VALUE : Long.MAX_VALUE / Math.abs(unscaled);
+		}
+
+		/**
+		 * Multiplies an amount by the rate, truncating toward zero.
+		 * @param amount The amount in minor units.
+		 * @return The product.
+		 * @throws ArithmeticException if the rate is not finite or the product does not fit in a long.
+		 */
+		long apply(long amount) {
+			if (pow != 0) {
+				if (amount <= limit && amount >= -limit) {
+					return amount * unscaled / pow;
+				}
+				/* amount * unscaled / pow, split so that neither product can overflow unless the result does */
+				long whole = Math.multiplyExact(amount / pow, unscaled);
+				return Math.addExact(whole, amount % pow * unscaled / pow);
+			}
+			if (decimal == null) {
+				throw new ArithmeticException("Rate is not finite");
+			}
+			return BigDecimal.valueOf(amount).multiply(decimal).setScale(0, RoundingMode.DOWN).longValueExact();
+		}
+	}
+
+	/**
+	 * Get the registered Currency with a name, registering it if there is none yet.
+	 * @param name The name of the Currency, e.g. "SEK".
+	 * @param rate The exchange rate, used only if the Currency is new.
+	 * @return The one registered Currency with this name.
+	 */
+	public static Currency register(String name, Double rate) {
+		Currency currency = registry.get(name);
+		if (currency != null) {
+			return currency;
+		}
+		return registry.computeIfAbsent(name, n -> new Currency(n, rate, true));
+	}
+
+	/**
+	 * Get the registered Currency with a name.
+	 * @param name The name of the Currency.
+	 * @return The Currency, or null if no Currency with this name is registered.
+	 */
+	public static Currency forName(String name) {
+		return registry.get(name);
+	}
+
+	/**
+	 * Get the Currency with an ordinal.
+	 * @param ordinal The ordinal of the Currency.
+	 * @return The Currency.
+	 * @throws ArrayIndexOutOfBoundsException if no Currency has this ordinal.
+	 */
+	public static Currency forOrdinal(int ordinal) {
+		return byOrdinal[ordinal];
 	}
 
 	/**
 	 * Convert an amount of this Currency to its value in a universal currency.
 	 * @param amount An amount of cash of this currency.
 	 * @return The value of amount in the "universal currency".
+	 * @throws ArithmeticException if the value does not fit in an int.
 	 */
 	public Integer universalValue(Integer amount) {
-		return (int)(amount * this.rate);
+		return Math.toIntExact(universalValueLong(amount));
+	}
+
+	/**
+	 * Convert an amount of this Currency to its value in a universal currency, without boxing.
+	 * @param amount An amount of cash of this currency, in minor units.
+	 * @return The value of amount in the "universal currency", truncated toward zero.
+	 * @throws ArithmeticException if the value does not fit in a long.
+	 */
+	public long universalValueLong(long amount) {
+		return universal.apply(amount);
 	}
 
 	/**
@@ -39,23 +191,66 @@ public class Currency {
 		return this.rate;
 	}
 
+	/**
+	 * Get the exchange rate of this Currency, without boxing.
+	 * @return The exchange rate of this Currency.
+	 */
+	double rate() {
+		return this.rate;
+	}
+
 	/**
 	 * Set the exchange rate of this Currency.
 	 * @param rate The new exchange rate for this Currency.
 	 */
 	public void setRate(Double rate) {
-		this.rate = rate;
+		Universal universal = new Universal(rate);
+		if (!registered) {
+			this.rate = rate;
+			this.universal = universal;
+			return;
+		}
+		synchronized (ExchangeRates.class) {
+			this.rate = rate;
+			this.universal = universal;
+			ExchangeRates.update(ordinal, rate);
+		}
+	}
+
+	/**
+	 * Get the ordinal of this Currency, its index in the exchange rate table.
+	 * @return The ordinal of this Currency, or -1 if it is not registered.
+	 */
+	public int ordinal() {
+		return this.ordinal;
+	}
+
+	/**
+	 * Check if this Currency was created through the registry.
+	 * @return True if registered, false if created directly.
+	 */
+	public boolean isRegistered() {
+		return this.registered;
+	}
+
+	/**
+	 * Returns a hash code value for the Currency, its ordinal if it is registered.
+	 * @return A hash code value for this Currency.
+	 */
+	@Override
+	public int hashCode() {
+		return registered ? this.ordinal : super.hashCode();
 	}
 
 	/**
-	 * Convert an amount from another Currency to an amount in this Currency.
+	 * Convert an amount from another Currency to an amount in this Currency,
+	 * rounded to the nearest minor unit.
 	 * @param amount Amount of the other Currency.
 	 * @param othercurrency The other Currency.
 	 * @return The amount in this Currency.
 	 */
 	public Integer valueInThisCurrency(Integer amount, Currency othercurrency) {
-		double amountInUniversal = othercurrency.universalValue(amount);
-		return (int) (amountInUniversal / this.rate);
+		return Math.toIntExact(ExchangeRates.current().convert(amount, othercurrency, this));
 	}
 
 }
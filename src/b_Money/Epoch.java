@@ -0,0 +1,147 @@
+package b_Money;
+
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The global epoch clock behind balance snapshots.
+ *
+ * Every balance-changing operation enters the current epoch, tags all of its
+ * writes with it and exits when done. Opening a snapshot at epoch S moves
+ * the clock to S + 1 and then waits for the operations still running in
+ * epoch S, so that afterwards every write tagged S or earlier is complete
+ * and every later write is tagged S + 1 or more. Writers never wait; a
+ * snapshot waits only for the operations already in flight.
+ *
+ * Since a snapshot waits out the previous epoch before the next one can
+ * start, at most two epochs have operations in flight, and writers are
+ * counted per epoch parity, in stripes to spread the contention.
+ */
+final class Epoch {
+	private static final int STRIPES = 64;
+	/* Counters are spaced a cache line apart. */
+	private static final int PAD = 8;
+
+	private static final AtomicLongArray active = new AtomicLongArray(2 * STRIPES * PAD);
+	private static volatile long current = 1;
+	/* The epochs of open snapshots with their counts, and the oldest of them. */
+	private static final TreeMap<Long, Integer> readers = new TreeMap<>();
+	private static volatile long oldest = Long.MAX_VALUE, newest = Long.MIN_VALUE;
+
+	private Epoch() {
+	}
+
+	/**
+	 * Enters the current epoch. Must be paired with exit on the same thread.
+	 *
+	 * @return The epoch to tag this operation's writes with.
+	 */
+	static long enter() {
+		int stripe = stripe();
+		while (true) {
+			long epoch = current;
+			int index = index(epoch, stripe);
+			active.getAndIncrement(index);
+			if (current == epoch) {
+				return epoch;
+			}
+			/* A snapshot moved the clock on meanwhile and may not have seen us; retry in the new epoch. */
+			active.getAndDecrement(index);
+		}
+	}
+
+	/**
+	 * Exits an epoch entered by this thread.
+	 *
+	 * @param epoch The epoch returned by enter.
+	 */
+	static void exit(long epoch) {
+		active.getAndDecrement(index(epoch, stripe()));
+	}
+
+	/**
+	 * Gets the current epoch, which only grows.
+	 *
+	 * @return The epoch.
+	 */
+	static long now() {
+		return current;
+	}
+
+	/**
+	 * Gets the epoch of the newest open snapshot.
+	 *
+	 * @return The epoch, or Long.MIN_VALUE if no snapshot is open.
+	 */
+	static long newestReader() {
+		return newest;
+	}
+
+	/**
+	 * Gets the epoch of the oldest open snapshot.
+	 *
+	 * @return The epoch, or Long.MAX_VALUE if no snapshot is open.
+	 */
+	static long oldestReader() {
+		return oldest;
+	}
+
+	/**
+	 * Opens a snapshot: moves the clock on and waits for the operations
+	 * of the previous epoch to complete.
+	 *
+	 * @return The epoch of the snapshot; writes tagged with it or earlier are visible to it.
+	 */
+	static synchronized long open() {
+		long epoch = current;
+		/* Register before moving the clock, so writers in later epochs keep the versions we read. */
+		readers.merge(epoch, 1, Integer::sum);
+		oldest = readers.firstKey();
+		newest = epoch;
+		current = epoch + 1;
+		for (int spins = 0; inFlight(epoch); spins++) {
+			if (spins < 100) {
+				Thread.onSpinWait();
+			} else {
+				Thread.yield();
+			}
+		}
+		return epoch;
+	}
+
+	/**
+	 * Closes a snapshot opened by open.
+	 *
+	 * @param epoch The epoch of the snapshot.
+	 */
+	static synchronized void close(long epoch) {
+		Integer count = readers.get(epoch);
+		if (count == null) {
+			return;
+		}
+		if (count == 1) {
+			readers.remove(epoch);
+		} else {
+			readers.put(epoch, count - 1);
+		}
+		oldest = readers.isEmpty() ? Long.MAX_VALUE : readers.firstKey();
+		newest = readers.isEmpty() ? Long.MIN_VALUE : readers.lastKey();
+	}
+
+	private static boolean inFlight(long epoch) {
+		for (int stripe = 0; stripe < STRIPES; stripe++) {
+			if (active.get(index(epoch, stripe)) != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static int index(long epoch, int stripe) {
+		return ((int) (epoch & 1) * STRIPES + stripe) * PAD;
+	}
+
+	private static int stripe() {
+		return (int) Thread.currentThread().getId() & (STRIPES - 1);
+	}
+}
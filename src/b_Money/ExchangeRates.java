@@ -0,0 +1,262 @@
+package b_Money;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * The exchange rates of all registered currencies, kept as a precomputed
+ * matrix of pair-wise conversion factors so that converting an amount
+ * between two currencies takes a single fixed-point multiplication.
+ *
+ * Each factor holds the ratio of the two rates, taken as the decimals they
+ * print as, to 62 significant bits with its own shift, so small and large
+ * ratios are as precise as ratios near one. The factor is rounded up, which
+ * makes an amount that converts to exactly half a minor unit round away from
+ * zero as it would in decimal, and it is otherwise within 2^-61 of the ratio.
+ *
+ * A published table never changes. Registering a currency or changing a
+ * rate builds a new table with the next version number and publishes it as a
+ * whole, so a reader always converts with one consistent set of rates. Only
+ * the factors of the changed currency are computed anew. The matrix has room
+ * for more currencies than it holds, and a new currency is added in place
+ * beyond the reach of older tables, so that registering is amortized O(n);
+ * changing a rate copies the matrix.
+ */
+final class ExchangeRates {
+	private static volatile Table current = new Table(0, 0, new double[0], new long[0], new byte[0]);
+
+	/**
+	 * One immutable version of the rate matrix.
+	 */
+	static final class Table {
+		private final long version;
+		private final int size;
+		/* The room for currencies, which rates and factors are sized for */
+		private final int stride;
+		private final double[] rates;
+		/* factors[from * stride + to], or -1 where the ratio does not fit fixed point */
+		private final long[] factors;
+		/* The fractional bits of each factor */
+		private final byte[] shifts;
+
+		/**
+		 * Creates a table over rate and factor arrays that may be shared
+		 * with older tables of fewer currencies.
+		 *
+		 * @param version The version of the new table.
+		 * @param size    The number of currencies.
+		 * @param rates   The rates of the currencies, by ordinal.
+		 * @param factors The factor matrix.
+		 * @param shifts  The shift matrix.
+		 */
+		private Table(long version, int size, double[] rates, long[] factors, byte[] shifts) {
+			this.version = version;
+			this.size = size;
+			this.stride = rates.length;
+			this.rates = rates;
+			this.factors = factors;
+			this.shifts = shifts;
+		}
+
+		/**
+		 * Computes the factors from and to one currency, before the table is published.
+		 *
+		 * @param changed The ordinal of the currency added or changed.
+		 */
+		private void compute(int changed) {
+			for (int other = 0; other < size; other++) {
+				set(changed * stride + other, rates[changed], rates[other]);
+				set(other * stride + changed, rates[other], rates[changed]);
+			}
+		}
+
+		/**
+		 * Sets the factor and shift for a ratio of rates: the ratio times
+		 * 2^shift, rounded up to an integer of 62 bits. Ratios from 2^-65 up
+		 * to 2^61 fit, and others are marked to convert in double arithmetic.
+		 *
+		 * @param index The index in the matrix.
+		 * @param from  The rate of the source currency.
+		 * @param to    The rate of the target currency.
+		 */
+		private void set(int index, double from, double to) {
+			int shift = 61 - Math.getExponent(from / to);
+			if (!(from > 0 && to > 0) || shift < 2 || shift > 125) {
+				factors[index] = -1;
+				return;
+			}
+			BigDecimal numerator = BigDecimal.valueOf(from), denominator = BigDecimal.valueOf(to);
+			long factor = factor(numerator, denominator, shift);
+			/* The double ratio can put the significand one bit off either way */
+			if (factor >= 1L << 62) {
+				factor = factor(numerator, denominator, --shift);
+			} else if (factor < 1L << 61) {
+				factor = factor(numerator, denominator, ++shift);
+			}
+			factors[index] = factor;
+			shifts[index] = (byte) shift;
+		}
+
+		/**
+		 * Computes numerator / denominator * 2^shift, rounded up.
+		 */
+		private static long factor(BigDecimal numerator, BigDecimal denominator, int shift) {
+			int scale = Math.max(numerator.scale(), denominator.scale());
+			BigInteger n = numerator.setScale(scale).unscaledValue().shiftLeft(shift);
+			BigInteger d = denominator.setScale(scale).unscaledValue();
+			BigInteger[] qr = n.divideAndRemainder(d);
+			return qr[1].signum() == 0 ? qr[0].longValueExact() : qr[0].longValueExact() + 1;
+		}
+
+		/**
+		 * Gets the version of this table, which grows with every change.
+		 *
+		 * @return The version.
+		 */
+		long version() {
+			return version;
+		}
+
+		/**
+		 * Converts an amount between two currencies, rounding to the nearest minor unit.
+		 *
+		 * @param amount The amount in minor units of the source currency.
+		 * @param from   The ordinal of the source currency.
+		 * @param to     The ordinal of the target currency.
+		 * @return The amount in minor units of the target currency.
+		 * @throws ArithmeticException if the result does not fit in a long.
+		 */
+		long convert(long amount, int from, int to) {
+			if (from == to) {
+				return amount;
+			}
+			long factor = factors[from * stride + to];
+			if (factor < 0) {
+				return scale(amount, rates[from] / rates[to]);
+			}
+			if (amount == Long.MIN_VALUE) {
+				throw new ArithmeticException("Conversion overflows");
+			}
+			int shift = shifts[from * stride + to];
+			/* The product has at most 125 bits, so high stays below 2^61 */
+			long magnitude = Math.abs(amount);
+			long high = Math.multiplyHigh(magnitude, factor);
+			long low = magnitude * factor;
+			if (shift <= 64) {
+				long rounded = low + (1L << (shift - 1));
+				if (Long.compareUnsigned(rounded, low) < 0) {
+					high++;
+				}
+				low = rounded;
+			} else {
+				high += 1L << (shift - 65);
+			}
+			long result;
+			if (shift < 64) {
+				if (high >>> (shift - 1) != 0) {
+					throw new ArithmeticException("Conversion overflows");
+				}
+				result = (high << (64 - shift)) | (low >>> shift);
+			} else {
+				result = high >>> (shift - 64);
+			}
+			return amount < 0 ? -result : result;
+		}
+
+		/**
+		 * Converts an amount between two currencies, rounding to the nearest
+		 * minor unit. Registered currencies convert through this table, and
+		 * an unregistered one through its own current rate.
+		 *
+		 * @param amount The amount in minor units of the source currency.
+		 * @param from   The source currency.
+		 * @param to     The target currency.
+		 * @return The amount in minor units of the target currency.
+		 * @throws ArithmeticException if the result does not fit in a long.
+		 */
+		long convert(long amount, Currency from, Currency to) {
+			if (from == to) {
+				return amount;
+			}
+			if (!from.isRegistered() || !to.isRegistered()) {
+				return scale(amount, from.rate() / to.rate());
+			}
+			return convert(amount, from.ordinal(), to.ordinal());
+		}
+	}
+
+	/**
+	 * Multiplies an amount by a ratio in double arithmetic, rounding half away from zero.
+	 *
+	 * @param amount The amount in minor units.
+	 * @param ratio  The ratio of the source rate to the target rate.
+	 * @return The rounded product.
+	 * @throws ArithmeticException if the result does not fit in a long.
+	 */
+	private static long scale(long amount, double ratio) {
+		double magnitude = Math.abs((double) amount) * ratio;
+		if (!(magnitude < 0x1p63)) {
+			throw new ArithmeticException("Conversion overflows");
+		}
+		long result = Math.round(magnitude);
+		return amount < 0 ? -result : result;
+	}
+
+	private ExchangeRates() {
+	}
+
+	/**
+	 * Gets the current rate table.
+	 *
+	 * @return The current table.
+	 */
+	static Table current() {
+		return current;
+	}
+
+	/**
+	 * Adds a registered currency to the table.
+	 *
+	 * @param rate The exchange rate of the new currency.
+	 * @return The ordinal of the new currency.
+	 */
+	static synchronized int register(double rate) {
+		Table table = current;
+		int ordinal = table.size;
+		double[] rates = table.rates;
+		long[] factors = table.factors;
+		byte[] shifts = table.shifts;
+		if (ordinal == table.stride) {
+			int stride = Math.max(8, table.stride * 2);
+			rates = Arrays.copyOf(rates, stride);
+			factors = new long[stride * stride];
+			shifts = new byte[stride * stride];
+			for (int from = 0; from < ordinal; from++) {
+				System.arraycopy(table.factors, from * table.stride, factors, from * stride, ordinal);
+				System.arraycopy(table.shifts, from * table.stride, shifts, from * stride, ordinal);
+			}
+		}
+		/* Older tables sharing the arrays never read past their own size */
+		rates[ordinal] = rate;
+		Table next = new Table(table.version + 1, ordinal + 1, rates, factors, shifts);
+		next.compute(ordinal);
+		current = next;
+		return ordinal;
+	}
+
+	/**
+	 * Changes the rate of a currency in the table.
+	 *
+	 * @param ordinal The ordinal of the currency.
+	 * @param rate    The new exchange rate.
+	 */
+	static synchronized void update(int ordinal, double rate) {
+		Table table = current;
+		double[] rates = table.rates.clone();
+		rates[ordinal] = rate;
+		Table next = new Table(table.version + 1, table.size, rates, table.factors.clone(), table.shifts.clone());
+		next.compute(ordinal);
+		current = next;
+	}
+}
@@ -0,0 +1,181 @@
+package b_Money;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Remembers the request IDs of recent operations, so that a retried request
+ * can be told apart from a new one and is not carried out twice.
+ *
+ * The cache holds at most a fixed number of IDs. They sit in a concurrent
+ * map, and a ring in insertion order evicts the oldest as new ones arrive,
+ * so claiming an ID is O(1) and takes no lock beyond the map's own. An
+ * optional time to live makes older IDs count as new again even before
+ * they are evicted. An ID is thus remembered until either the capacity has
+ * been used up by later IDs or its time to live has passed; size the cache
+ * for the longest time a client may retry.
+ *
+ * Eviction is first in, first out rather than by use: a request ID is
+ * claimed once, and its retries only need to find it.
+ *
+ * A claim is in progress until the operation it was taken for completes or
+ * releases it. A retry that finds a claim in progress waits for that
+ * outcome: if the operation was carried out the retry is a duplicate, and
+ * if it was released the retry claims the ID and carries out the operation
+ * itself. A retry is therefore never told an operation happened before it has.
+ * A claim in progress is never forgotten, neither by eviction nor by expiry,
+ * since a retry would then carry out the operation a second time. Evicting
+ * one only marks it, and it leaves the map when its operation is over; the
+ * cache can thus hold more IDs than its capacity by the number of
+ * operations in progress. An expired claim in progress is waited for like
+ * any other, and its ID counts as new once the operation is over.
+ */
+public class IdempotencyCache {
+	private final ConcurrentHashMap<String, Claim> claims;
+	private final AtomicReferenceArray<Claim> order;
+	private final AtomicLong next = new AtomicLong();
+	private final long ttl;
+
+	/* An ID as claimed at some time; compared by identity, so a later claim of the same ID is another Claim. */
+	static final class Claim {
+		private static final int IN_PROGRESS = 0, DONE = 1, RELEASED = 2;
+
+		final String requestid;
+		final long time;
+		private int state = IN_PROGRESS;
+		/* Whether the claim has been evicted while in progress and must leave the map when it is over */
+		private boolean evicted;
+
+		Claim(String requestid, long time) {
+			this.requestid = requestid;
+			this.time = time;
+		}
+
+		/* Records the outcome, and returns whether the claim was evicted while in progress */
+		synchronized boolean finish(int outcome) {
+			state = outcome;
+			notifyAll();
+			return evicted;
+		}
+
+		/* Evicts the claim, and returns whether it is over and can leave the map now */
+		synchronized boolean evict() {
+			evicted = state == IN_PROGRESS;
+			return !evicted;
+		}
+
+		/* Whether the operation has neither completed nor released the claim */
+		synchronized boolean inProgress() {
+			return state == IN_PROGRESS;
+		}
+
+		/* Waits until the operation has completed or released the claim, and returns whether it completed */
+		synchronized boolean await() {
+			boolean interrupted = false;
+			while (state == IN_PROGRESS) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+			return state == DONE;
+		}
+	}
+
+	/**
+	 * Creates a cache that remembers IDs until they are evicted.
+	 *
+	 * @param capacity The number of IDs to remember.
+	 */
+	public IdempotencyCache(int capacity) {
+		this(capacity, 0);
+	}
+
+	/**
+	 * Creates a cache that remembers IDs until they are evicted or expire.
+	 *
+	 * @param capacity  The number of IDs to remember.
+	 * @param ttlMillis How long an ID is remembered, in milliseconds, or 0 for no limit.
+	 */
+	public IdempotencyCache(int capacity, long ttlMillis) {
+		if (capacity <= 0 || ttlMillis < 0) {
+			throw new IllegalArgumentException("Invalid capacity or time to live");
+		}
+		this.claims = new ConcurrentHashMap<>(capacity * 4 / 3 + 1);
+		this.order = new AtomicReferenceArray<>(capacity);
+		this.ttl = ttlMillis == 0 ? Long.MAX_VALUE : TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+	}
+
+	/**
+	 * Gets the number of IDs remembered, including expired ones not yet
+	 * evicted and evicted ones whose operation is still in progress.
+	 *
+	 * @return The number of IDs.
+	 */
+	public int size() {
+		return claims.size();
+	}
+
+	/**
+	 * Claims a request ID for an operation about to be carried out. If the ID
+	 * is claimed by an operation still in progress, waits for its outcome.
+	 *
+	 * @param requestid The ID.
+	 * @return The claim, to complete or release when the operation is over,
+	 *         or null if an operation with the ID was carried out and this
+	 *         one must not be.
+	 */
+	Claim claim(String requestid) {
+		long now = System.nanoTime();
+		Claim claim = new Claim(requestid, now);
+		while (true) {
+			Claim existing = claims.putIfAbsent(requestid, claim);
+			if (existing == null) {
+				break;
+			}
+			if (now - existing.time >= ttl) {
+				if (existing.inProgress()) {
+					existing.await();
+				} else if (claims.replace(requestid, existing, claim)) {
+					break;
+				}
+			} else if (existing.await()) {
+				return null;
+			}
+			/* Released claims are gone from the map by now, so the next round claims the ID or finds a newer claim */
+		}
+		Claim evicted = order.getAndSet((int) (next.getAndIncrement() % order.length()), claim);
+		if (evicted != null && evicted.evict()) {
+			claims.remove(evicted.requestid, evicted);
+		}
+		return claim;
+	}
+
+	/**
+	 * Marks the operation of a claim as carried out, so that its retries are duplicates.
+	 *
+	 * @param claim The claim.
+	 */
+	void complete(Claim claim) {
+		if (claim.finish(Claim.DONE)) {
+			claims.remove(claim.requestid, claim);
+		}
+	}
+
+	/**
+	 * Forgets a claimed ID whose operation failed, so that a retry is carried out.
+	 * The claim stays in the eviction ring until its turn comes, then is dropped.
+	 *
+	 * @param claim The claim.
+	 */
+	void release(Claim claim) {
+		claims.remove(claim.requestid, claim);
+		claim.finish(Claim.RELEASED);
+	}
+}
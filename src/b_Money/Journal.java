@@ -0,0 +1,766 @@
+package b_Money;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+/**
+ * An append-only binary journal of the changes to one Bank: opened accounts,
+ * balance changes, account limits, timed payments and ticks. A Bank with a journal attached
+ * logs every change before applying it, and replay rebuilds the bank from
+ * the journal after a restart.
+ *
+ * Balance changes are logged as deltas in the account's own minor units, so
+ * replay applies them without any currency conversion, together with the
+ * epoch of the operation making them, and ticks are logged
+ * as markers that advance the payment schedule without paying again. Replay
+ * restores account limits but does not enforce them, and the debits already
+ * counted toward a limit per tick are not logged, so the allowance of the
+ * tick in progress starts over.
+ *
+ * A Snapshot records the journal's position when captured, and replay can
+ * start from there to bring a bank loaded from the snapshot up to date.
+ *
+ * Each record is framed as its length, its payload and a CRC32C of the
+ * payload, so a record torn by a crash ends the replay instead of corrupting it.
+ *
+ * The balance changes of an operation, such as both legs of a transfer or
+ * all the payments of a tick, are logged as one group record, so that a
+ * crash never leaves half of an operation in the journal. The operation
+ * waits for its record to reach disk only after releasing its monitors.
+ *
+ * Appends go into a buffer under the journal's lock and are numbered in
+ * order. Writing and forcing happen outside that lock: one thread at a time
+ * swaps in a spare buffer, writes out the full one and forces it on behalf of
+ * every record in it, while other threads keep appending to the spare.
+ */
+public class Journal implements Closeable {
+	/**
+	 * How soon appended records reach stable storage.
+	 */
+	public enum Durability {
+		/** Written to the OS every commit interval, never forced to disk. */
+		BUFFERED,
+		/**
+		 * Forced to disk before every operation returns, by one force for all the
+		 * records appended while the previous force was running.
+		 */
+		GROUP_COMMIT,
+		/** Written and forced to disk by every record or group on its own, under the journal's lock. */
+		SYNC
+	}
+
+	static final byte OPEN = 1, ADJUST = 2, ADD_PAYMENT = 3, REMOVE_PAYMENT = 4, TICK = 5, LIMITS = 6, GROUP = 7;
+
+	private final FileChannel channel;
+	private final Durability durability;
+	private ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+	private ByteBuffer spare = ByteBuffer.allocateDirect(1 << 16);
+	/* Records appended, written to the OS and forced to disk since opening, in append order */
+	private long appended, written, forced;
+	/* The file offset the next record goes to */
+	private long position;
+	/* Set while a thread writes out the swapped buffer outside the lock */
+	private boolean writing;
+	private long forces;
+	private ByteBuffer record = ByteBuffer.allocate(256);
+	private final CRC32C crc = new CRC32C();
+	private final ScheduledExecutorService committer;
+	private IOException failure;
+	/* The group each thread is logging into, if any */
+	private final ThreadLocal<Group> groups = new ThreadLocal<>();
+
+	/**
+	 * The records of one operation, appended to the journal as a single
+	 * record once the operation is done, so that replay applies all of them
+	 * or none. A parallel tick shares its group with the threads paying it.
+	 */
+	static final class Group {
+		private byte[] bytes = new byte[256];
+		private int size, count, depth;
+
+		synchronized void add(ByteBuffer record) {
+			int length = record.remaining();
+			if (size + 4 + length > bytes.length) {
+				bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + 4 + length));
+			}
+			ByteBuffer.wrap(bytes, size, 4).putInt(length);
+			record.get(bytes, size + 4, length);
+			size += 4 + length;
+			count++;
+		}
+	}
+
+	/**
+	 * Opens a journal for appending, creating the file if it does not exist.
+	 *
+	 * @param file                 The journal file.
+	 * @param durability           How soon records reach stable storage.
+	 * @param commitIntervalMillis How often BUFFERED writes records to the OS, unused otherwise.
+	 * @throws IOException if the file cannot be opened.
+	 */
+	public Journal(Path file, Durability durability, long commitIntervalMillis) throws IOException {
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		this.durability = durability;
+		this.position = channel.size();
+		if (durability != Durability.BUFFERED) {
+			this.committer = null;
+		} else {
+			this.committer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "journal-commit " + file.getFileName());
+				thread.setDaemon(true);
+				return thread;
+			});
+			committer.scheduleWithFixedDelay(this::writeAppended, commitIntervalMillis, commitIntervalMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Logs the opening of an account. Like the other records but balance
+	 * changes, it is not waited for here: callers pass the returned sequence
+	 * number to await once they hold no monitors.
+	 *
+	 * @return The sequence number of the record, 0 if it went into a group.
+	 */
+	long open(String accountid) {
+		long seq;
+		synchronized (this) {
+			begin(OPEN);
+			putString(accountid);
+			seq = end();
+		}
+		return seq;
+	}
+
+	/**
+	 * Logs a balance change in the account's own minor units, made by an
+	 * operation in an epoch. Operations log their balance changes in a
+	 * group; a change logged outside one is waited for here.
+	 */
+	void adjust(String accountid, long delta, long epoch) {
+		long seq;
+		synchronized (this) {
+			begin(ADJUST);
+			putString(accountid);
+			ensure(16);
+			record.putLong(delta);
+			record.putLong(epoch);
+			seq = end();
+		}
+		await(seq);
+	}
+
+	/**
+	 * Logs a change of an account's limits.
+	 *
+	 * @return The sequence number of the record, 0 if it went into a group.
+	 */
+	long limits(String accountid, AccountLimits limits) {
+		long seq;
+		synchronized (this) {
+			begin(LIMITS);
+			putString(accountid);
+			ensure(1);
+			record.put((byte) (limits == null ? 0 : 1));
+			if (limits != null) {
+				putMoney(limits.getFloor());
+				putMoney(limits.getPerTick());
+			}
+			seq = end();
+		}
+		return seq;
+	}
+
+	/**
+	 * Logs the addition of a timed payment.
+	 *
+	 * @return The sequence number of the record, 0 if it went into a group.
+	 */
+	long addPayment(String accountid, String payid, int interval, int next, Money amount, Bank tobank, String toaccount) {
+		long seq;
+		synchronized (this) {
+			begin(ADD_PAYMENT);
+			putString(accountid);
+			putString(payid);
+			ensure(16);
+			record.putInt(interval);
+			record.putInt(next);
+			record.putLong(amount.getAmountLong());
+			putString(amount.getCurrency().getName());
+			putString(tobank == null ? "" : tobank.getName());
+			putString(toaccount == null ? "" : toaccount);
+			seq = end();
+		}
+		return seq;
+	}
+
+	/**
+	 * Logs the removal of a timed payment.
+	 *
+	 * @return The sequence number of the record, 0 if it went into a group.
+	 */
+	long removePayment(String accountid, String payid) {
+		long seq;
+		synchronized (this) {
+			begin(REMOVE_PAYMENT);
+			putString(accountid);
+			putString(payid);
+			seq = end();
+		}
+		return seq;
+	}
+
+	/**
+	 * Logs a tick of the payment schedule.
+	 *
+	 * @return The sequence number of the record, 0 if it went into a group.
+	 */
+	long tick() {
+		long seq;
+		synchronized (this) {
+			begin(TICK);
+			seq = end();
+		}
+		return seq;
+	}
+
+	/**
+	 * Opens a group on this thread: the records it logs from now on are
+	 * appended as one when the outermost group is closed. Groups nest.
+	 */
+	void openGroup() {
+		Group group = groups.get();
+		if (group == null) {
+			group = new Group();
+			groups.set(group);
+		}
+		group.depth++;
+	}
+
+	/**
+	 * Closes a group opened on this thread. Closing the outermost one appends
+	 * its records as a single record. Call it before the operation exits its
+	 * epoch, so that snapshots find the record where they expect it.
+	 *
+	 * @return The sequence number to pass to await, 0 if there is nothing to
+	 *         wait for, or -1 if the journal has failed.
+	 */
+	long closeGroup() {
+		Group group = groups.get();
+		if (--group.depth > 0) {
+			return 0;
+		}
+		groups.remove();
+		if (group.count == 0) {
+			return 0;
+		}
+		synchronized (this) {
+			if (failure != null) {
+				return -1;
+			}
+			try {
+				record.clear();
+				if (group.count == 1) {
+					/* A group of one is just its record. */
+					ensure(group.size - 4);
+					record.put(group.bytes, 4, group.size - 4);
+				} else {
+					record.put(GROUP);
+					ensure(4 + group.size);
+					record.putInt(group.count);
+					record.put(group.bytes, 0, group.size);
+				}
+				return end();
+			} catch (UncheckedIOException e) {
+				return -1;
+			}
+		}
+	}
+
+	/**
+	 * Gets the group open on this thread, to share with other threads
+	 * working on the same operation.
+	 *
+	 * @return The group, or null if none is open.
+	 */
+	Group group() {
+		return groups.get();
+	}
+
+	/**
+	 * Makes this thread log into a group opened on another thread, or stop if null.
+	 *
+	 * @param group The group.
+	 */
+	void join(Group group) {
+		if (group == null) {
+			groups.remove();
+		} else {
+			groups.set(group);
+		}
+	}
+
+	/**
+	 * Waits until a record is as durable as the journal promises: for
+	 * GROUP_COMMIT, forced to disk. Call it holding no monitors.
+	 *
+	 * @param seq The sequence number of the record, 0 for none.
+	 * @throws UncheckedIOException if the journal has failed.
+	 */
+	void await(long seq) {
+		if (seq < 0) {
+			synchronized (this) {
+				throw new UncheckedIOException(failure);
+			}
+		}
+		if (seq > 0 && durability == Durability.GROUP_COMMIT) {
+			try {
+				commit(seq, true);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/**
+	 * Closes a group like closeGroup, if there is a journal.
+	 */
+	static long closeGroup(Journal journal) {
+		return journal == null ? 0 : journal.closeGroup();
+	}
+
+	/**
+	 * Waits like await, if there is a journal.
+	 */
+	static void await(Journal journal, long seq) {
+		if (journal != null) {
+			journal.await(seq);
+		}
+	}
+
+	/**
+	 * Writes and forces all appended records to disk.
+	 *
+	 * @throws IOException if writing fails.
+	 */
+	public void flush() throws IOException {
+		long seq;
+		synchronized (this) {
+			seq = appended;
+		}
+		commit(seq, true);
+	}
+
+	/**
+	 * Returns the file offset the next record goes to.
+	 */
+	synchronized long position() {
+		return position;
+	}
+
+	/**
+	 * Returns how many times the journal has forced its file to disk.
+	 */
+	synchronized long forces() {
+		return forces;
+	}
+
+	/**
+	 * Flushes the journal and closes its file. Detach it from its bank first;
+	 * later appends fail.
+	 *
+	 * @throws IOException if writing fails.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (committer != null) {
+			committer.shutdown();
+		}
+		flush();
+		synchronized (this) {
+			boolean interrupted = false;
+			while (writing) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			channel.close();
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Rebuilds a bank by replaying a journal into it. The bank should be new
+	 * and have no journal attached; attach one after replay to keep logging.
+	 * Replay stops at the first torn or corrupt record.
+	 *
+	 * @param file       The journal file.
+	 * @param bank       The bank to rebuild.
+	 * @param banks      The banks receiving timed payments, by name.
+	 * @param currencies The currencies of timed payments, by name.
+	 * @return The number of records replayed.
+	 * @throws IOException if the file cannot be read or names an unknown record type.
+	 */
+	public static long replay(Path file, Bank bank, Map<String, Bank> banks, Map<String, Currency> currencies) throws IOException {
+		return replay(file, false, 0, 0, 0, bank, banks, currencies);
+	}
+
+	/**
+	 * Brings a bank loaded from a snapshot up to date by replaying the part
+	 * of a journal that follows the snapshot. The snapshot must have been
+	 * captured while the journal was attached to its bank.
+	 *
+	 * @param file       The journal file.
+	 * @param snapshot   The snapshot file the bank was loaded from.
+	 * @param bank       The bank loaded from the snapshot.
+	 * @param banks      The banks receiving timed payments, by name.
+	 * @param currencies The currencies of timed payments, by name.
+	 * @return The number of records replayed.
+	 * @throws IOException if either file cannot be read, the snapshot records
+	 *                     no journal position or the journal ends before it.
+	 */
+	public static long replay(Path file, Path snapshot, Bank bank, Map<String, Bank> banks, Map<String, Currency> currencies) throws IOException {
+		long[] mark = Snapshot.journalMark(snapshot);
+		if (mark == null) {
+			throw new IOException("Snapshot holds no journal position: " + snapshot);
+		}
+		return replay(file, true, mark[0], mark[1], mark[2], bank, banks, currencies);
+	}
+
+	/*
+	 * Replays the records from an offset. After a snapshot, the snapshot's view opened while the
+	 * records between from and to were appended: it holds the balance changes
+	 * among them made in its epoch or earlier, so those are skipped, and the
+	 * accounts opened among them or later, so those are not opened again.
+	 */
+	private static long replay(Path file, boolean snapshot, long from, long to, long epoch, Bank bank, Map<String, Bank> banks, Map<String, Currency> currencies) throws IOException {
+		long records = 0;
+		long size = Files.size(file);
+		CRC32C crc = new CRC32C();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+			try {
+				in.skipNBytes(from);
+			} catch (EOFException e) {
+				throw new IOException("Journal ends before the snapshot's position: " + file, e);
+			}
+			long offset = from;
+			while (true) {
+				byte[] payload;
+				try {
+					int length = in.readInt();
+					/* A length running past the end of the file is torn. */
+					if (length <= 0 || length > size - offset - 8) {
+						return records;
+					}
+					payload = new byte[length];
+					in.readFully(payload);
+					crc.reset();
+					crc.update(payload);
+					if (in.readInt() != (int) crc.getValue()) {
+						return records;
+					}
+				} catch (EOFException e) {
+					return records;
+				}
+				records += apply(ByteBuffer.wrap(payload), snapshot, offset < to ? epoch : 0, bank, banks, currencies);
+				offset += payload.length + 8;
+			}
+		}
+	}
+
+	/*
+	 * Applies one record, or each record of a group, and returns how many.
+	 * After a snapshot, accounts it already holds are not opened again, and
+	 * balance changes made in the visible epoch or earlier are skipped.
+	 */
+	private static int apply(ByteBuffer in, boolean snapshot, long visible, Bank bank, Map<String, Bank> banks, Map<String, Currency> currencies) throws IOException {
+		byte type = in.get();
+		switch (type) {
+			case GROUP: {
+				int count = in.getInt();
+				for (int i = 0; i < count; i++) {
+					int length = in.getInt();
+					ByteBuffer inner = in.slice();
+					inner.limit(length);
+					apply(inner, snapshot, visible, bank, banks, currencies);
+					in.position(in.position() + length);
+				}
+				return count;
+			}
+			case OPEN: {
+				String accountid = getString(in);
+				if (snapshot && bank.account(accountid) != null) {
+					break;
+				}
+				try {
+					bank.openAccount(accountid);
+				} catch (AccountExistsException e) {
+					throw new IOException("Journal opens an account twice", e);
+				}
+				break;
+			}
+			case ADJUST: {
+				String accountid = getString(in);
+				long delta = in.getLong();
+				/* Records written before epochs were logged have none. */
+				long epoch = in.remaining() >= 8 ? in.getLong() : Long.MAX_VALUE;
+				if (epoch > visible) {
+					bank.replayAdjust(accountid, delta);
+				}
+				break;
+			}
+			case ADD_PAYMENT: {
+				String accountid = getString(in), payid = getString(in);
+				int interval = in.getInt(), next = in.getInt();
+				long amount = in.getLong();
+				Currency currency = currencies.get(getString(in));
+				String tobank = getString(in);
+				String toaccount = getString(in);
+				if (currency == null) {
+					throw new IOException("Journal names an unknown currency");
+				}
+				bank.addTimedPayment(accountid, payid, interval, next, new Money(amount, currency), tobank.isEmpty() ? null : banks.get(tobank), toaccount);
+				break;
+			}
+			case REMOVE_PAYMENT:
+				bank.removeTimedPayment(getString(in), getString(in));
+				break;
+			case TICK:
+				bank.replayTick();
+				break;
+			case LIMITS: {
+				String accountid = getString(in);
+				AccountLimits limits = null;
+				if (in.get() != 0) {
+					Money floor = getMoney(in, currencies);
+					limits = new AccountLimits(floor, getMoney(in, currencies));
+				}
+				try {
+					bank.setLimits(accountid, limits);
+				} catch (AccountDoesNotExistException e) {
+					throw new IOException("Journal sets limits on a missing account", e);
+				}
+				break;
+			}
+			default:
+				throw new IOException("Unknown journal record type " + type);
+		}
+		return 1;
+	}
+
+	private void begin(byte type) {
+		if (failure != null) {
+			throw new UncheckedIOException(failure);
+		}
+		record.clear();
+		record.put(type);
+	}
+
+	private void putString(String s) {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		ensure(2 + bytes.length);
+		record.putShort((short) bytes.length);
+		record.put(bytes);
+	}
+
+	private void putMoney(Money money) {
+		ensure(1);
+		record.put((byte) (money == null ? 0 : 1));
+		if (money != null) {
+			ensure(8);
+			record.putLong(money.getAmountLong());
+			putString(money.getCurrency().getName());
+		}
+	}
+
+	private static Money getMoney(ByteBuffer in, Map<String, Currency> currencies) throws IOException {
+		if (in.get() == 0) {
+			return null;
+		}
+		long amount = in.getLong();
+		Currency currency = currencies.get(getString(in));
+		if (currency == null) {
+			throw new IOException("Journal names an unknown currency");
+		}
+		return new Money(amount, currency);
+	}
+
+	private static String getString(ByteBuffer in) {
+		byte[] bytes = new byte[in.getShort() & 0xFFFF];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private void ensure(int bytes) {
+		if (record.remaining() < bytes) {
+			ByteBuffer larger = ByteBuffer.allocate(Math.max(record.capacity() * 2, record.position() + bytes));
+			record.flip();
+			larger.put(record);
+			record = larger;
+		}
+	}
+
+	private long end() {
+		record.flip();
+		Group group = groups.get();
+		if (group != null) {
+			group.add(record);
+			return 0;
+		}
+		crc.reset();
+		crc.update(record.array(), 0, record.limit());
+		ByteBuffer payload = record;
+		int length = payload.limit(), checksum = (int) crc.getValue();
+		try {
+			if (buffer.remaining() < length + 8) {
+				/* writeHeld may wait, letting other appends reuse record and crc meanwhile. */
+				payload = ByteBuffer.wrap(Arrays.copyOf(record.array(), length));
+				writeHeld();
+			}
+			if (buffer.remaining() < length + 8) {
+				ByteBuffer large = ByteBuffer.allocate(length + 8);
+				large.putInt(length).put(payload).putInt(checksum).flip();
+				while (large.hasRemaining()) {
+					channel.write(large);
+				}
+				written = ++appended;
+			} else {
+				buffer.putInt(length).put(payload).putInt(checksum);
+				appended++;
+			}
+			position += length + 8;
+			if (durability == Durability.SYNC) {
+				writeHeld();
+				channel.force(false);
+				forces++;
+				forced = appended;
+			}
+			return appended;
+		} catch (IOException e) {
+			failure = e;
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Writes out the buffer while holding the lock, once no commit is writing,
+	 * so the file keeps the append order.
+	 */
+	private void writeHeld() throws IOException {
+		boolean interrupted = false;
+		while (writing) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+		written = appended;
+	}
+
+	/**
+	 * Writes the records up to a sequence number to the OS, and forces them to
+	 * disk if asked. A thread finding no commit running takes the buffer,
+	 * swaps in the spare so appends carry on, and writes and forces outside the
+	 * lock for every record taken. Threads arriving meanwhile wait for it, and
+	 * one of them then commits everything appended in between.
+	 */
+	private void commit(long seq, boolean force) throws IOException {
+		while (true) {
+			ByteBuffer out;
+			long upto;
+			synchronized (this) {
+				boolean interrupted = false;
+				while (writing && (force ? forced : written) < seq) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						interrupted = true;
+					}
+				}
+				if (interrupted) {
+					Thread.currentThread().interrupt();
+				}
+				if ((force ? forced : written) >= seq) {
+					return;
+				}
+				if (failure != null) {
+					throw failure;
+				}
+				writing = true;
+				out = buffer;
+				buffer = spare;
+				upto = appended;
+			}
+			IOException error = null;
+			try {
+				out.flip();
+				while (out.hasRemaining()) {
+					channel.write(out);
+				}
+				if (force) {
+					channel.force(false);
+				}
+			} catch (IOException e) {
+				error = e;
+			}
+			synchronized (this) {
+				out.clear();
+				spare = out;
+				writing = false;
+				if (error != null) {
+					failure = error;
+				} else {
+					written = upto;
+					if (force) {
+						forces++;
+						forced = upto;
+					}
+				}
+				notifyAll();
+			}
+			if (error != null) {
+				throw error;
+			}
+		}
+	}
+
+	private void writeAppended() {
+		long seq;
+		synchronized (this) {
+			seq = appended;
+		}
+		try {
+			commit(seq, false);
+		} catch (IOException e) {
+			/* Recorded as the journal's failure, and thrown by the next append. */
+		}
+	}
+}
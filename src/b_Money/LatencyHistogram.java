@@ -0,0 +1,87 @@
+package b_Money;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A concurrent histogram of latencies in nanoseconds with a fixed memory
+ * footprint, in the style of HdrHistogram: values are counted in buckets
+ * that are linear within each power of two, so any recorded value is
+ * reported within 1/16 of its magnitude.
+ *
+ * Recording is one atomic increment and never allocates.
+ */
+public final class LatencyHistogram {
+	private static final int SUB_BITS = 4, SUB = 1 << SUB_BITS;
+	private static final int BUCKETS = (64 - SUB_BITS) * SUB;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+	/**
+	 * Records one latency.
+	 *
+	 * @param nanos The latency in nanoseconds; negative values count as zero.
+	 */
+	public void record(long nanos) {
+		counts.getAndIncrement(bucket(Math.max(nanos, 0)));
+	}
+
+	/**
+	 * Gets the number of recorded latencies.
+	 *
+	 * @return The count.
+	 */
+	public long count() {
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			count += counts.get(i);
+		}
+		return count;
+	}
+
+	/**
+	 * Gets a percentile of the recorded latencies, as the highest value in
+	 * the bucket holding it. Latencies recorded during the call may or may
+	 * not be included.
+	 *
+	 * @param percentile The percentile, from 0 to 100.
+	 * @return The latency in nanoseconds, or 0 if nothing has been recorded.
+	 */
+	public long percentile(double percentile) {
+		long[] snapshot = new long[BUCKETS];
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(total * Math.min(percentile, 100) / 100));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) {
+				return highest(i);
+			}
+		}
+		return highest(BUCKETS - 1);
+	}
+
+	private static int bucket(long value) {
+		if (value < SUB) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB - 1);
+		return (exponent - SUB_BITS + 1) * SUB + sub;
+	}
+
+	private static long highest(int bucket) {
+		if (bucket < SUB) {
+			return bucket;
+		}
+		int exponent = bucket / SUB + SUB_BITS - 1;
+		long lowest = (long) (SUB + bucket % SUB) << (exponent - SUB_BITS);
+		return lowest + (1L << (exponent - SUB_BITS)) - 1;
+	}
+}
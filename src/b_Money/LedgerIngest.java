@@ -0,0 +1,455 @@
+package b_Money;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Streams opening balances and transactions from a file into a Bank.
+ *
+ * The file is read through a fixed buffer and parsed in place: amounts are
+ * parsed straight from the bytes, and an account ID only becomes a String
+ * the first time it is seen. Rows are applied in batches; within a batch
+ * the changes to each account are netted and applied with one balance
+ * update. Each account's update is atomic, and balance snapshots see
+ * either none or all of a batch, but other operations may see a batch half
+ * applied. Rows naming an account that does not exist, and opening rows for
+ * an account that already exists, are skipped and counted as rejected.
+ *
+ * Withdrawals and transfers from an account with limits are not netted:
+ * each is applied on its own, after the rows before it, and checked
+ * against the limits like a single withdrawal. A row that would break them
+ * is skipped and counted as rejected. Limits set while an ingest runs apply
+ * from the next row naming the account.
+ *
+ * Amounts are integers in minor units of the bank's currency. A CSV file
+ * has one row per line, in one of the forms
+ * open,ID,AMOUNT / deposit,ID,AMOUNT / withdraw,ID,AMOUNT / transfer,FROM,TO,AMOUNT;
+ * blank lines and lines starting with # are ignored. A binary file is a
+ * sequence of fixed-width records: a type byte (1 open, 2 deposit,
+ * 3 withdraw, 4 transfer), two account IDs of a fixed width in UTF-8,
+ * padded with zero bytes (the second one unused except by transfers), and
+ * a big-endian long amount.
+ *
+ * Each batch is recorded in the bank's metrics, if attached, with its rows
+ * counted as deposits, withdrawals and transfers; opening rows are counted
+ * as neither.
+ *
+ * An ingest is not thread-safe, but the bank may be used by other threads
+ * while it runs.
+ */
+public class LedgerIngest {
+	/** The record types of the binary format. */
+	public static final byte OPEN = 1, DEPOSIT = 2, WITHDRAW = 3, TRANSFER = 4;
+
+	private static final byte[] OPEN_TEXT = bytes("open"), DEPOSIT_TEXT = bytes("deposit");
+	private static final byte[] WITHDRAW_TEXT = bytes("withdraw"), TRANSFER_TEXT = bytes("transfer");
+
+	private final Bank bank;
+	private final int batchRows;
+	private final ByteBuffer buffer;
+
+	/* Accounts seen so far, in an open-addressing table keyed by the bytes of their ID. */
+	private byte[][] keys = new byte[1024][];
+	private int[] hashes = new int[1024];
+	private Account[] accounts = new Account[1024];
+	private int size;
+
+	/* The netted change of each account touched by the current batch. */
+	private long[] deltas = new long[1024];
+	private int[] touched = new int[1024];
+	private int touchedCount, pending;
+	/* The rows of the current batch, by type, for the metrics */
+	private int deposits, withdrawals, transfers;
+	private long rejected;
+
+	/**
+	 * Creates an ingest into a bank.
+	 *
+	 * @param bank The bank to apply the rows to.
+	 */
+	public LedgerIngest(Bank bank) {
+		this(bank, 4096, 1 << 20);
+	}
+
+	/**
+	 * Creates an ingest into a bank with a given batch and buffer size.
+	 *
+	 * @param bank        The bank to apply the rows to.
+	 * @param batchRows   The number of rows to net into one batch.
+	 * @param bufferBytes The size of the read buffer, which bounds the length of a line.
+	 */
+	LedgerIngest(Bank bank, int batchRows, int bufferBytes) {
+		this.bank = bank;
+		this.batchRows = batchRows;
+		this.buffer = ByteBuffer.allocate(bufferBytes);
+	}
+
+	/**
+	 * Gets the number of rows rejected so far for naming a missing account,
+	 * for opening an account that already exists, or for breaking an
+	 * account's limits.
+	 *
+	 * @return The number of rejected rows.
+	 */
+	public long getRejected() {
+		return rejected;
+	}
+
+	/**
+	 * Applies the rows of a CSV file to the bank.
+	 *
+	 * @param file The file to read.
+	 * @return The number of rows applied.
+	 * @throws IOException if the file cannot be read or holds a malformed line;
+	 *                     the rows before it have been applied.
+	 */
+	public long readCsv(Path file) throws IOException {
+		long applied = 0, line = 0;
+		byte[] b = buffer.array();
+		buffer.clear();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			boolean eof = false;
+			while (!eof) {
+				eof = channel.read(buffer) < 0;
+				int start = 0, limit = buffer.position();
+				for (int i = 0; i < limit; i++) {
+					if (b[i] == '\n') {
+						applied += csvLine(b, start, i, ++line);
+						start = i + 1;
+					}
+				}
+				if (eof && start < limit) {
+					applied += csvLine(b, start, limit, ++line);
+					start = limit;
+				}
+				if (start == 0 && limit == b.length) {
+					throw new IOException("Line " + (line + 1) + " is longer than the read buffer");
+				}
+				buffer.position(start);
+				buffer.limit(limit);
+				buffer.compact();
+			}
+		} finally {
+			flush();
+		}
+		return applied;
+	}
+
+	/**
+	 * Applies the records of a binary file to the bank.
+	 *
+	 * @param file    The file to read.
+	 * @param idWidth The width of each account ID field in bytes.
+	 * @return The number of records applied.
+	 * @throws IOException if the file cannot be read, holds an unknown record
+	 *                     type or ends in a partial record; the records before
+	 *                     it have been applied.
+	 */
+	public long readBinary(Path file, int idWidth) throws IOException {
+		int width = 1 + 2 * idWidth + 8;
+		if (width > buffer.capacity()) {
+			throw new IllegalArgumentException("Records are wider than the read buffer");
+		}
+		long applied = 0, record = 0;
+		byte[] b = buffer.array();
+		buffer.clear();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			boolean eof = false;
+			while (!eof) {
+				eof = channel.read(buffer) < 0;
+				int start = 0, limit = buffer.position();
+				for (; start + width <= limit; start += width) {
+					record++;
+					int from = start + 1, to = from + idWidth;
+					applied += apply(b[start], b, from, idLength(b, from, idWidth), to, idLength(b, to, idWidth), buffer.getLong(to + idWidth), record);
+				}
+				if (eof && start < limit) {
+					throw new IOException("Record " + (record + 1) + " is truncated");
+				}
+				buffer.position(start);
+				buffer.limit(limit);
+				buffer.compact();
+			}
+		} finally {
+			flush();
+		}
+		return applied;
+	}
+
+	private int csvLine(byte[] b, int start, int end, long line) throws IOException {
+		if (end > start && b[end - 1] == '\r') {
+			end--;
+		}
+		if (start == end || b[start] == '#') {
+			return 0;
+		}
+		int c1 = comma(b, start, end);
+		int c2 = c1 == end ? end : comma(b, c1 + 1, end);
+		if (c2 == end) {
+			throw new IOException("Malformed line " + line);
+		}
+		int c3 = comma(b, c2 + 1, end);
+		byte type;
+		if (Arrays.equals(b, start, c1, TRANSFER_TEXT, 0, TRANSFER_TEXT.length)) {
+			if (c3 == end || comma(b, c3 + 1, end) != end) {
+				throw new IOException("Malformed line " + line);
+			}
+			return apply(TRANSFER, b, c1 + 1, c2 - c1 - 1, c2 + 1, c3 - c2 - 1, parseAmount(b, c3 + 1, end, line), line);
+		} else if (Arrays.equals(b, start, c1, OPEN_TEXT, 0, OPEN_TEXT.length)) {
+			type = OPEN;
+		} else if (Arrays.equals(b, start, c1, DEPOSIT_TEXT, 0, DEPOSIT_TEXT.length)) {
+			type = DEPOSIT;
+		} else if (Arrays.equals(b, start, c1, WITHDRAW_TEXT, 0, WITHDRAW_TEXT.length)) {
+			type = WITHDRAW;
+		} else {
+			throw new IOException("Unknown row type on line " + line);
+		}
+		if (c3 != end) {
+			throw new IOException("Malformed line " + line);
+		}
+		return apply(type, b, c1 + 1, c2 - c1 - 1, 0, 0, parseAmount(b, c2 + 1, end, line), line);
+	}
+
+	/*
+	 * Applies one row, returning 1 if it was applied and 0 if it was rejected.
+	 */
+	private int apply(byte type, byte[] b, int from, int fromLength, int to, int toLength, long amount, long row) throws IOException {
+		/* Make room for two new accounts up front, so that table slots stay valid for the row. */
+		if ((size + 2) * 2 > keys.length) {
+			flush();
+			grow();
+		}
+		int i, j;
+		switch (type) {
+			case OPEN:
+				try {
+					bank.openAccount(new String(b, from, fromLength, StandardCharsets.UTF_8));
+				} catch (AccountExistsException e) {
+					return reject();
+				}
+				i = lookup(b, from, fromLength);
+				add(i, amount);
+				break;
+			case DEPOSIT:
+				if ((i = lookup(b, from, fromLength)) < 0) {
+					return missing();
+				}
+				add(i, amount);
+				deposits++;
+				break;
+			case WITHDRAW:
+				if ((i = lookup(b, from, fromLength)) < 0) {
+					return missing();
+				}
+				if (accounts[i].getLimits() == null) {
+					add(i, Math.negateExact(amount));
+				} else if (!debit(i, -1, amount)) {
+					return reject();
+				}
+				withdrawals++;
+				break;
+			case TRANSFER:
+				if ((i = lookup(b, from, fromLength)) < 0 || (j = lookup(b, to, toLength)) < 0) {
+					return missing();
+				}
+				if (accounts[i].getLimits() == null) {
+					add(i, Math.negateExact(amount));
+					add(j, amount);
+				} else if (!debit(i, j, amount)) {
+					return reject();
+				}
+				transfers++;
+				break;
+			default:
+				throw new IOException("Unknown row type " + type + " in row " + row);
+		}
+		if (++pending == batchRows) {
+			flush();
+		}
+		return 1;
+	}
+
+	/*
+	 * Applies a withdrawal, or a transfer if to is not -1, from an account
+	 * with limits on its own: the rows before it are flushed first, so it is
+	 * checked against the balance they leave. Returns false if the limits
+	 * reject it, leaving the balances unchanged.
+	 */
+	private boolean debit(int from, int to, long amount) {
+		flush();
+		boolean applied = false;
+		long epoch = Epoch.enter();
+		Journal journal = bank.openGroup();
+		long seq;
+		try {
+			accounts[from].post(Math.negateExact(amount), epoch);
+			if (to >= 0) {
+				accounts[to].adjust(amount, epoch);
+			}
+			applied = true;
+		} catch (LimitExceededException e) {
+			/* Nothing was posted. */
+		} finally {
+			seq = Journal.closeGroup(journal);
+			Epoch.exit(epoch);
+		}
+		Journal.await(journal, seq);
+		return applied;
+	}
+
+	private int reject() {
+		rejected++;
+		return 0;
+	}
+
+	private int missing() {
+		BankMetrics metrics = bank.metrics();
+		if (metrics != null) {
+			metrics.missingAccount();
+		}
+		return reject();
+	}
+
+	/*
+	 * Finds the table slot of an account, looking it up in the bank the first
+	 * time its ID is seen. Returns -1 if the bank has no such account.
+	 */
+	private int lookup(byte[] b, int offset, int length) {
+		int hash = 1;
+		for (int k = offset; k < offset + length; k++) {
+			hash = 31 * hash + b[k];
+		}
+		int mask = keys.length - 1;
+		int i = (hash ^ (hash >>> 16)) & mask;
+		for (; keys[i] != null; i = (i + 1) & mask) {
+			if (hashes[i] == hash && Arrays.equals(keys[i], 0, keys[i].length, b, offset, offset + length)) {
+				return i;
+			}
+		}
+		Account account = bank.account(new String(b, offset, length, StandardCharsets.UTF_8));
+		if (account == null) {
+			return -1;
+		}
+		keys[i] = Arrays.copyOfRange(b, offset, offset + length);
+		hashes[i] = hash;
+		accounts[i] = account;
+		size++;
+		return i;
+	}
+
+	private void add(int slot, long delta) {
+		if (deltas[slot] == 0) {
+			touched[touchedCount++] = slot;
+		}
+		deltas[slot] = Math.addExact(deltas[slot], delta);
+		/* A delta netted back to zero is listed again if touched later; flush skips zeros. */
+		if (touchedCount == touched.length) {
+			touched = Arrays.copyOf(touched, touched.length * 2);
+		}
+	}
+
+	/*
+	 * Applies the netted changes of the current batch.
+	 */
+	private void flush() {
+		BankMetrics metrics = bank.metrics();
+		long start = metrics == null ? 0 : System.nanoTime();
+		if (touchedCount > 0) {
+			/* One epoch for the batch, so that a snapshot never sees one side of a transfer */
+			long epoch = Epoch.enter();
+			/* And one journal group, so that replay never restores one side of it either */
+			Journal journal = bank.openGroup();
+			long seq;
+			try {
+				for (int k = 0; k < touchedCount; k++) {
+					int slot = touched[k];
+					long delta = deltas[slot];
+					if (delta != 0) {
+						deltas[slot] = 0;
+						accounts[slot].adjust(delta, epoch);
+					}
+				}
+			} finally {
+				seq = Journal.closeGroup(journal);
+				Epoch.exit(epoch);
+			}
+			Journal.await(journal, seq);
+		}
+		if (metrics != null && pending > 0) {
+			metrics.batch(System.nanoTime() - start, deposits, withdrawals, transfers);
+		}
+		touchedCount = 0;
+		pending = 0;
+		deposits = withdrawals = transfers = 0;
+	}
+
+	/*
+	 * Doubles the table. Only called right after a flush, when no deltas are pending.
+	 */
+	private void grow() {
+		byte[][] oldKeys = keys;
+		int[] oldHashes = hashes;
+		Account[] oldAccounts = accounts;
+		int capacity = oldKeys.length * 2, mask = capacity - 1;
+		keys = new byte[capacity][];
+		hashes = new int[capacity];
+		accounts = new Account[capacity];
+		deltas = new long[capacity];
+		for (int k = 0; k < oldKeys.length; k++) {
+			if (oldKeys[k] != null) {
+				int i = (oldHashes[k] ^ (oldHashes[k] >>> 16)) & mask;
+				while (keys[i] != null) {
+					i = (i + 1) & mask;
+				}
+				keys[i] = oldKeys[k];
+				hashes[i] = oldHashes[k];
+				accounts[i] = oldAccounts[k];
+			}
+		}
+	}
+
+	private static int comma(byte[] b, int from, int end) {
+		while (from < end && b[from] != ',') {
+			from++;
+		}
+		return from;
+	}
+
+	private static long parseAmount(byte[] b, int from, int end, long line) throws IOException {
+		boolean negative = from < end && b[from] == '-';
+		int k = negative ? from + 1 : from;
+		if (k == end) {
+			throw new IOException("Malformed amount on line " + line);
+		}
+		long value = 0;
+		for (; k < end; k++) {
+			int digit = b[k] - '0';
+			if (digit < 0 || digit > 9) {
+				throw new IOException("Malformed amount on line " + line);
+			}
+			try {
+				value = Math.addExact(Math.multiplyExact(value, 10), digit);
+			} catch (ArithmeticException e) {
+				throw new IOException("Amount out of range on line " + line);
+			}
+		}
+		return negative ? -value : value;
+	}
+
+	private static int idLength(byte[] b, int from, int width) {
+		int length = 0;
+		while (length < width && b[from + length] != 0) {
+			length++;
+		}
+		return length;
+	}
+
+	private static byte[] bytes(String text) {
+		return text.getBytes(StandardCharsets.US_ASCII);
+	}
+}
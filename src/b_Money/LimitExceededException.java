@@ -0,0 +1,32 @@
+package b_Money;
+
+/**
+ * Thrown when a debit would break the limits of an account. The balance is
+ * left unchanged. Unchecked, since it can only happen to accounts that have
+ * been given limits.
+ */
+public class LimitExceededException extends RuntimeException {
+	static final long serialVersionUID = 1L;
+
+	private final String accountid;
+
+	/**
+	 * Creates the exception.
+	 *
+	 * @param accountid The ID of the account whose limits would be broken.
+	 * @param message   What was exceeded.
+	 */
+	public LimitExceededException(String accountid, String message) {
+		super(message);
+		this.accountid = accountid;
+	}
+
+	/**
+	 * Gets the account whose limits would be broken.
+	 *
+	 * @return The ID of the account.
+	 */
+	public String getAccountId() {
+		return accountid;
+	}
+}
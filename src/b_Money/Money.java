@@ -1,17 +1,15 @@
 package b_Money;
 
-import java.util.Objects;
-
 public class Money implements Comparable<Money> {
-	private int amount;
+	private long amount;
 	private Currency currency;
 
 	/**
 	 * Constructor for Money.
-	 * @param amount The amount of money.
+	 * @param amount The amount of money, in minor units (e.g. cents).
 	 * @param currency The currency of the money.
 	 */
-	Money(Integer amount, Currency currency) {
+	Money(long amount, Currency currency) {
 		this.amount = amount;
 		this.currency = currency;
 	}
@@ -19,8 +17,17 @@ public class Money implements Comparable<Money> {
 	/**
 	 * Return the amount of money.
 	 * @return The amount of money.
+	 * @throws ArithmeticException if the amount does not fit in an int.
 	 */
 	public Integer getAmount() {
+		return Math.toIntExact(this.amount);
+	}
+
+	/**
+	 * Return the amount of money in minor units, without boxing.
+	 * @return The amount of money.
+	 */
+	public long getAmountLong() {
 		return this.amount;
 	}
 
@@ -37,8 +44,8 @@ public class Money implements Comparable<Money> {
 	 * @return A string representing the amount of Money.
 	 */
 	public String toString() {
-		int wholePart = amount / 100;
-		int fractionalPart = Math.abs(amount % 100);
+		long wholePart = amount / 100;
+		long fractionalPart = Math.abs(amount % 100);
 		return String.format("%d.%02d %s", wholePart, fractionalPart, currency.getName());
 	}
 
@@ -47,7 +54,29 @@ public class Money implements Comparable<Money> {
 	 * @return The value of the Money in the "universal currency".
 	 */
 	public Integer universalValue() {
-		return currency.universalValue(amount);
+		return Math.toIntExact(universalValueLong());
+	}
+
+	/**
+	 * Gets the universal value of the Money, without boxing.
+	 * @return The value of the Money in the "universal currency".
+	 */
+	public long universalValueLong() {
+		return currency.universalValueLong(amount);
+	}
+
+	/**
+	 * Gets the amount of this Money in another currency, rounded to the
+	 * nearest minor unit. Money in the same currency is returned as is,
+	 * without rate conversion.
+	 * @param target The currency to convert to.
+	 * @return The amount in minor units of the target currency.
+	 */
+	long amountIn(Currency target) {
+		if (target == currency) {
+			return amount;
+		}
+		return ExchangeRates.current().convert(amount, currency, target);
 	}
 
 	/**
@@ -62,7 +91,7 @@ public class Money implements Comparable<Money> {
 		if (this == obj) return true;
 		if (obj == null || getClass() != obj.getClass()) return false;
 		Money money = (Money) obj;
-		return amount == money.amount && Objects.equals(currency, money.currency);
+		return amount == money.amount && currency == money.currency;
 	}
 
 	/**
@@ -72,7 +101,7 @@ public class Money implements Comparable<Money> {
 	 */
 	@Override
 	public int hashCode() {
-		return Objects.hash(amount, currency);
+		return 31 * Long.hashCode(amount) + currency.hashCode();
 	}
 
 
@@ -80,20 +109,20 @@ public class Money implements Comparable<Money> {
 	 * Adds a Money to this Money.
 	 * @param other The Money to be added.
 	 * @return A new Money instance representing the sum.
+	 * @throws ArithmeticException if the sum overflows.
 	 */
 	public Money add(Money other) {
-		int addedAmountInThisCurrency = this.amount + (int)(other.universalValue() / this.currency.getRate());
-		return new Money(addedAmountInThisCurrency, this.currency);
+		return new Money(Math.addExact(this.amount, other.amountIn(this.currency)), this.currency);
 	}
 
 	/**
 	 * Subtracts a Money from this Money.
 	 * @param other The Money to be subtracted.
 	 * @return A new Money instance representing the difference.
+	 * @throws ArithmeticException if the difference overflows.
 	 */
 	public Money sub(Money other) {
-		int subtractedAmountInThisCurrency = this.amount - (int)(other.universalValue() / this.currency.getRate());
-		return new Money(subtractedAmountInThisCurrency, this.currency);
+		return new Money(Math.subtractExact(this.amount, other.amountIn(this.currency)), this.currency);
 	}
 
 	/**
@@ -101,6 +130,14 @@ public class Money implements Comparable<Money> {
 	 * @return True if the amount is zero, False otherwise.
 	 */
 	public Boolean isZero() {
+		return isZeroPrimitive();
+	}
+
+	/**
+	 * Check if the amount of this Money is zero, without boxing.
+	 * @return True if the amount is zero, false otherwise.
+	 */
+	public boolean isZeroPrimitive() {
 		return this.amount == 0;
 	}
 
@@ -109,7 +146,7 @@ public class Money implements Comparable<Money> {
 	 * @return A new Money instance with the negated amount.
 	 */
 	public Money negate() {
-		return new Money(-this.amount, this.currency);
+		return new Money(Math.negateExact(this.amount), this.currency);
 	}
 
 	/**
@@ -118,6 +155,6 @@ public class Money implements Comparable<Money> {
 	 * @return 0 if equal, a negative integer if less, a positive if more.
 	 */
 	public int compareTo(Money other) {
-		return this.universalValue().compareTo(other.universalValue());
+		return Long.compare(universalValueLong(), other.universalValueLong());
 	}
 }
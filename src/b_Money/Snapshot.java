@@ -0,0 +1,345 @@
+package b_Money;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A compact copy of a Bank's accounts and timed payments, for restarting
+ * without replaying the bank's whole history.
+ *
+ * Capturing copies the state into memory and is the only step that touches
+ * the bank: balances are read from a BalanceSnapshot without locking, and
+ * the payment schedule is held only while the view is opened and the
+ * payments are copied from it, so balances and payments are from the same
+ * moment. The accounts are scanned after the schedule is released, so
+ * ticks do not wait for that.
+ * Writing the file can then happen on another thread while transfers and
+ * ticks carry on.
+ *
+ * The file holds the bank's name and currency, each account's ID and balance
+ * in minor units, each timed payment with its interval, the ticks until it
+ * is next due, its amount and its receiver, and the limits of each account
+ * that has any. Files of version 1, written before limits, and of version
+ * 2, written before journal positions, still load.
+ *
+ * If the bank has a journal attached, the snapshot also records the
+ * journal's position, so that Journal.replay can bring a bank loaded from
+ * it up to date. Balance changes carry on while the view opens, so the
+ * position is a window: the offsets before and after opening the view,
+ * with the view's epoch to tell which changes in between it holds.
+ */
+public class Snapshot {
+	private static final int MAGIC = 0x424E4B53, VERSION = 3;
+
+	private final String name;
+	private final String currency;
+	private final String[] accountids;
+	private final long[] balances;
+	private final ArrayList<Payment> payments;
+	private final ArrayList<Limits> limits;
+	/* The journal offsets before and after the view opened and its epoch, or -1 without a journal. */
+	private final long journalFrom, journalTo, journalEpoch;
+
+	/* One timed payment, with its receiving bank by name. */
+	private static class Payment {
+		String accountid, payid, currency, tobank, toaccount;
+		int interval;
+		long ticks, amount;
+	}
+
+	/* The limits of one account. */
+	private static class Limits {
+		final String accountid;
+		final AccountLimits limits;
+
+		Limits(String accountid, AccountLimits limits) {
+			this.accountid = accountid;
+			this.limits = limits;
+		}
+	}
+
+	private Snapshot(String name, String currency, String[] accountids, long[] balances, ArrayList<Payment> payments, ArrayList<Limits> limits, long[] mark) {
+		this.name = name;
+		this.currency = currency;
+		this.accountids = accountids;
+		this.balances = balances;
+		this.payments = payments;
+		this.limits = limits;
+		this.journalFrom = mark[0];
+		this.journalTo = mark[1];
+		this.journalEpoch = mark[2];
+	}
+
+	/**
+	 * Copies the state of a bank into memory, as of a single moment.
+	 *
+	 * @param bank The bank to copy.
+	 * @return The snapshot.
+	 */
+	public static Snapshot capture(Bank bank) {
+		ArrayList<Payment> payments = new ArrayList<>();
+		ArrayList<Limits> limits = new ArrayList<>();
+		BalanceSnapshot view;
+		long[] mark = { -1, -1, -1 };
+		TimedPaymentSchedule schedule = bank.schedule();
+		/* Only the payments are copied under the schedule's monitor, not the accounts. */
+		synchronized (schedule) {
+			Journal journal = bank.journal();
+			if (journal != null) {
+				mark[0] = journal.position();
+			}
+			view = bank.snapshotBalances();
+			if (journal != null) {
+				mark[1] = journal.position();
+				mark[2] = view.epoch();
+			}
+			ArrayList<Account.TimedPayment> scheduled = new ArrayList<>(schedule.size());
+			schedule.collect(scheduled);
+			for (Account.TimedPayment tp : scheduled) {
+				Payment payment = new Payment();
+				payment.accountid = tp.getFromAccount().getName();
+				payment.payid = tp.getId();
+				payment.interval = tp.getInterval();
+				payment.ticks = tp.getDue() - schedule.now();
+				payment.amount = tp.getAmount().getAmountLong();
+				payment.currency = tp.getAmount().getCurrency().getName();
+				payment.tobank = tp.getToBank() == null ? "" : tp.getToBank().getName();
+				payment.toaccount = tp.getToAccount() == null ? "" : tp.getToAccount();
+				payments.add(payment);
+			}
+		}
+		ArrayList<String> accountids = new ArrayList<>();
+		long[] balances = new long[16];
+		try (view) {
+			for (Account account : bank.accounts()) {
+				AccountLimits accountLimits;
+				/*
+				 * Limits are journaled and then set under the account's monitor.
+				 * Read after the journal position, they are no older than it,
+				 * and replay sets any that changed since.
+				 */
+				synchronized (account) {
+					accountLimits = account.getLimits();
+				}
+				if (accountLimits != null) {
+					limits.add(new Limits(account.getName(), accountLimits));
+				}
+				if (accountids.size() == balances.length) {
+					balances = Arrays.copyOf(balances, balances.length * 2);
+				}
+				balances[accountids.size()] = view.balance(account).getAmountLong();
+				accountids.add(account.getName());
+			}
+		}
+		return new Snapshot(bank.getName(), bank.getCurrency().getName(), accountids.toArray(new String[0]), balances, payments, limits, mark);
+	}
+
+	/**
+	 * Gets the number of accounts in this snapshot.
+	 *
+	 * @return The number of accounts.
+	 */
+	public int accounts() {
+		return accountids.length;
+	}
+
+	/**
+	 * Writes this snapshot to a file. The file is written under a temporary
+	 * name, forced to disk and then moved into place, and the move is forced
+	 * too, so a crash never leaves a partial snapshot under the file's name.
+	 *
+	 * @param file The file to write.
+	 * @throws IOException if writing fails.
+	 */
+	public void write(Path file) throws IOException {
+		Path partial = file.resolveSibling(file.getFileName() + ".partial");
+		try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(name);
+			out.writeUTF(currency);
+			out.writeLong(journalFrom);
+			out.writeLong(journalTo);
+			out.writeLong(journalEpoch);
+			out.writeInt(accountids.length);
+			for (int i = 0; i < accountids.length; i++) {
+				out.writeUTF(accountids[i]);
+				out.writeLong(balances[i]);
+			}
+			out.writeInt(payments.size());
+			for (Payment payment : payments) {
+				out.writeUTF(payment.accountid);
+				out.writeUTF(payment.payid);
+				out.writeInt(payment.interval);
+				out.writeLong(payment.ticks);
+				out.writeLong(payment.amount);
+				out.writeUTF(payment.currency);
+				out.writeUTF(payment.tobank);
+				out.writeUTF(payment.toaccount);
+			}
+			out.writeInt(limits.size());
+			for (Limits entry : limits) {
+				out.writeUTF(entry.accountid);
+				writeMoney(out, entry.limits.getFloor());
+				writeMoney(out, entry.limits.getPerTick());
+			}
+			out.flush();
+			/* Before the move, or a crash could leave the new name on data never written. */
+			channel.force(true);
+		}
+		Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		forceDirectory(file.toAbsolutePath().getParent());
+	}
+
+	/*
+	 * Forces a directory's entries to disk, making a move into it durable.
+	 * Some platforms cannot open a directory, and then rely on the move alone.
+	 */
+	private static void forceDirectory(Path directory) throws IOException {
+		FileChannel channel;
+		try {
+			channel = FileChannel.open(directory, StandardOpenOption.READ);
+		} catch (IOException | UnsupportedOperationException e) {
+			return;
+		}
+		try (channel) {
+			channel.force(true);
+		}
+	}
+
+	/**
+	 * Captures a bank on the calling thread and writes it to a file in the background.
+	 *
+	 * @param bank The bank to copy.
+	 * @param file The file to write.
+	 * @return A future completing when the file has been written.
+	 */
+	public static CompletableFuture<Void> writeInBackground(Bank bank, Path file) {
+		Snapshot snapshot = capture(bank);
+		return CompletableFuture.runAsync(() -> {
+			try {
+				snapshot.write(file);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+
+	/**
+	 * Loads a snapshot into a new bank, presized for the snapshot's accounts.
+	 *
+	 * @param file       The snapshot file.
+	 * @param banks      The banks receiving timed payments, by name. Payments
+	 *                   to the loaded bank itself need no entry.
+	 * @param currencies The currencies of the bank and its timed payments, by name.
+	 * @return The loaded bank.
+	 * @throws IOException if the file cannot be read or is not a valid snapshot.
+	 */
+	public static Bank load(Path file, Map<String, Bank> banks, Map<String, Currency> currencies) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+			int version = in.readInt() == MAGIC ? in.readInt() : -1;
+			if (version < 1 || version > VERSION) {
+				throw new IOException("Not a bank snapshot: " + file);
+			}
+			String name = in.readUTF();
+			Currency currency = currency(currencies, in.readUTF());
+			if (version >= 3) {
+				in.skipNBytes(24);
+			}
+			int accounts = in.readInt();
+			Bank bank = new Bank(name, currency, accounts);
+			try {
+				for (int i = 0; i < accounts; i++) {
+					bank.restoreAccount(in.readUTF(), in.readLong());
+				}
+			} catch (AccountExistsException e) {
+				throw new IOException("Snapshot holds an account twice", e);
+			}
+			int payments = in.readInt();
+			for (int i = 0; i < payments; i++) {
+				String accountid = in.readUTF(), payid = in.readUTF();
+				int interval = in.readInt();
+				long ticks = in.readLong();
+				Money amount = new Money(in.readLong(), currency(currencies, in.readUTF()));
+				String tobank = in.readUTF();
+				String toaccount = in.readUTF();
+				Bank receiver = tobank.isEmpty() ? null : tobank.equals(name) ? bank : banks.get(tobank);
+				bank.restoreTimedPayment(accountid, payid, interval, ticks, amount, receiver, toaccount);
+			}
+			int limited = version >= 2 ? in.readInt() : 0;
+			try {
+				for (int i = 0; i < limited; i++) {
+					String accountid = in.readUTF();
+					Money floor = readMoney(in, currencies);
+					bank.setLimits(accountid, new AccountLimits(floor, readMoney(in, currencies)));
+				}
+			} catch (AccountDoesNotExistException e) {
+				throw new IOException("Snapshot holds limits of a missing account", e);
+			}
+			return bank;
+		}
+	}
+
+	/**
+	 * Reads the journal position recorded in a snapshot file.
+	 *
+	 * @param file The snapshot file.
+	 * @return The journal offsets before and after the view opened and the
+	 *         view's epoch, or null if the snapshot records no journal position.
+	 * @throws IOException if the file cannot be read or is not a valid snapshot.
+	 */
+	static long[] journalMark(Path file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			int version = in.readInt() == MAGIC ? in.readInt() : -1;
+			if (version < 1 || version > VERSION) {
+				throw new IOException("Not a bank snapshot: " + file);
+			}
+			if (version < 3) {
+				return null;
+			}
+			in.readUTF();
+			in.readUTF();
+			long[] mark = { in.readLong(), in.readLong(), in.readLong() };
+			return mark[0] < 0 ? null : mark;
+		}
+	}
+
+	private static void writeMoney(DataOutputStream out, Money money) throws IOException {
+		out.writeBoolean(money != null);
+		if (money != null) {
+			out.writeLong(money.getAmountLong());
+			out.writeUTF(money.getCurrency().getName());
+		}
+	}
+
+	private static Money readMoney(DataInputStream in, Map<String, Currency> currencies) throws IOException {
+		if (!in.readBoolean()) {
+			return null;
+		}
+		long amount = in.readLong();
+		return new Money(amount, currency(currencies, in.readUTF()));
+	}
+
+	private static Currency currency(Map<String, Currency> currencies, String name) throws IOException {
+		Currency currency = currencies.get(name);
+		if (currency == null) {
+			throw new IOException("Snapshot names an unknown currency " + name);
+		}
+		return currency;
+	}
+}
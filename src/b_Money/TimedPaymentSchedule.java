@@ -0,0 +1,82 @@
+package b_Money;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * A due-time index of timed payments, keyed by the tick at which they fall due.
+ * Advancing the clock only visits the payments due at the new tick, so the cost
+ * of a tick is proportional to the number of due payments rather than to the
+ * number of scheduled ones. Removed payments are dropped lazily when their
+ * bucket comes up, which keeps removal O(1).
+ */
+class TimedPaymentSchedule {
+	private HashMap<Long, ArrayList<Account.TimedPayment>> buckets = new HashMap<>();
+	private long now;
+	private int size;
+
+	/**
+	 * Schedules a payment to fall due a number of ticks from now.
+	 *
+	 * @param tp    The timed payment.
+	 * @param ticks The number of ticks from now, at least 1.
+	 */
+	void schedule(Account.TimedPayment tp, long ticks) {
+		ArrayList<Account.TimedPayment> bucket = buckets.get(now + ticks);
+		if (bucket == null) {
+			bucket = new ArrayList<>();
+			buckets.put(now + ticks, bucket);
+		}
+		bucket.add(tp);
+		tp.setDue(now + ticks);
+		size++;
+	}
+
+	/**
+	 * Advances the clock by one tick and removes the payments due at it.
+	 *
+	 * @return The payments due at the new tick, or null if there are none.
+	 */
+	ArrayList<Account.TimedPayment> advance() {
+		now++;
+		ArrayList<Account.TimedPayment> due = buckets.remove(now);
+		if (due != null) {
+			size -= due.size();
+		}
+		return due;
+	}
+
+	/**
+	 * Adds the scheduled payments that are not cancelled to a list, in the
+	 * order each due tick pays them. Visits the payments only, not the accounts.
+	 *
+	 * @param payments The list to add to.
+	 */
+	void collect(ArrayList<Account.TimedPayment> payments) {
+		for (ArrayList<Account.TimedPayment> bucket : buckets.values()) {
+			for (Account.TimedPayment tp : bucket) {
+				if (!tp.isCancelled()) {
+					payments.add(tp);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the number of ticks that have passed.
+	 *
+	 * @return The current tick.
+	 */
+	long now() {
+		return now;
+	}
+
+	/**
+	 * Gets the number of scheduled entries, including cancelled ones not yet dropped.
+	 *
+	 * @return The number of scheduled entries.
+	 */
+	int size() {
+		return size;
+	}
+}
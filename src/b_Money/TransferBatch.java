@@ -0,0 +1,119 @@
+package b_Money;
+
+import java.util.Arrays;
+
+/**
+ * A batch of transfers stored column by column, for settling many postings
+ * through Bank.transferBatch in one call.
+ */
+public class TransferBatch {
+	private String[] fromaccounts;
+	private Bank[] tobanks;
+	private String[] toaccounts;
+	private Money[] amounts;
+	private int size;
+
+	/**
+	 * Creates an empty batch.
+	 *
+	 * @param capacity The number of transfers to make room for.
+	 */
+	public TransferBatch(int capacity) {
+		fromaccounts = new String[capacity];
+		tobanks = new Bank[capacity];
+		toaccounts = new String[capacity];
+		amounts = new Money[capacity];
+	}
+
+	/**
+	 * Creates a batch from existing columns, which must have the same length.
+	 *
+	 * @param fromaccounts The IDs of the accounts to deduct from.
+	 * @param tobanks      The banks where the receiving accounts reside.
+	 * @param toaccounts   The IDs of the receiving accounts.
+	 * @param amounts      The amounts of money to transfer.
+	 */
+	public TransferBatch(String[] fromaccounts, Bank[] tobanks, String[] toaccounts, Money[] amounts) {
+		if (tobanks.length != fromaccounts.length || toaccounts.length != fromaccounts.length || amounts.length != fromaccounts.length) {
+			throw new IllegalArgumentException("Columns must have the same length");
+		}
+		this.fromaccounts = fromaccounts;
+		this.tobanks = tobanks;
+		this.toaccounts = toaccounts;
+		this.amounts = amounts;
+		this.size = fromaccounts.length;
+	}
+
+	/**
+	 * Appends a transfer to the batch.
+	 *
+	 * @param fromaccount The ID of the account to deduct from.
+	 * @param tobank      The bank where the receiving account resides.
+	 * @param toaccount   The ID of the receiving account.
+	 * @param amount      The amount of money to transfer.
+	 * @return The row of the transfer in this batch.
+	 */
+	public int add(String fromaccount, Bank tobank, String toaccount, Money amount) {
+		if (size == fromaccounts.length) {
+			int capacity = Math.max(16, size * 2);
+			fromaccounts = Arrays.copyOf(fromaccounts, capacity);
+			tobanks = Arrays.copyOf(tobanks, capacity);
+			toaccounts = Arrays.copyOf(toaccounts, capacity);
+			amounts = Arrays.copyOf(amounts, capacity);
+		}
+		fromaccounts[size] = fromaccount;
+		tobanks[size] = tobank;
+		toaccounts[size] = toaccount;
+		amounts[size] = amount;
+		return size++;
+	}
+
+	/**
+	 * Gets the number of transfers in the batch.
+	 *
+	 * @return The number of transfers.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the ID of the account to deduct from in a row.
+	 *
+	 * @param row The row of the transfer.
+	 * @return The account ID.
+	 */
+	String fromaccount(int row) {
+		return fromaccounts[row];
+	}
+
+	/**
+	 * Gets the bank of the receiving account in a row.
+	 *
+	 * @param row The row of the transfer.
+	 * @return The receiving bank.
+	 */
+	Bank tobank(int row) {
+		return tobanks[row];
+	}
+
+	/**
+	 * Gets the ID of the receiving account in a row.
+	 *
+	 * @param row The row of the transfer.
+	 * @return The account ID.
+	 */
+	String toaccount(int row) {
+		return toaccounts[row];
+	}
+
+	/**
+	 * Gets the amount transferred in a row.
+	 *
+	 * @param row The row of the transfer.
+	 * @return The amount.
+	 */
+	Money amount(int row) {
+		return amounts[row];
+	}
+}
@@ -0,0 +1,179 @@
+package b_Money;
+
+import java.io.Closeable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * An asynchronous front end for transfers between Bank accounts. Callers
+ * submit a transfer and get a future instead of waiting for it.
+ *
+ * Accounts are split into shards, and each shard has a single writer thread
+ * that applies every balance update the pipeline makes to its accounts, so
+ * the account locks it takes are only contended by callers using the Bank
+ * directly. A transfer withdraws on the paying account's
+ * shard and hands the deposit to the receiving account's shard, completing
+ * its future once the money has arrived. If the deposit fails, the paying
+ * account is refunded before the future fails. Between the two steps the money is
+ * in flight, and appears in neither balance.
+ *
+ * A transfer is recorded in the metrics of the paying account's bank once
+ * the money has arrived, with the time from its start as its latency.
+ *
+ * At most a fixed number of transfers are in flight at once; when the
+ * pipeline is full, submit waits and trySubmit refuses, so producers are
+ * slowed to the rate the shards can apply. Futures complete on the shard
+ * threads, so callbacks attached to them must not wait on submit.
+ */
+public class TransferPipeline implements Closeable {
+	private final ExecutorService[] shards;
+	private final Semaphore permits;
+	private final int capacity;
+	private volatile boolean closed;
+
+	/**
+	 * Starts a pipeline.
+	 *
+	 * @param shards   The number of shards, each with its own writer thread.
+	 * @param capacity The number of transfers that may be in flight at once.
+	 */
+	public TransferPipeline(int shards, int capacity) {
+		if (shards < 1 || capacity < 1) {
+			throw new IllegalArgumentException("shards and capacity must be positive");
+		}
+		this.shards = new ExecutorService[shards];
+		this.permits = new Semaphore(capacity);
+		this.capacity = capacity;
+		for (int i = 0; i < shards; i++) {
+			final String name = "transfer-shard " + i;
+			this.shards[i] = Executors.newSingleThreadExecutor(runnable -> {
+				Thread thread = new Thread(runnable, name);
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	/**
+	 * Submits a transfer, waiting while the pipeline is full.
+	 * The future fails with AccountDoesNotExistException if one of the
+	 * accounts does not exist, in which case no money is moved.
+	 *
+	 * @param bank        The bank of the paying account.
+	 * @param fromaccount The ID of the account to deduct from.
+	 * @param tobank      The bank where the receiving account resides.
+	 * @param toaccount   The ID of the receiving account.
+	 * @param amount      The amount of money to transfer.
+	 * @return A future completing when the money has arrived.
+	 * @throws InterruptedException if interrupted while waiting for room.
+	 * @throws IllegalStateException if the pipeline has been closed.
+	 */
+	public CompletableFuture<Void> submit(Bank bank, String fromaccount, Bank tobank, String toaccount, Money amount) throws InterruptedException {
+		Account from = bank.account(fromaccount);
+		Account to = tobank.account(toaccount);
+		if (from == null || to == null) {
+			return missing(bank);
+		}
+		permits.acquire();
+		return start(bank, from, to, amount);
+	}
+
+	/**
+	 * Submits a transfer unless the pipeline is full.
+	 * The future fails with AccountDoesNotExistException if one of the
+	 * accounts does not exist, in which case no money is moved.
+	 *
+	 * @param bank        The bank of the paying account.
+	 * @param fromaccount The ID of the account to deduct from.
+	 * @param tobank      The bank where the receiving account resides.
+	 * @param toaccount   The ID of the receiving account.
+	 * @param amount      The amount of money to transfer.
+	 * @return A future completing when the money has arrived, or null if the pipeline is full.
+	 * @throws IllegalStateException if the pipeline has been closed.
+	 */
+	public CompletableFuture<Void> trySubmit(Bank bank, String fromaccount, Bank tobank, String toaccount, Money amount) {
+		Account from = bank.account(fromaccount);
+		Account to = tobank.account(toaccount);
+		if (from == null || to == null) {
+			return missing(bank);
+		}
+		if (!permits.tryAcquire()) {
+			return null;
+		}
+		return start(bank, from, to, amount);
+	}
+
+	/**
+	 * Stops accepting work and waits for the submitted transfers to complete.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		/* Every permit is back once no transfer is in flight, refunds included. */
+		permits.acquireUninterruptibly(capacity);
+		for (ExecutorService shard : shards) {
+			shard.shutdown();
+		}
+		permits.release(capacity);
+	}
+
+	private CompletableFuture<Void> start(Bank bank, Account from, Account to, Money amount) {
+		if (closed) {
+			permits.release();
+			throw new IllegalStateException("Transfer pipeline is closed");
+		}
+		BankMetrics metrics = bank.metrics();
+		long start = metrics == null ? 0 : System.nanoTime();
+		CompletableFuture<Void> result = new CompletableFuture<>();
+		ExecutorService credit = shard(to);
+		shard(from).execute(() -> {
+			try {
+				from.withdraw(amount);
+			} catch (RuntimeException e) {
+				finish(result, e);
+				return;
+			}
+			credit.execute(() -> {
+				try {
+					to.deposit(amount);
+				} catch (RuntimeException e) {
+					shard(from).execute(() -> {
+						from.deposit(amount);
+						finish(result, e);
+					});
+					return;
+				}
+				if (metrics != null) {
+					metrics.transfer(System.nanoTime() - start);
+				}
+				finish(result, null);
+			});
+		});
+		return result;
+	}
+
+	private void finish(CompletableFuture<Void> result, Throwable failure) {
+		permits.release();
+		if (failure == null) {
+			result.complete(null);
+		} else {
+			result.completeExceptionally(failure);
+		}
+	}
+
+	private ExecutorService shard(Account account) {
+		return shards[(int) (account.getOrdinal() % shards.length)];
+	}
+
+	private static CompletableFuture<Void> missing(Bank bank) {
+		BankMetrics metrics = bank.metrics();
+		if (metrics != null) {
+			metrics.missingAccount();
+		}
+		CompletableFuture<Void> result = new CompletableFuture<>();
+		result.completeExceptionally(new AccountDoesNotExistException());
+		return result;
+	}
+}
@@ -2,6 +2,9 @@ package a_Introductory;
 
 import static org.junit.Assert.*;
 
+import java.math.BigInteger;
+import java.util.stream.Collectors;
+
 import org.junit.Test;
 
 import a_Introductory.Fibonacci;
@@ -19,6 +22,53 @@ public class FibonacciTest {
 		assertEquals("5", 5, tester.fib(5));
 		assertEquals("6", 8, tester.fib(6));
 		assertEquals("7", 13, tester.fib(7));
+		assertEquals("46", 1836311903, tester.fib(46));
+	}
+
+	@Test(expected = ArithmeticException.class)
+	public void testFibOverflow() {
+		new Fibonacci().fib(47);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testFibNegative() {
+		new Fibonacci().fib(-1);
+	}
+
+	@Test
+	public void testFibLong() {
+		Fibonacci tester = new Fibonacci();
+		assertEquals(12586269025L, tester.fibLong(50));
+		assertEquals(7540113804746346429L, tester.fibLong(92));
+		try {
+			tester.fibLong(93);
+			fail("fib(93) overflows long");
+		} catch (ArithmeticException e) {
+		}
+	}
+
+	@Test
+	public void testFibBig() {
+		Fibonacci tester = new Fibonacci();
+		assertEquals(new BigInteger("12200160415121876738"), tester.fibBig(93));
+		assertEquals(new BigInteger("354224848179261915075"), tester.fibBig(100));
+		assertEquals(new BigInteger("354224848179261915075"), tester.fibBig(100));
+		BigInteger a = BigInteger.ZERO, b = BigInteger.ONE;
+		Fibonacci uncached = new Fibonacci(0);
+		for (int n = 0; n <= 1000; n++) {
+			assertEquals("" + n, a, uncached.fibBig(n));
+			BigInteger next = a.add(b);
+			a = b;
+			b = next;
+		}
+	}
+
+	@Test
+	public void testStreams() {
+		Fibonacci tester = new Fibonacci();
+		assertEquals("0 1 1 2 3 5 8 13", tester.longs().limit(8).mapToObj(Long::toString).collect(Collectors.joining(" ")));
+		assertEquals(93, tester.longs().count());
+		assertEquals(tester.fibBig(200), tester.sequence().skip(200).findFirst().get());
 	}
 
 }
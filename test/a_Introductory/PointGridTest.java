@@ -0,0 +1,110 @@
+package a_Introductory;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class PointGridTest {
+	int[] x, y;
+	PointGrid grid;
+
+	@Before
+	public void setUp() throws Exception {
+		Random random = new Random(3);
+		x = new int[5000];
+		y = new int[5000];
+		for (int i = 0; i < x.length; i++) {
+			x[i] = random.nextInt(2000) - 1000;
+			y[i] = random.nextInt(1000);
+		}
+		grid = PointGrid.of(x, y);
+	}
+
+	@Test
+	public void testRange() {
+		Quadrilateral q = new Quadrilateral(new Point(-100, 200), new Point(50, 150), new Point(120, 400), new Point(-30, 450));
+		List<Integer> found = new ArrayList<>();
+		assertEquals(found.size() + expectedRange(-100, 150, 120, 450).size(), grid.range(q, found::add));
+		found.sort(null);
+		assertEquals(expectedRange(-100, 150, 120, 450), found);
+		assertEquals(0, grid.range(5, 5, 4, 4, id -> fail()));
+	}
+
+	@Test
+	public void testNearest() {
+		Random random = new Random(4);
+		for (int i = 0; i < 200; i++) {
+			int qx = random.nextInt(3000) - 1500, qy = random.nextInt(1600) - 300;
+			int k = 1 + random.nextInt(20);
+			assertArrayEquals(expectedNearest(qx, qy, k), grid.nearest(qx, qy, k));
+		}
+		assertEquals(0, grid.nearest(0, 0, 0).length);
+		assertEquals(x.length, grid.nearest(0, 0, x.length + 10).length);
+	}
+
+	@Test
+	public void testInsertDelete() {
+		assertTrue(grid.delete(7));
+		assertFalse(grid.delete(7));
+		assertEquals(4999, grid.size());
+		x[7] = Integer.MIN_VALUE;
+		assertFalse(Arrays.stream(grid.nearest(0, 0, 5000)).anyMatch(id -> id == 7));
+		/* Far outside the bounds the grid was sized for */
+		int id = grid.insert(100000, -100000);
+		assertEquals(7, id);
+		x[7] = 100000;
+		y[7] = -100000;
+		assertEquals(5000, grid.size());
+		assertEquals(100000, grid.x(id));
+		assertArrayEquals(new int[] { 7 }, grid.nearest(99000, -99000, 1));
+		assertArrayEquals(expectedNearest(3000, 3000, 10), grid.nearest(3000, 3000, 10));
+		int next = grid.insert(1, 1);
+		assertEquals(5000, next);
+	}
+
+	@Test
+	public void testInsertIntoEmpty() {
+		PointGrid empty = new PointGrid(0, 0, 99, 99, 0);
+		assertEquals(0, empty.nearest(5, 5, 3).length);
+		for (int i = 0; i < 100; i++) {
+			assertEquals(i, empty.insert(i, i));
+		}
+		assertArrayEquals(new int[] { 50, 49, 51 }, empty.nearest(50, 50, 3));
+		assertEquals(11, empty.range(10, 10, 20, 20, id -> { }));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDeletedPoint() {
+		grid.delete(3);
+		grid.x(3);
+	}
+
+	private List<Integer> expectedRange(int minX, int minY, int maxX, int maxY) {
+		List<Integer> ids = new ArrayList<>();
+		for (int i = 0; i < x.length; i++) {
+			if (x[i] >= minX && x[i] <= maxX && y[i] >= minY && y[i] <= maxY) {
+				ids.add(i);
+			}
+		}
+		return ids;
+	}
+
+	/* By linear scan over the columns, skipping points marked deleted with Integer.MIN_VALUE */
+	private int[] expectedNearest(int qx, int qy, int k) {
+		List<long[]> all = new ArrayList<>();
+		for (int i = 0; i < x.length; i++) {
+			if (x[i] != Integer.MIN_VALUE) {
+				long dx = x[i] - qx, dy = y[i] - qy;
+				all.add(new long[] { dx * dx + dy * dy, i });
+			}
+		}
+		all.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+		return all.stream().limit(k).mapToInt(a -> (int) a[1]).toArray();
+	}
+}
@@ -20,20 +20,63 @@ public class PointTest {
 		Point res1 = p1.add(p2);
 		Point res2 = p1.add(p3);
 
-		assertEquals(4,(int) res1.x);
-		assertEquals(-21,(int) res1.y);
-		assertEquals(-3,(int) res2.x);
-		assertEquals(12,(int) res2.y);
+		assertEquals(4,res1.x);
+		assertEquals(-21,res1.y);
+		assertEquals(-3,res2.x);
+		assertEquals(12,res2.y);
 	}
 	@Test
 	public void testSub() {
 		Point res1 = p1.sub(p2);
 		Point res2 = p1.sub(p3);
 
-		assertEquals(10,(int) res1.x);
-		assertEquals(39,(int) res1.y);
-		assertEquals(17,(int) res2.x);
-		assertEquals(6,(int) res2.y);
+		assertEquals(10,res1.x);
+		assertEquals(39,res1.y);
+		assertEquals(17,res2.x);
+		assertEquals(6,res2.y);
 	}
 
+	@Test
+	public void testInPlace() {
+		Point sum = new Point(0, 0);
+		assertSame(sum, sum.addInPlace(p1).addInPlace(p2));
+		assertEquals(4, sum.x);
+		assertEquals(-21, sum.y);
+		sum.subInPlace(p3);
+		assertEquals(14, sum.x);
+		assertEquals(-24, sum.y);
+		sum.set(1, 2);
+		assertEquals(1, sum.x);
+		assertEquals(2, sum.y);
+		assertEquals(7, p1.x);
+	}
+
+	@Test
+	public void testOverflow() {
+		Point max = new Point(0, Integer.MAX_VALUE);
+		try {
+			max.add(p1);
+			fail("The sum does not fit in an int");
+		} catch (ArithmeticException e) {
+		}
+		try {
+			max.addInPlace(p1);
+			fail("The sum does not fit in an int");
+		} catch (ArithmeticException e) {
+		}
+		assertEquals(0, max.x);
+		assertEquals(Integer.MAX_VALUE, max.y);
+		Point min = new Point(Integer.MIN_VALUE, 0);
+		try {
+			min.sub(p1);
+			fail("The difference does not fit in an int");
+		} catch (ArithmeticException e) {
+		}
+		try {
+			min.subInPlace(p1);
+			fail("The difference does not fit in an int");
+		} catch (ArithmeticException e) {
+		}
+		assertEquals(Integer.MIN_VALUE, min.x);
+	}
 }
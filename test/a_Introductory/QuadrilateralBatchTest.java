@@ -0,0 +1,109 @@
+package a_Introductory;
+
+import static org.junit.Assert.*;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class QuadrilateralBatchTest {
+
+	@Test
+	public void testClassify() {
+		/* The shapes of QuadrilateralTest: two squares, two rectangles and neither */
+		int[] x = { 2, 4, 8, 6, -1, -1, 1, 1, 4, 3, 9, 10, -2, -2, 2, 2, -2, -1, 1, 1 };
+		int[] y = { 3, 7, 5, 1, -1, 1, 1, -1, 2, 4, 7, 5, -1, 1, 1, -1, -2, 1, 1, -1 };
+		byte[] kinds = new byte[5];
+		QuadrilateralBatch.classify(x, y, kinds);
+		assertArrayEquals(new byte[] { QuadrilateralBatch.SQUARE, QuadrilateralBatch.SQUARE, QuadrilateralBatch.RECTANGLE,
+				QuadrilateralBatch.RECTANGLE, QuadrilateralBatch.OTHER }, kinds);
+	}
+
+	@Test
+	public void testMatchesQuadrilateral() {
+		Random random = new Random(1);
+		int count = 20000;
+		int[] x = new int[4 * count], y = new int[4 * count];
+		for (int i = 0; i < count; i++) {
+			int c = 4 * i;
+			if (i % 2 == 0) {
+				/* A rectangle, or a square, rotated by (dx, dy) */
+				int x0 = random.nextInt(16383) - 8191, y0 = random.nextInt(16383) - 8191;
+				int dx = random.nextInt(64) - 32, dy = random.nextInt(64) - 32, k = 1 + random.nextInt(2);
+				int[] px = { x0, x0 + dx, x0 + dx - k * dy, x0 - k * dy };
+				int[] py = { y0, y0 + dy, y0 + dy + k * dx, y0 + k * dx };
+				System.arraycopy(px, 0, x, c, 4);
+				System.arraycopy(py, 0, y, c, 4);
+			} else {
+				for (int j = 0; j < 4; j++) {
+					x[c + j] = random.nextInt(32767) - 16383;
+					y[c + j] = random.nextInt(32767) - 16383;
+				}
+			}
+		}
+		byte[] kinds = new byte[count], parallel = new byte[count];
+		QuadrilateralBatch.classify(x, y, kinds);
+		QuadrilateralBatch.classifyParallel(x, y, parallel);
+		assertArrayEquals(kinds, parallel);
+		for (int i = 0, c = 0; i < count; i++, c += 4) {
+			Quadrilateral quad = new Quadrilateral(new Point(x[c], y[c]), new Point(x[c + 1], y[c + 1]),
+					new Point(x[c + 2], y[c + 2]), new Point(x[c + 3], y[c + 3]));
+			assertEquals("" + i, quad.isRectangle(), kinds[i] != QuadrilateralBatch.OTHER);
+			assertEquals("" + i, quad.isSquare(), kinds[i] == QuadrilateralBatch.SQUARE);
+		}
+	}
+
+	@Test
+	public void testFullRange() {
+		int min = Integer.MIN_VALUE, max = Integer.MAX_VALUE;
+		assertEquals(QuadrilateralBatch.SQUARE, QuadrilateralBatch.classify(min, min, max, min, max, max, min, max));
+		assertEquals(QuadrilateralBatch.RECTANGLE, QuadrilateralBatch.classify(min, min, max, min, max, 0, min, 0));
+		assertEquals(QuadrilateralBatch.OTHER, QuadrilateralBatch.classify(min, min, max, min, max, max, min + 1, max));
+
+		/* Rotated rectangles and squares spanning up to 2^32, some moved off by one, against BigInteger */
+		Random random = new Random(2);
+		for (int i = 0; i < 20000; i++) {
+			long dx = random.nextInt(1 << 30), dy = random.nextInt(1 << 30), k = 1 + random.nextInt(2);
+			long x0 = min + k * dy, y0 = min;
+			long[] px = { x0, x0 + dx, x0 + dx - k * dy, x0 - k * dy };
+			long[] py = { y0, y0 + dy, y0 + dy + k * dx, y0 + k * dx };
+			if (i % 2 == 1) {
+				px[random.nextInt(4)] += random.nextBoolean() ? 1 : -1;
+				py[random.nextInt(4)] += random.nextBoolean() ? 1 : -1;
+			}
+			int[] x = new int[4], y = new int[4];
+			for (int j = 0; j < 4; j++) {
+				x[j] = (int) Math.max(min, Math.min(max, px[j]));
+				y[j] = (int) Math.max(min, Math.min(max, py[j]));
+			}
+			assertEquals("" + i, reference(x, y), QuadrilateralBatch.classify(x[0], y[0], x[1], y[1], x[2], y[2], x[3], y[3]));
+		}
+	}
+
+	private static byte reference(int[] x, int[] y) {
+		BigInteger[] sx = new BigInteger[4], sy = new BigInteger[4];
+		for (int j = 0; j < 4; j++) {
+			sx[j] = BigInteger.valueOf(x[(j + 1) % 4]).subtract(BigInteger.valueOf(x[j]));
+			sy[j] = BigInteger.valueOf(y[(j + 1) % 4]).subtract(BigInteger.valueOf(y[j]));
+		}
+		for (int j = 0; j < 4; j++) {
+			int n = (j + 1) % 4;
+			if (sx[j].multiply(sx[n]).add(sy[j].multiply(sy[n])).signum() != 0) {
+				return QuadrilateralBatch.OTHER;
+			}
+		}
+		BigInteger a = sx[0].pow(2).add(sy[0].pow(2));
+		for (int j = 1; j < 4; j++) {
+			if (!a.equals(sx[j].pow(2).add(sy[j].pow(2)))) {
+				return QuadrilateralBatch.RECTANGLE;
+			}
+		}
+		return QuadrilateralBatch.SQUARE;
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTooFewCorners() {
+		QuadrilateralBatch.classify(new int[7], new int[8], new byte[2]);
+	}
+}
@@ -27,4 +27,53 @@ public class Vector2DTest {
 		assertFalse("v1 should not be orthogonal to v2", v1.isOrthogonalTo(v2));
 		assertTrue("v1 should be orthogonal to v3", v1.isOrthogonalTo(v3));
 	}
+
+	@Test
+	public void testDotProductOverflow() {
+		Vector2D big = new Vector2D(50000, 50000);
+		assertEquals(5000000000L, big.dotProductLong(big));
+		assertFalse(big.isOrthogonalTo(new Vector2D(65536, 0)));
+		try {
+			big.dotProduct(big);
+			fail("The dot product does not fit in an int");
+		} catch (ArithmeticException e) {
+		}
+		Vector2D min = new Vector2D(Integer.MIN_VALUE, Integer.MIN_VALUE);
+		try {
+			min.dotProductLong(min);
+			fail("The dot product does not fit in a long");
+		} catch (ArithmeticException e) {
+		}
+		assertFalse(min.isOrthogonalTo(min));
+		assertTrue(min.isOrthogonalTo(new Vector2D(1, -1)));
+	}
+
+	@Test
+	public void testInPlace() {
+		Vector2D v = new Vector2D(0, 0);
+		assertSame(v, v.set(new Point(1, 2), new Point(4, -2)));
+		assertEquals(3, v.x);
+		assertEquals(-4, v.y);
+		v.addInPlace(v1);
+		assertEquals(1, v.x);
+		assertEquals(0, v.y);
+	}
+
+	@Test
+	public void testInPlaceOverflow() {
+		Vector2D v = new Vector2D(1, Integer.MAX_VALUE);
+		try {
+			v.addInPlace(new Vector2D(1, 1));
+			fail("The sum does not fit in an int");
+		} catch (ArithmeticException e) {
+		}
+		assertEquals(1, v.x);
+		assertEquals(Integer.MAX_VALUE, v.y);
+		try {
+			v.set(new Point(0, Integer.MIN_VALUE), new Point(5, 1));
+			fail("The difference does not fit in an int");
+		} catch (ArithmeticException e) {
+		}
+		assertEquals(1, v.x);
+	}
 }
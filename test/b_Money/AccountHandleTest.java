@@ -0,0 +1,78 @@
+package b_Money;
+
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the AccountHandle class.
+ */
+public class AccountHandleTest {
+	Currency SEK, DKK;
+	Bank SweBank, DanskeBank;
+	AccountHandle ulrika, bob, gertrud;
+
+	/**
+	 * Setup method to initialize test data before each test case.
+	 *
+	 * @throws Exception If an exception occurs during setup.
+	 */
+	@Before
+	public void setUp() throws Exception {
+		SEK = new Currency("SEK", 0.15);
+		DKK = new Currency("DKK", 0.20);
+		SweBank = new Bank("SweBank", SEK);
+		DanskeBank = new Bank("DanskeBank", DKK);
+		SweBank.openAccount("Ulrika");
+		SweBank.openAccount("Bob");
+		DanskeBank.openAccount("Gertrud");
+		ulrika = SweBank.handle("Ulrika");
+		bob = SweBank.handle("Bob");
+		gertrud = DanskeBank.handle("Gertrud");
+	}
+
+	/**
+	 * Test case for the bank and ID of a handle.
+	 */
+	@Test
+	public void testIdentity() {
+		assertSame(SweBank, ulrika.getBank());
+		assertEquals("Ulrika", ulrika.getId());
+	}
+
+	/**
+	 * Test case for resolving a missing account.
+	 *
+	 * @throws AccountDoesNotExistException If the account does not exist.
+	 */
+	@Test(expected = AccountDoesNotExistException.class)
+	public void testMissingAccount() throws AccountDoesNotExistException {
+		SweBank.handle("Nobody");
+	}
+
+	/**
+	 * Test case for deposits and withdrawals, which must be visible through the bank.
+	 *
+	 * @throws AccountDoesNotExistException If the account does not exist.
+	 */
+	@Test
+	public void testDepositWithdraw() throws AccountDoesNotExistException {
+		ulrika.deposit(new Money(1000, SEK));
+		ulrika.withdraw(new Money(300, SEK));
+		assertEquals(new Money(700, SEK), ulrika.getBalance());
+		assertEquals(Integer.valueOf(700), SweBank.getBalance("Ulrika"));
+	}
+
+	/**
+	 * Test case for transfers within a bank and to another currency.
+	 */
+	@Test
+	public void testTransferTo() {
+		ulrika.deposit(new Money(1000, SEK));
+		ulrika.transferTo(bob, new Money(200, SEK));
+		ulrika.transferTo(gertrud, new Money(400, SEK));
+		assertEquals(new Money(400, SEK), ulrika.getBalance());
+		assertEquals(new Money(200, SEK), bob.getBalance());
+		assertEquals(new Money(300, DKK), gertrud.getBalance());
+	}
+}
@@ -0,0 +1,98 @@
+package b_Money;
+
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the BalanceReport class.
+ */
+public class BalanceReportTest {
+	Currency SEK, DKK;
+	Bank SweBank, DanskeBank;
+
+	/**
+	 * Setup method to initialize test data before each test case.
+	 *
+	 * @throws Exception If an exception occurs during setup.
+	 */
+	@Before
+	public void setUp() throws Exception {
+		SEK = new Currency("SEK", 0.15);
+		DKK = new Currency("DKK", 0.20);
+		SweBank = new Bank("SweBank", SEK);
+		DanskeBank = new Bank("DanskeBank", DKK);
+		SweBank.openAccount("Ulrika");
+		SweBank.openAccount("Bob");
+		DanskeBank.openAccount("Gertrud");
+		SweBank.deposit("Ulrika", new Money(10000, SEK));
+		SweBank.deposit("Bob", new Money(5000, SEK));
+		DanskeBank.deposit("Gertrud", new Money(20000, DKK));
+	}
+
+	/**
+	 * Test case for the total and the sums per currency of several banks.
+	 */
+	@Test
+	public void testTotals() {
+		BalanceReport report = BalanceReport.of(0, SweBank, DanskeBank);
+		Map<Currency, Money> totals = report.getTotals();
+		assertEquals(2, totals.size());
+		assertEquals(new Money(15000, SEK), totals.get(SEK));
+		assertEquals(new Money(20000, DKK), totals.get(DKK));
+		assertEquals(new Money(15000, SEK).universalValueLong() + new Money(20000, DKK).universalValueLong(), report.getTotal());
+		assertTrue(report.getTop().isEmpty());
+		assertEquals(new Money(15000, SEK), SweBank.report(0).getTotals().get(SEK));
+	}
+
+	/**
+	 * Test case for the largest accounts, ranked by universal value across currencies.
+	 */
+	@Test
+	public void testTop() {
+		List<BalanceReport.Holding> top = BalanceReport.of(2, SweBank, DanskeBank).getTop();
+		assertEquals(2, top.size());
+		assertSame(DanskeBank, top.get(0).getBank());
+		assertEquals("Gertrud", top.get(0).getAccountId());
+		assertEquals(new Money(20000, DKK), top.get(0).getBalance());
+		assertEquals("Ulrika", top.get(1).getAccountId());
+		assertEquals(3, BalanceReport.of(10, SweBank, DanskeBank).getTop().size());
+	}
+
+	/**
+	 * Test case for the largest accounts among many, with ties broken by account ID.
+	 *
+	 * @throws Exception If an account does not exist or already exists.
+	 */
+	@Test
+	public void testTopOfMany() throws Exception {
+		Bank bank = new Bank("Big", SEK);
+		Random random = new Random(1);
+		List<long[]> expected = new ArrayList<>();
+		for (int i = 0; i < 10000; i++) {
+			bank.openAccount("acc" + i);
+			long amount = random.nextInt(1000);
+			bank.deposit("acc" + i, new Money(amount, SEK));
+			expected.add(new long[] { amount, i });
+		}
+		expected.sort((a, b) -> a[0] != b[0] ? Long.compare(b[0], a[0]) : ("acc" + a[1]).compareTo("acc" + b[1]));
+		List<BalanceReport.Holding> top = bank.report(50).getTop();
+		assertEquals(50, top.size());
+		for (int i = 0; i < 50; i++) {
+			assertEquals("acc" + expected.get(i)[1], top.get(i).getAccountId());
+			assertEquals(expected.get(i)[0], top.get(i).getBalance().getAmountLong());
+		}
+	}
+
+	/**
+	 * Test case for asking for a negative number of accounts.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeTop() {
+		SweBank.report(-1);
+	}
+}
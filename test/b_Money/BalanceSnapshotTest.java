@@ -0,0 +1,133 @@
+package b_Money;
+
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the BalanceSnapshot class.
+ */
+public class BalanceSnapshotTest {
+	Currency SEK, DKK;
+	Bank SweBank, DanskeBank;
+
+	/**
+	 * Setup method to initialize test data before each test case.
+	 *
+	 * @throws Exception If an exception occurs during setup.
+	 */
+	@Before
+	public void setUp() throws Exception {
+		SEK = new Currency("SEK", 0.15);
+		DKK = new Currency("DKK", 0.20);
+		SweBank = new Bank("SweBank", SEK);
+		DanskeBank = new Bank("DanskeBank", DKK);
+		SweBank.openAccount("Ulrika");
+		SweBank.openAccount("Bob");
+		DanskeBank.openAccount("Gertrud");
+		SweBank.deposit("Ulrika", new Money(10000, SEK));
+	}
+
+	/**
+	 * Test case for a view keeping its balances while the bank changes.
+	 *
+	 * @throws Exception If an account does not exist or already exists.
+	 */
+	@Test
+	public void testPointInTime() throws Exception {
+		try (BalanceSnapshot view = SweBank.snapshotBalances()) {
+			SweBank.transfer("Ulrika", "Bob", new Money(1000, SEK));
+			SweBank.transfer("Ulrika", "Bob", new Money(1000, SEK));
+			SweBank.openAccount("Alice");
+			SweBank.deposit("Alice", new Money(500, SEK));
+			assertEquals(new Money(10000, SEK), view.getBalance("Ulrika"));
+			assertEquals(new Money(0, SEK), view.getBalance("Bob"));
+			assertEquals(new Money(0, SEK), view.getBalance("Alice"));
+			assertNull(view.getBalance("Nobody"));
+			assertEquals(new Money(10000, SEK), view.total());
+			try (BalanceSnapshot later = SweBank.snapshotBalances()) {
+				assertEquals(new Money(8000, SEK), later.getBalance("Ulrika"));
+				assertEquals(new Money(10500, SEK), later.total());
+			}
+			assertEquals(new Money(10000, SEK), view.getBalance("Ulrika"));
+		}
+		assertEquals(Integer.valueOf(8000), SweBank.getBalance("Ulrika"));
+	}
+
+	/**
+	 * Test case for using a closed view.
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testClosed() {
+		BalanceSnapshot view = SweBank.snapshotBalances();
+		view.close();
+		view.close();
+		view.total();
+	}
+
+	/**
+	 * Test case for totals while transfers, batches and timed payments run:
+	 * every view must add up to the money supply.
+	 *
+	 * @throws Exception If a transfer thread fails.
+	 */
+	@Test
+	public void testTotalConservedUnderConcurrentTransfers() throws Exception {
+		final int accounts = 32;
+		for (int i = 0; i < accounts; i++) {
+			SweBank.openAccount("acc" + i);
+			SweBank.deposit("acc" + i, new Money(10000, SEK));
+		}
+		for (int i = 0; i < accounts; i += 4) {
+			SweBank.addTimedPayment("acc" + i, "p", 0, 0, new Money(7, SEK), SweBank, "acc" + (i + 1));
+		}
+		final long supply = accounts * 10000L + 10000;
+		AtomicBoolean running = new AtomicBoolean(true);
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		List<Future<?>> results = new ArrayList<>();
+		for (int t = 0; t < 3; t++) {
+			final long seed = t;
+			results.add(pool.submit(() -> {
+				Random random = new Random(seed);
+				while (running.get()) {
+					if (random.nextInt(10) == 0) {
+						TransferBatch batch = new TransferBatch(4);
+						for (int i = 0; i < 4; i++) {
+							batch.add("acc" + random.nextInt(accounts), SweBank, "acc" + random.nextInt(accounts), new Money(random.nextInt(100), SEK));
+						}
+						SweBank.transferBatch(batch);
+					} else {
+						SweBank.transfer("acc" + random.nextInt(accounts), "acc" + random.nextInt(accounts), new Money(random.nextInt(100), SEK));
+					}
+				}
+				return null;
+			}));
+		}
+		results.add(pool.submit(() -> {
+			while (running.get()) {
+				SweBank.tick();
+			}
+			return null;
+		}));
+		try {
+			for (int i = 0; i < 200; i++) {
+				try (BalanceSnapshot view = SweBank.snapshotBalances()) {
+					assertEquals(supply, view.total().getAmountLong());
+				}
+			}
+		} finally {
+			running.set(false);
+			for (Future<?> result : results) {
+				result.get();
+			}
+			pool.shutdown();
+		}
+	}
+}
@@ -0,0 +1,200 @@
+package b_Money;
+
+import static org.junit.Assert.*;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for the BankMetrics class.
+ */
+public class BankMetricsTest {
+	Currency SEK;
+	Bank SweBank;
+	BankMetrics metrics;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Setup method to initialize test data before each test case.
+	 *
+	 * @throws Exception If an exception occurs during setup.
+	 */
+	@Before
+	public void setUp() throws Exception {
+		SEK = new Currency("SEK", 0.15);
+		SweBank = new Bank("SweBank", SEK);
+		SweBank.openAccount("Ulrika");
+		SweBank.openAccount("Bob");
+		metrics = new BankMetrics();
+		SweBank.setMetrics(metrics);
+	}
+
+	/**
+	 * Test case for counting operations and their latencies.
+	 *
+	 * @throws AccountDoesNotExistException If an account does not exist.
+	 */
+	@Test
+	public void testCounts() throws AccountDoesNotExistException {
+		SweBank.deposit("Ulrika", new Money(1000, SEK));
+		SweBank.deposit("Ulrika", new Money(1000, SEK));
+		SweBank.withdraw("Ulrika", new Money(500, SEK));
+		SweBank.transfer("Ulrika", "Bob", new Money(500, SEK));
+		assertEquals(2, metrics.getDeposits());
+		assertEquals(1, metrics.getWithdrawals());
+		assertEquals(1, metrics.getTransfers());
+		assertEquals(2, metrics.latency("deposit").count());
+		assertEquals(0, metrics.getMissingAccounts());
+	}
+
+	/**
+	 * Test case for counting missing accounts, which are not counted as operations.
+	 */
+	@Test
+	public void testMissingAccounts() {
+		try {
+			SweBank.deposit("Nobody", new Money(1000, SEK));
+			fail("Expected AccountDoesNotExistException");
+		} catch (AccountDoesNotExistException e) {
+		}
+		try {
+			SweBank.transfer("Ulrika", "Nobody", new Money(1000, SEK));
+			fail("Expected AccountDoesNotExistException");
+		} catch (AccountDoesNotExistException e) {
+		}
+		assertEquals(2, metrics.getMissingAccounts());
+		assertEquals(0, metrics.getDeposits());
+		assertEquals(0, metrics.getTransfers());
+	}
+
+	/**
+	 * Test case for counting ticks and the timed payments they pay.
+	 *
+	 * @throws AccountDoesNotExistException If an account does not exist.
+	 */
+	@Test
+	public void testTicks() throws AccountDoesNotExistException {
+		SweBank.addTimedPayment("Ulrika", "rent", 0, 0, new Money(100, SEK), SweBank, "Bob");
+		SweBank.addTimedPayment("Bob", "gift", 1, 0, new Money(100, SEK), SweBank, "Ulrika");
+		SweBank.tick();
+		SweBank.tick();
+		SweBank.tick();
+		assertEquals(3, metrics.getTicks());
+		assertEquals(5, metrics.getTimedPaymentsFired());
+		assertEquals(5, metrics.getWithdrawals());
+		assertEquals(5, metrics.getDeposits());
+	}
+
+	/**
+	 * Test case for not counting timed payments skipped for limits or
+	 * refunded, in serial and parallel ticks.
+	 *
+	 * @throws Exception If an operation fails.
+	 */
+	@Test
+	public void testTicksSkipped() throws Exception {
+		SweBank.setLimits("Ulrika", new AccountLimits(null, new Money(50, SEK)));
+		SweBank.addTimedPayment("Ulrika", "rent", 0, 0, new Money(100, SEK), SweBank, "Bob");
+		SweBank.addTimedPayment("Bob", "gift", 0, 0, new Money(10, SEK), SweBank, "Nobody");
+		SweBank.addTimedPayment("Bob", "loan", 0, 0, new Money(10, SEK), SweBank, "Ulrika");
+		ExecutorService pool = Executors.newFixedThreadPool(2);
+		try {
+			SweBank.tick(pool, 2);
+		} finally {
+			pool.shutdown();
+		}
+		SweBank.tick();
+		assertEquals(2, metrics.getTicks());
+		assertEquals(2, metrics.getTimedPaymentsFired());
+		assertEquals(2, metrics.getMissingAccounts());
+	}
+
+	/**
+	 * Test case for recording batches, counting their rows by type.
+	 *
+	 * @throws Exception If an operation fails.
+	 */
+	@Test
+	public void testBatches() throws Exception {
+		TransferBatch batch = new TransferBatch(3);
+		batch.add("Ulrika", SweBank, "Bob", new Money(100, SEK));
+		batch.add("Bob", SweBank, "Ulrika", new Money(50, SEK));
+		batch.add("Nobody", SweBank, "Bob", new Money(10, SEK));
+		SweBank.transferBatch(batch);
+		assertEquals(1, metrics.getBatches());
+		assertEquals(2, metrics.getTransfers());
+		assertEquals(1, metrics.getMissingAccounts());
+
+		Path file = folder.newFile("ledger.csv").toPath();
+		Files.write(file, "deposit,Ulrika,100\nwithdraw,Bob,10\ntransfer,Ulrika,Bob,5\ndeposit,Nobody,1\n".getBytes("UTF-8"));
+		new LedgerIngest(SweBank).readCsv(file);
+		assertEquals(2, metrics.getBatches());
+		assertEquals(1, metrics.getDeposits());
+		assertEquals(1, metrics.getWithdrawals());
+		assertEquals(3, metrics.getTransfers());
+		assertEquals(2, metrics.getMissingAccounts());
+		assertEquals(2, metrics.latency("batch").count());
+	}
+
+	/**
+	 * Test case for recording transfers made through a pipeline.
+	 *
+	 * @throws Exception If an operation fails.
+	 */
+	@Test
+	public void testPipeline() throws Exception {
+		try (TransferPipeline pipeline = new TransferPipeline(2, 16)) {
+			pipeline.submit(SweBank, "Ulrika", SweBank, "Bob", new Money(100, SEK)).get();
+			try {
+				pipeline.submit(SweBank, "Ulrika", SweBank, "Nobody", new Money(100, SEK)).get();
+				fail("Expected AccountDoesNotExistException");
+			} catch (ExecutionException e) {
+			}
+		}
+		assertEquals(1, metrics.getTransfers());
+		assertEquals(1, metrics.latency("transfer").count());
+		assertEquals(1, metrics.getMissingAccounts());
+	}
+
+	/**
+	 * Test case for detaching metrics.
+	 *
+	 * @throws AccountDoesNotExistException If an account does not exist.
+	 */
+	@Test
+	public void testDetach() throws AccountDoesNotExistException {
+		SweBank.setMetrics(null);
+		SweBank.deposit("Ulrika", new Money(1000, SEK));
+		assertEquals(0, metrics.getDeposits());
+	}
+
+	/**
+	 * Test case for reading metrics through JMX.
+	 *
+	 * @throws Exception If the MXBean cannot be registered or read.
+	 */
+	@Test
+	public void testRegister() throws Exception {
+		SweBank.deposit("Ulrika", new Money(1000, SEK));
+		ObjectName name = metrics.register("SweBank");
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			assertEquals(1L, server.getAttribute(name, "Deposits"));
+			Object p99 = server.invoke(name, "latencyNanos", new Object[] { "deposit", 99.0 }, new String[] { "java.lang.String", "double" });
+			assertEquals(metrics.latencyNanos("deposit", 99), p99);
+		} finally {
+			server.unregisterMBean(name);
+		}
+	}
+}
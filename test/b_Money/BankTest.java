@@ -1,6 +1,13 @@
 package b_Money;
 
 import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -123,4 +130,449 @@ public class BankTest {
 		assertEquals(Integer.valueOf(1000), Nordea.getBalance("Bob"));
 		SweBank.removeTimedPayment("Ulrika", "rent");
 	}
+
+	/**
+	 * Test case for timed payments repeating every interval until removed.
+	 *
+	 * @throws AccountDoesNotExistException If the account does not exist.
+	 */
+	@Test
+	public void testRepeatingTimedPayment() throws AccountDoesNotExistException {
+		SweBank.deposit("Ulrika", new Money(5000, SEK));
+		SweBank.addTimedPayment("Ulrika", "rent", 1, 0, new Money(1000, SEK), SweBank, "Bob");
+		SweBank.addTimedPayment("Ulrika", "gift", 0, 0, new Money(100, SEK), DanskeBank, "Nobody");
+		for (int i = 0; i < 4; i++) {
+			SweBank.tick();
+		}
+		// Paid at the first and third tick, the gift is refunded every tick
+		assertEquals(Integer.valueOf(3000), SweBank.getBalance("Ulrika"));
+		assertEquals(Integer.valueOf(2000), SweBank.getBalance("Bob"));
+		SweBank.removeTimedPayment("Ulrika", "rent");
+		for (int i = 0; i < 4; i++) {
+			SweBank.tick();
+		}
+		assertEquals(Integer.valueOf(3000), SweBank.getBalance("Ulrika"));
+	}
+
+	/**
+	 * Test case for concurrent transfers within and across banks conserving money.
+	 *
+	 * @throws Exception If a transfer thread fails.
+	 */
+	@Test
+	public void testConcurrentTransfers() throws Exception {
+		final int accounts = 16;
+		final Bank[] banks = { SweBank, Nordea };
+		for (Bank bank : banks) {
+			for (int i = 0; i < accounts; i++) {
+				bank.openAccount("acc" + i);
+				bank.deposit("acc" + i, new Money(10000, SEK));
+			}
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		List<Future<?>> results = new ArrayList<>();
+		for (int t = 0; t < 8; t++) {
+			final long seed = t;
+			results.add(pool.submit(() -> {
+				Random random = new Random(seed);
+				for (int i = 0; i < 20000; i++) {
+					Bank from = banks[random.nextInt(2)];
+					Bank to = banks[random.nextInt(2)];
+					from.transfer("acc" + random.nextInt(accounts), to, "acc" + random.nextInt(accounts), new Money(random.nextInt(100), SEK));
+				}
+				return null;
+			}));
+		}
+		for (Future<?> result : results) {
+			result.get();
+		}
+		pool.shutdown();
+
+		int total = 0;
+		for (Bank bank : banks) {
+			for (int i = 0; i < accounts; i++) {
+				total += bank.getBalance("acc" + i);
+			}
+		}
+		assertEquals(2 * accounts * 10000, total);
+	}
+
+	/**
+	 * Test case for a batch of transfers, including rows with missing accounts.
+	 *
+	 * @throws AccountDoesNotExistException If the account does not exist.
+	 */
+	@Test
+	public void testTransferBatch() throws AccountDoesNotExistException {
+		SweBank.deposit("Ulrika", new Money(5000, SEK));
+		TransferBatch batch = new TransferBatch(2);
+		batch.add("Ulrika", SweBank, "Bob", new Money(1000, SEK));
+		batch.add("Ulrika", DanskeBank, "Gertrud", new Money(1500, SEK));
+		batch.add("Nobody", SweBank, "Bob", new Money(1000, SEK));
+		batch.add("Bob", SweBank, "Ulrika", new Money(500, SEK));
+		batch.add("Ulrika", Nordea, "Nobody", new Money(1000, SEK));
+		BitSet failed = SweBank.transferBatch(batch);
+
+		BitSet expected = new BitSet();
+		expected.set(2);
+		expected.set(4);
+		assertEquals(expected, failed);
+		assertEquals(Integer.valueOf(3000), SweBank.getBalance("Ulrika"));
+		assertEquals(Integer.valueOf(500), SweBank.getBalance("Bob"));
+		assertEquals(Integer.valueOf(1125), DanskeBank.getBalance("Gertrud"));
+	}
+
+	/**
+	 * Test case for the parallel tick, which must leave every balance as the
+	 * serial tick does, including payments to other banks and to missing
+	 * accounts, and payments from accounts with limits per tick or a floor.
+	 *
+	 * @throws Exception If a tick fails.
+	 */
+	@Test
+	public void testParallelTickMatchesSerial() throws Exception {
+		final int accounts = 64;
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		for (int limits = 0; limits < 3; limits++) {
+			Bank[] serial = tickBanks(accounts, limits);
+			Bank[] parallel = tickBanks(accounts, limits);
+			for (int t = 0; t < 25; t++) {
+				serial[0].tick();
+				parallel[0].tick(pool, 7);
+			}
+			for (int b = 0; b < serial.length; b++) {
+				for (int i = 0; i < accounts; i++) {
+					assertEquals(serial[b].getBalance("acc" + i), parallel[b].getBalance("acc" + i));
+				}
+			}
+		}
+		pool.shutdown();
+	}
+
+	/**
+	 * Test case for the parallel tick paying from an account with a floor
+	 * that is paid into earlier in the same tick.
+	 *
+	 * @throws Exception If a tick fails.
+	 */
+	@Test
+	public void testParallelTickWithFloor() throws Exception {
+		Bank bank = new Bank("Handelsbanken", SEK);
+		bank.openAccounts(new String[] { "A", "B", "C" });
+		bank.deposit("B", new Money(100, SEK));
+		bank.setLimits("A", new AccountLimits(new Money(0, SEK), null));
+		bank.addTimedPayment("B", "p", 0, 0, new Money(100, SEK), bank, "A");
+		bank.addTimedPayment("A", "p", 0, 0, new Money(100, SEK), bank, "C");
+		ExecutorService pool = Executors.newFixedThreadPool(2);
+		bank.tick(pool, 3);
+		pool.shutdown();
+		assertEquals(Integer.valueOf(0), bank.getBalance("A"));
+		assertEquals(Integer.valueOf(100), bank.getBalance("C"));
+	}
+
+	/*
+	 * A bank with timed payments to itself, to a bank in another currency and
+	 * to missing accounts, together with the other bank. With limits 1, some
+	 * accounts have a limit per tick; with limits 2, some also have a floor
+	 * and too little money for all their payments.
+	 */
+	private Bank[] tickBanks(int accounts, int limits) throws Exception {
+		Bank bank = new Bank("SweBank", SEK);
+		Bank other = new Bank("DanskeBank", DKK);
+		for (int i = 0; i < accounts; i++) {
+			bank.openAccount("acc" + i);
+			other.openAccount("acc" + i);
+			if (limits >= 1 && i % 3 == 0) {
+				bank.setLimits("acc" + i, new AccountLimits(null, new Money(700, SEK)));
+			}
+			if (limits == 2 && i % 3 == 1) {
+				bank.setLimits("acc" + i, new AccountLimits(new Money(0, SEK), null));
+				bank.deposit("acc" + i, new Money(1500, SEK));
+			} else {
+				bank.deposit("acc" + i, new Money(100000, SEK));
+			}
+		}
+		Random random = new Random(7);
+		for (int i = 0; i < accounts; i++) {
+			for (int p = 0; p < 3; p++) {
+				int kind = random.nextInt(8);
+				Bank tobank = kind == 0 ? other : bank;
+				String toaccount = kind == 1 ? "Nobody" : "acc" + random.nextInt(accounts);
+				bank.addTimedPayment("acc" + i, "p" + p, random.nextInt(4), random.nextInt(4), new Money(random.nextInt(1000), SEK), tobank, toaccount);
+			}
+		}
+		return new Bank[] { bank, other };
+	}
+
+	/**
+	 * Test case for the non-throwing operations, which must behave like the
+	 * throwing ones and report a missing account by their result.
+	 */
+	@Test
+	public void testTryOperations() {
+		assertTrue(SweBank.tryDeposit("Ulrika", new Money(1000, SEK)));
+		assertTrue(SweBank.tryWithdraw("Ulrika", new Money(200, SEK)));
+		assertTrue(SweBank.tryTransfer("Ulrika", DanskeBank, "Gertrud", new Money(400, SEK)));
+		assertEquals(new Money(400, SEK), SweBank.findBalance("Ulrika"));
+		assertEquals(new Money(300, DKK), DanskeBank.findBalance("Gertrud"));
+
+		assertFalse(SweBank.tryDeposit("Nobody", new Money(1000, SEK)));
+		assertFalse(SweBank.tryWithdraw("Nobody", new Money(1000, SEK)));
+		assertFalse(SweBank.tryTransfer("Ulrika", DanskeBank, "Nobody", new Money(100, SEK)));
+		assertFalse(SweBank.tryTransfer("Nobody", DanskeBank, "Gertrud", new Money(100, SEK)));
+		assertNull(SweBank.findBalance("Nobody"));
+		assertEquals(new Money(400, SEK), SweBank.findBalance("Ulrika"));
+	}
+
+	/**
+	 * Test case for opening accounts in bulk, rejecting IDs that exist in the
+	 * bank or earlier in the batch.
+	 *
+	 * @throws AccountDoesNotExistException If an opened account does not exist.
+	 */
+	@Test
+	public void testOpenAccounts() throws AccountDoesNotExistException {
+		Bank bank = new Bank("Handelsbanken", SEK);
+		BitSet rejected = bank.openAccounts(new String[] { "Ulrika", "Bob", "Ulrika" });
+		assertEquals(BitSet.valueOf(new long[] { 0b100 }), rejected);
+		rejected = bank.openAccounts(new String[] { "Gertrud", "Bob" });
+		assertEquals(BitSet.valueOf(new long[] { 0b10 }), rejected);
+		for (String id : new String[] { "Ulrika", "Bob", "Gertrud" }) {
+			bank.deposit(id, new Money(100, SEK));
+			assertEquals(Integer.valueOf(100), bank.getBalance(id));
+		}
+	}
+
+	/**
+	 * Test case for operations with request IDs, where retries are ignored
+	 * and a request that failed can be retried.
+	 *
+	 * @throws AccountDoesNotExistException If an account does not exist.
+	 */
+	@Test
+	public void testOnceOperations() throws AccountDoesNotExistException {
+		SweBank.setIdempotencyCache(new IdempotencyCache(100));
+		assertTrue(SweBank.depositOnce("r1", "Ulrika", new Money(1000, SEK)));
+		assertFalse(SweBank.depositOnce("r1", "Ulrika", new Money(1000, SEK)));
+		assertTrue(SweBank.withdrawOnce("r2", "Ulrika", new Money(200, SEK)));
+		assertFalse(SweBank.withdrawOnce("r2", "Ulrika", new Money(200, SEK)));
+		assertTrue(SweBank.transferOnce("r3", "Ulrika", DanskeBank, "Gertrud", new Money(400, SEK)));
+		assertFalse(SweBank.transferOnce("r3", "Ulrika", DanskeBank, "Gertrud", new Money(400, SEK)));
+		/* The IDs of all three operations share one cache */
+		assertFalse(SweBank.transferOnce("r1", "Ulrika", "Bob", new Money(100, SEK)));
+		assertEquals(Integer.valueOf(400), SweBank.getBalance("Ulrika"));
+		assertEquals(Integer.valueOf(300), DanskeBank.getBalance("Gertrud"));
+
+		try {
+			SweBank.transferOnce("r4", "Ulrika", DanskeBank, "Nobody", new Money(100, SEK));
+			fail("Expected AccountDoesNotExistException");
+		} catch (AccountDoesNotExistException e) {
+		}
+		assertTrue(SweBank.transferOnce("r4", "Ulrika", DanskeBank, "Gertrud", new Money(100, SEK)));
+		assertEquals(Integer.valueOf(300), SweBank.getBalance("Ulrika"));
+	}
+
+	/**
+	 * Test case for operations with request IDs on a bank without a cache.
+	 *
+	 * @throws AccountDoesNotExistException If an account does not exist.
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testOnceWithoutCache() throws AccountDoesNotExistException {
+		SweBank.depositOnce("r1", "Ulrika", new Money(1000, SEK));
+	}
+
+	/**
+	 * Test case for a floor on the balance, which rejects a debit as a whole
+	 * and leaves the balances as they were.
+	 *
+	 * @throws AccountDoesNotExistException If an account does not exist.
+	 */
+	@Test
+	public void testFloor() throws AccountDoesNotExistException {
+		SweBank.deposit("Ulrika", new Money(1000, SEK));
+		SweBank.setLimits("Ulrika", new AccountLimits(new Money(0, SEK), null));
+		SweBank.withdraw("Ulrika", new Money(600, SEK));
+		try {
+			SweBank.withdraw("Ulrika", new Money(500, SEK));
+			fail("Expected LimitExceededException");
+		} catch (LimitExceededException e) {
+		}
+		try {
+			SweBank.transfer("Ulrika", DanskeBank, "Gertrud", new Money(500, SEK));
+			fail("Expected LimitExceededException");
+		} catch (LimitExceededException e) {
+		}
+		assertEquals(Integer.valueOf(400), SweBank.getBalance("Ulrika"));
+		assertEquals(Integer.valueOf(0), DanskeBank.getBalance("Gertrud"));
+		SweBank.transfer("Ulrika", "Bob", new Money(400, SEK));
+		assertEquals(Integer.valueOf(0), SweBank.getBalance("Ulrika"));
+
+		/* Credits are never limited, and other accounts may still overdraw */
+		SweBank.transfer("Bob", "Ulrika", new Money(1000, SEK));
+		assertEquals(Integer.valueOf(-600), SweBank.getBalance("Bob"));
+		SweBank.setLimits("Ulrika", null);
+		SweBank.withdraw("Ulrika", new Money(2000, SEK));
+		assertEquals(Integer.valueOf(-1000), SweBank.getBalance("Ulrika"));
+	}
+
+	/**
+	 * Test case for a limit on debits per tick, which starts over when the bank ticks.
+	 *
+	 * @throws AccountDoesNotExistException If an account does not exist.
+	 */
+	@Test
+	public void testLimitPerTick() throws AccountDoesNotExistException {
+		SweBank.deposit("Ulrika", new Money(10000, SEK));
+		SweBank.setLimits("Ulrika", new AccountLimits(null, new Money(1000, SEK)));
+		SweBank.withdraw("Ulrika", new Money(600, SEK));
+		/* Deposits do not give back the allowance */
+		SweBank.deposit("Ulrika", new Money(600, SEK));
+		assertFalse(trying(() -> SweBank.transfer("Ulrika", "Bob", new Money(500, SEK))));
+		SweBank.transfer("Ulrika", "Bob", new Money(400, SEK));
+		assertFalse(trying(() -> SweBank.withdraw("Ulrika", new Money(1, SEK))));
+		SweBank.tick();
+		SweBank.withdraw("Ulrika", new Money(1000, SEK));
+		assertEquals(Integer.valueOf(8600), SweBank.getBalance("Ulrika"));
+		assertEquals(new Money(1000, SEK), SweBank.getLimits("Ulrika").getPerTick());
+		assertNull(SweBank.getLimits("Bob"));
+	}
+
+	/**
+	 * Test case for timed payments, which are skipped in a tick where they
+	 * would break the paying account's limits.
+	 *
+	 * @throws AccountDoesNotExistException If an account does not exist.
+	 */
+	@Test
+	public void testTimedPaymentOverLimit() throws AccountDoesNotExistException {
+		SweBank.deposit("Ulrika", new Money(2500, SEK));
+		SweBank.setLimits("Ulrika", new AccountLimits(new Money(0, SEK), null));
+		SweBank.addTimedPayment("Ulrika", "rent", 0, 0, new Money(1000, SEK), Nordea, "Bob");
+		for (int i = 0; i < 4; i++) {
+			SweBank.tick();
+		}
+		assertEquals(Integer.valueOf(500), SweBank.getBalance("Ulrika"));
+		assertEquals(Integer.valueOf(2000), Nordea.getBalance("Bob"));
+		SweBank.deposit("Ulrika", new Money(500, SEK));
+		SweBank.tick();
+		assertEquals(Integer.valueOf(0), SweBank.getBalance("Ulrika"));
+		assertEquals(Integer.valueOf(3000), Nordea.getBalance("Bob"));
+	}
+
+	/**
+	 * Test case for a batch that would break an account's limits, of which
+	 * no row is applied and which names the account.
+	 *
+	 * @throws AccountDoesNotExistException If an account does not exist.
+	 */
+	@Test
+	public void testTransferBatchOverLimit() throws AccountDoesNotExistException {
+		SweBank.deposit("Ulrika", new Money(1000, SEK));
+		SweBank.deposit("Bob", new Money(1000, SEK));
+		SweBank.setLimits("Bob", new AccountLimits(new Money(0, SEK), null));
+		TransferBatch batch = new TransferBatch(2);
+		batch.add("Ulrika", DanskeBank, "Gertrud", new Money(2000, SEK));
+		batch.add("Bob", SweBank, "Ulrika", new Money(800, SEK));
+		batch.add("Bob", Nordea, "Bob", new Money(800, SEK));
+		batch.add("Nobody", SweBank, "Bob", new Money(100, SEK));
+		try {
+			SweBank.transferBatch(batch);
+			fail("Expected LimitExceededException");
+		} catch (LimitExceededException e) {
+			assertEquals("Bob", e.getAccountId());
+		}
+		assertEquals(Integer.valueOf(1000), SweBank.getBalance("Ulrika"));
+		assertEquals(Integer.valueOf(1000), SweBank.getBalance("Bob"));
+		assertEquals(Integer.valueOf(0), DanskeBank.getBalance("Gertrud"));
+		assertEquals(Integer.valueOf(0), Nordea.getBalance("Bob"));
+
+		/* Within the floor once netted, even though a row on its own would overdraw */
+		batch = new TransferBatch(2);
+		batch.add("Bob", SweBank, "Ulrika", new Money(1500, SEK));
+		batch.add("Ulrika", SweBank, "Bob", new Money(600, SEK));
+		assertTrue(SweBank.transferBatch(batch).isEmpty());
+		assertEquals(Integer.valueOf(100), SweBank.getBalance("Bob"));
+	}
+
+	/**
+	 * Test case for an operation with a request ID that breaks a limit, which
+	 * can be retried once the limit allows it.
+	 *
+	 * @throws AccountDoesNotExistException If an account does not exist.
+	 */
+	@Test
+	public void testOnceOverLimit() throws AccountDoesNotExistException {
+		SweBank.setIdempotencyCache(new IdempotencyCache(100));
+		SweBank.setLimits("Ulrika", new AccountLimits(new Money(0, SEK), null));
+		assertFalse(trying(() -> SweBank.transferOnce("r1", "Ulrika", "Bob", new Money(100, SEK))));
+		assertFalse(trying(() -> SweBank.withdrawOnce("r2", "Ulrika", new Money(100, SEK))));
+		SweBank.deposit("Ulrika", new Money(200, SEK));
+		assertTrue(SweBank.transferOnce("r1", "Ulrika", "Bob", new Money(100, SEK)));
+		assertTrue(SweBank.withdrawOnce("r2", "Ulrika", new Money(100, SEK)));
+		assertEquals(Integer.valueOf(0), SweBank.getBalance("Ulrika"));
+	}
+
+	/**
+	 * Test case for concurrent debits from an account with a floor, which
+	 * together must not take it below the floor.
+	 *
+	 * @throws Exception If a thread fails.
+	 */
+	@Test
+	public void testConcurrentDebitsWithFloor() throws Exception {
+		SweBank.deposit("Ulrika", new Money(10000, SEK));
+		SweBank.setLimits("Ulrika", new AccountLimits(new Money(0, SEK), null));
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		List<Future<Integer>> results = new ArrayList<>();
+		for (int t = 0; t < 8; t++) {
+			final boolean transfer = t % 2 == 0;
+			results.add(pool.submit(() -> {
+				int done = 0;
+				for (int i = 0; i < 1000; i++) {
+					boolean ok = trying(() -> {
+						if (transfer) {
+							SweBank.transfer("Ulrika", Nordea, "Bob", new Money(7, SEK));
+						} else {
+							SweBank.withdraw("Ulrika", new Money(7, SEK));
+						}
+					});
+					done += ok ? 1 : 0;
+				}
+				return done;
+			}));
+		}
+		int done = 0;
+		for (Future<Integer> result : results) {
+			done += result.get();
+		}
+		pool.shutdown();
+		assertEquals(10000 / 7, done);
+		assertEquals(Integer.valueOf(10000 % 7), SweBank.getBalance("Ulrika"));
+	}
+
+	/**
+	 * Test case for limits on a missing account.
+	 *
+	 * @throws AccountDoesNotExistException If an account does not exist.
+	 */
+	@Test(expected = AccountDoesNotExistException.class)
+	public void testLimitsOnMissingAccount() throws AccountDoesNotExistException {
+		SweBank.setLimits("Nobody", new AccountLimits(new Money(0, SEK), null));
+	}
+
+	/* An operation that may break a limit */
+	private interface Debit {
+		void run() throws AccountDoesNotExistException;
+	}
+
+	/* Runs a debit, returning whether it was within the limits */
+	private static boolean trying(Debit debit) throws AccountDoesNotExistException {
+		try {
+			debit.run();
+			return true;
+		} catch (LimitExceededException e) {
+			return false;
+		}
+	}
 }
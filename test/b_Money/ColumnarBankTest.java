@@ -0,0 +1,95 @@
+package b_Money;
+
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the ColumnarBank class.
+ */
+public class ColumnarBankTest {
+	Currency SEK, DKK;
+	ColumnarBank SweBank, DanskeBank;
+
+	/**
+	 * Setup method to initialize test data before each test case.
+	 *
+	 * @throws Exception If an exception occurs during setup.
+	 */
+	@Before
+	public void setUp() throws Exception {
+		SEK = new Currency("SEK", 0.15);
+		DKK = new Currency("DKK", 0.20);
+		SweBank = new ColumnarBank("SweBank", SEK);
+		DanskeBank = new ColumnarBank("DanskeBank", DKK);
+		SweBank.openAccount("Ulrika");
+		SweBank.openAccount("Bob");
+		DanskeBank.openAccount("Gertrud");
+	}
+
+	/**
+	 * Test case for opening an account twice.
+	 *
+	 * @throws AccountExistsException If the account already exists.
+	 */
+	@Test(expected = AccountExistsException.class)
+	public void testOpenAccount() throws AccountExistsException {
+		SweBank.openAccount("Ulrika");
+	}
+
+	/**
+	 * Test case for depositing and withdrawing money.
+	 *
+	 * @throws AccountDoesNotExistException If the account does not exist.
+	 */
+	@Test
+	public void testDepositWithdraw() throws AccountDoesNotExistException {
+		SweBank.deposit("Ulrika", new Money(5000, SEK));
+		SweBank.withdraw("Ulrika", new Money(3000, SEK));
+		assertEquals(Integer.valueOf(2000), SweBank.getBalance("Ulrika"));
+		assertEquals(2000L, SweBank.getBalanceLong("Ulrika"));
+	}
+
+	/**
+	 * Test case for transfers within and between banks.
+	 *
+	 * @throws AccountDoesNotExistException If the account does not exist.
+	 */
+	@Test
+	public void testTransfer() throws AccountDoesNotExistException {
+		SweBank.deposit("Ulrika", new Money(5000, SEK));
+		SweBank.transfer("Ulrika", "Bob", new Money(3000, SEK));
+		SweBank.transfer("Bob", DanskeBank, "Gertrud", new Money(1000, SEK));
+		assertEquals(Integer.valueOf(2000), SweBank.getBalance("Ulrika"));
+		assertEquals(Integer.valueOf(2000), SweBank.getBalance("Bob"));
+		assertEquals(Integer.valueOf(750), DanskeBank.getBalance("Gertrud"));
+	}
+
+	/**
+	 * Test case for operations on a missing account.
+	 *
+	 * @throws AccountDoesNotExistException If the account does not exist.
+	 */
+	@Test(expected = AccountDoesNotExistException.class)
+	public void testMissingAccount() throws AccountDoesNotExistException {
+		SweBank.transfer("Ulrika", DanskeBank, "Nobody", new Money(1000, SEK));
+	}
+
+	/**
+	 * Test case for a bank growing past its initial size and first chunk.
+	 *
+	 * @throws Exception If an operation fails.
+	 */
+	@Test
+	public void testManyAccounts() throws Exception {
+		ColumnarBank bank = new ColumnarBank("Big", SEK, 4);
+		for (int i = 0; i < 100000; i++) {
+			bank.openAccount("acc" + i);
+			bank.deposit("acc" + i, new Money(i, SEK));
+		}
+		assertEquals(100000, bank.size());
+		for (int i = 0; i < 100000; i += 997) {
+			assertEquals(i, bank.getBalanceLong("acc" + i));
+		}
+	}
+}
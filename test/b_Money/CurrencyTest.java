@@ -1,6 +1,9 @@
 package b_Money;
 
 import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -57,6 +60,43 @@ public class CurrencyTest {
 	@Test
 	public void testGlobalValue() {
 		assertEquals(1500, (int) SEK.universalValue(10000));
+		assertEquals(1500L, SEK.universalValueLong(10000L));
+	}
+
+	/**
+	 * Test case for universal values being exact over the whole long range,
+	 * where a double product would lose the low digits.
+	 */
+	@Test
+	public void testGlobalValueExact() {
+		Currency[] currencies = { SEK, DKK, EUR, new Currency("ONE", 1.0), new Currency("ODD", 0.123456789012345),
+				new Currency("TINY", 1e-30), new Currency("HUGE", 1e20) };
+		long[] amounts = { 0, 1, -1, 7, 9007199254740993L, -9007199254740993L, 1234567890123456789L,
+				Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE / 3 * 2 + 1, Long.MAX_VALUE / 3 * 2 + 2 };
+		for (Currency currency : currencies) {
+			for (long amount : amounts) {
+				BigDecimal exact = BigDecimal.valueOf(amount).multiply(BigDecimal.valueOf(currency.getRate()))
+						.setScale(0, RoundingMode.DOWN);
+				if (exact.toBigInteger().bitLength() < 64) {
+					assertEquals(currency.getName() + " " + amount, exact.longValueExact(), currency.universalValueLong(amount));
+				} else {
+					try {
+						currency.universalValueLong(amount);
+						fail(currency.getName() + " " + amount + " should overflow");
+					} catch (ArithmeticException expected) {
+					}
+				}
+			}
+		}
+		assertEquals(9007199254740993L, new Currency("ONE", 1.0).universalValueLong(9007199254740993L));
+	}
+
+	/**
+	 * Test case for universal values that do not fit being rejected rather than clamped.
+	 */
+	@Test(expected = ArithmeticException.class)
+	public void testGlobalValueOverflow() {
+		EUR.universalValueLong(Long.MAX_VALUE / 3 * 2 + 2);
 	}
 
 	/**
@@ -68,4 +108,46 @@ public class CurrencyTest {
 		long expectedAmountInSEK = (long) (amountInEUR * EUR.getRate() / SEK.getRate()); // Convert to SEK
 		assertEquals(expectedAmountInSEK, (long) SEK.valueInThisCurrency(amountInEUR, EUR));
 	}
+
+	/**
+	 * Test case for currencies being interned by name in the registry.
+	 */
+	@Test
+	public void testRegister() {
+		Currency NOK = Currency.register("NOK", 0.14);
+		assertSame(NOK, Currency.register("NOK", 0.5));
+		assertSame(NOK, Currency.forName("NOK"));
+		assertSame(NOK, Currency.forOrdinal(NOK.ordinal()));
+		assertEquals(0.14, NOK.getRate(), 0.001);
+		assertTrue(NOK.isRegistered());
+		assertNull(Currency.forName("XXX"));
+	}
+
+	/**
+	 * Test case for currencies created outside the registry being flagged.
+	 */
+	@Test
+	public void testUnregistered() {
+		assertFalse(SEK.isRegistered());
+		assertNotSame(SEK, new Currency("SEK", 0.15));
+		assertEquals(-1, SEK.ordinal());
+	}
+
+	/**
+	 * Test case for unregistered currencies, which convert through their own
+	 * rates and take no place in the rate table.
+	 */
+	@Test
+	public void testUnregisteredConversion() {
+		Currency EUR = Currency.register("EUR", 1.5);
+		long version = ExchangeRates.current().version();
+		Currency NOK = new Currency("NOK", 0.14);
+		assertEquals(version, ExchangeRates.current().version());
+		assertEquals(Integer.valueOf(150), NOK.valueInThisCurrency(14, EUR));
+		assertEquals(Integer.valueOf(14), EUR.valueInThisCurrency(150, NOK));
+		assertEquals(Integer.valueOf(-1000), SEK.valueInThisCurrency(-100, EUR));
+		NOK.setRate(0.28);
+		assertEquals(version, ExchangeRates.current().version());
+		assertEquals(Integer.valueOf(28), EUR.valueInThisCurrency(150, NOK));
+	}
 }
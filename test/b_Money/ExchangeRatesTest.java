@@ -0,0 +1,116 @@
+package b_Money;
+
+import static org.junit.Assert.*;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the ExchangeRates class.
+ */
+public class ExchangeRatesTest {
+	int SEK, EUR;
+
+	/**
+	 * Setup method to initialize test data before each test case.
+	 *
+	 * @throws Exception If an exception occurs during setup.
+	 */
+	@Before
+	public void setUp() throws Exception {
+		SEK = ExchangeRates.register(0.15);
+		EUR = ExchangeRates.register(1.5);
+	}
+
+	/**
+	 * Test case for converting between currencies.
+	 */
+	@Test
+	public void testConvert() {
+		ExchangeRates.Table rates = ExchangeRates.current();
+		assertEquals(1234, rates.convert(1234, SEK, SEK));
+		assertEquals(5000, rates.convert(500, EUR, SEK));
+		assertEquals(-5000, rates.convert(-500, EUR, SEK));
+		assertEquals(100, rates.convert(1000, SEK, EUR));
+	}
+
+	/**
+	 * Test case for conversions rounding to the nearest minor unit.
+	 */
+	@Test
+	public void testRounding() {
+		ExchangeRates.Table rates = ExchangeRates.current();
+		assertEquals(0, rates.convert(4, SEK, EUR));
+		assertEquals(1, rates.convert(5, SEK, EUR));
+		assertEquals(-1, rates.convert(-5, SEK, EUR));
+	}
+
+	/**
+	 * Test case for rate changes publishing a new table.
+	 */
+	@Test
+	public void testUpdate() {
+		ExchangeRates.Table before = ExchangeRates.current();
+		ExchangeRates.update(EUR, 3.0);
+		ExchangeRates.Table after = ExchangeRates.current();
+		assertTrue(after.version() > before.version());
+		assertEquals(5000, before.convert(500, EUR, SEK));
+		assertEquals(10000, after.convert(500, EUR, SEK));
+	}
+
+	/**
+	 * Test case for conversions that overflow being rejected.
+	 */
+	@Test(expected = ArithmeticException.class)
+	public void testOverflow() {
+		ExchangeRates.current().convert(Long.MAX_VALUE / 2, EUR, SEK);
+	}
+
+	/**
+	 * Test case for large amounts converted at a small ratio of rates, which
+	 * must keep the full precision of the ratio.
+	 */
+	@Test
+	public void testSmallRatio() {
+		int IDR = ExchangeRates.register(0.0000577);
+		int USD = ExchangeRates.register(1.0);
+		ExchangeRates.Table rates = ExchangeRates.current();
+		assertEquals(57700000, rates.convert(1000000000000L, IDR, USD));
+		assertEquals(-57700000, rates.convert(-1000000000000L, IDR, USD));
+		assertEquals(1733102253, rates.convert(100000, USD, IDR));
+	}
+
+	/**
+	 * Test case for conversions across a wide range of amounts and ratios,
+	 * which must equal the exact decimal quotient, rounded half away from zero,
+	 * up to results of 2^40, and be within a minor unit of it beyond.
+	 */
+	@Test
+	public void testExact() {
+		Random random = new Random(8);
+		for (int i = 0; i < 200; i++) {
+			double fromRate = Math.scalb(1 + random.nextDouble(), random.nextInt(60) - 30);
+			double toRate = Math.scalb(1 + random.nextDouble(), random.nextInt(60) - 30);
+			int from = ExchangeRates.register(fromRate);
+			int to = ExchangeRates.register(toRate);
+			ExchangeRates.Table rates = ExchangeRates.current();
+			for (int j = 0; j < 50; j++) {
+				long amount = random.nextLong() >> random.nextInt(64);
+				BigDecimal exact = new BigDecimal(amount).multiply(BigDecimal.valueOf(fromRate)).divide(BigDecimal.valueOf(toRate), 0, RoundingMode.HALF_UP);
+				if (exact.abs().compareTo(new BigDecimal(Long.MAX_VALUE)) > 0) {
+					try {
+						rates.convert(amount, from, to);
+						fail("Expected ArithmeticException");
+					} catch (ArithmeticException e) {
+					}
+				} else if (exact.abs().compareTo(BigDecimal.valueOf(1L << 40)) < 0) {
+					assertEquals(exact.longValueExact(), rates.convert(amount, from, to));
+				} else {
+					assertEquals(exact.longValueExact(), rates.convert(amount, from, to), 1);
+				}
+			}
+		}
+	}
+}
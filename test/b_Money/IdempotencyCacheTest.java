@@ -0,0 +1,192 @@
+package b_Money;
+
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+
+/**
+ * Unit tests for the IdempotencyCache class.
+ */
+public class IdempotencyCacheTest {
+	/* Claims an ID and completes its operation at once, returning whether it was new */
+	private static boolean claim(IdempotencyCache cache, String requestid) {
+		IdempotencyCache.Claim claim = cache.claim(requestid);
+		if (claim == null) {
+			return false;
+		}
+		cache.complete(claim);
+		return true;
+	}
+
+	/**
+	 * Test case for claiming an ID twice, and again after releasing it.
+	 */
+	@Test
+	public void testClaim() {
+		IdempotencyCache cache = new IdempotencyCache(10);
+		IdempotencyCache.Claim claim = cache.claim("a");
+		assertNotNull(claim);
+		cache.release(claim);
+		assertTrue(claim(cache, "a"));
+		assertFalse(claim(cache, "a"));
+		assertEquals(1, cache.size());
+	}
+
+	/**
+	 * Test case for a retry arriving while the first operation is in
+	 * progress, which must wait for it and only be a duplicate if it was
+	 * carried out.
+	 *
+	 * @throws Exception If the retrying thread fails.
+	 */
+	@Test
+	public void testRetryWhileInProgress() throws Exception {
+		IdempotencyCache cache = new IdempotencyCache(10);
+		ExecutorService pool = Executors.newSingleThreadExecutor();
+		try {
+			IdempotencyCache.Claim first = cache.claim("a");
+			Future<IdempotencyCache.Claim> retry = pool.submit(() -> cache.claim("a"));
+			Thread.sleep(50);
+			assertFalse(retry.isDone());
+			cache.release(first);
+			IdempotencyCache.Claim second = retry.get();
+			assertNotNull(second);
+
+			Future<IdempotencyCache.Claim> duplicate = pool.submit(() -> cache.claim("a"));
+			Thread.sleep(50);
+			assertFalse(duplicate.isDone());
+			cache.complete(second);
+			assertNull(duplicate.get());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Test case for evicting the oldest IDs once the capacity is used up.
+	 */
+	@Test
+	public void testCapacity() {
+		IdempotencyCache cache = new IdempotencyCache(3);
+		for (String id : new String[] { "a", "b", "c", "d" }) {
+			assertTrue(claim(cache, id));
+		}
+		assertEquals(3, cache.size());
+		assertFalse(claim(cache, "b"));
+		assertFalse(claim(cache, "d"));
+		assertTrue(claim(cache, "a"));
+		assertEquals(3, cache.size());
+	}
+
+	/**
+	 * Test case for a claim in progress being evicted, which must keep its
+	 * ID until the operation is over so that a retry does not run it again.
+	 *
+	 * @throws Exception If the retrying thread fails.
+	 */
+	@Test
+	public void testEvictInProgress() throws Exception {
+		IdempotencyCache cache = new IdempotencyCache(2);
+		ExecutorService pool = Executors.newSingleThreadExecutor();
+		try {
+			IdempotencyCache.Claim first = cache.claim("a");
+			assertTrue(claim(cache, "b"));
+			assertTrue(claim(cache, "c"));
+			assertEquals(3, cache.size());
+			Future<IdempotencyCache.Claim> retry = pool.submit(() -> cache.claim("a"));
+			Thread.sleep(50);
+			assertFalse(retry.isDone());
+			cache.complete(first);
+			assertNull(retry.get());
+			assertEquals(2, cache.size());
+			assertTrue(claim(cache, "a"));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Test case for a claim in progress outliving its time to live, which a
+	 * retry must wait for rather than claim the ID alongside it.
+	 *
+	 * @throws Exception If the retrying thread fails.
+	 */
+	@Test
+	public void testExpireInProgress() throws Exception {
+		IdempotencyCache cache = new IdempotencyCache(10, 20);
+		ExecutorService pool = Executors.newSingleThreadExecutor();
+		try {
+			IdempotencyCache.Claim first = cache.claim("a");
+			Thread.sleep(40);
+			Future<IdempotencyCache.Claim> retry = pool.submit(() -> cache.claim("a"));
+			Thread.sleep(50);
+			assertFalse(retry.isDone());
+			cache.complete(first);
+			IdempotencyCache.Claim second = retry.get();
+			assertNotNull(second);
+			assertNotSame(first, second);
+			cache.complete(second);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Test case for IDs expiring after their time to live.
+	 *
+	 * @throws InterruptedException If interrupted while waiting.
+	 */
+	@Test
+	public void testTimeToLive() throws InterruptedException {
+		IdempotencyCache cache = new IdempotencyCache(10, 20);
+		assertTrue(claim(cache, "a"));
+		assertFalse(claim(cache, "a"));
+		Thread.sleep(40);
+		assertTrue(claim(cache, "a"));
+		assertFalse(claim(cache, "a"));
+	}
+
+	/**
+	 * Test case for threads racing to claim the same IDs, of which exactly one may win each.
+	 *
+	 * @throws Exception If a thread fails.
+	 */
+	@Test
+	public void testConcurrentClaims() throws Exception {
+		IdempotencyCache cache = new IdempotencyCache(1000);
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Integer>> results = new ArrayList<>();
+			for (int t = 0; t < 4; t++) {
+				results.add(pool.submit(() -> {
+					int won = 0;
+					for (int i = 0; i < 10000; i++) {
+						if (claim(cache, "id" + (i % 500))) {
+							won++;
+						}
+					}
+					return won;
+				}));
+			}
+			int won = 0;
+			for (Future<Integer> result : results) {
+				won += result.get();
+			}
+			assertEquals(500, won);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Test case for invalid settings.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidCapacity() {
+		new IdempotencyCache(0);
+	}
+}
@@ -0,0 +1,313 @@
+package b_Money;
+
+import static org.junit.Assert.*;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for the Journal class.
+ */
+public class JournalTest {
+	Currency SEK, DKK;
+	Bank SweBank, DanskeBank;
+	Path sweJournal, danskeJournal;
+	Map<String, Currency> currencies;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Setup method to initialize test data before each test case.
+	 *
+	 * @throws Exception If an exception occurs during setup.
+	 */
+	@Before
+	public void setUp() throws Exception {
+		SEK = new Currency("SEK", 0.15);
+		DKK = new Currency("DKK", 0.20);
+		currencies = new HashMap<>();
+		currencies.put("SEK", SEK);
+		currencies.put("DKK", DKK);
+		SweBank = new Bank("SweBank", SEK);
+		DanskeBank = new Bank("DanskeBank", DKK);
+		sweJournal = folder.getRoot().toPath().resolve("swebank.journal");
+		danskeJournal = folder.getRoot().toPath().resolve("danskebank.journal");
+	}
+
+	/**
+	 * Runs a mix of operations against SweBank and DanskeBank.
+	 */
+	private void runOperations() throws Exception {
+		SweBank.openAccount("Ulrika");
+		SweBank.openAccount("Bob");
+		DanskeBank.openAccount("Gertrud");
+		SweBank.deposit("Ulrika", new Money(10000, SEK));
+		SweBank.withdraw("Ulrika", new Money(1000, DKK));
+		SweBank.transfer("Ulrika", "Bob", new Money(2000, SEK));
+		SweBank.transfer("Ulrika", DanskeBank, "Gertrud", new Money(1000, SEK));
+		SweBank.addTimedPayment("Ulrika", "rent", 1, 0, new Money(100, SEK), DanskeBank, "Gertrud");
+		SweBank.addTimedPayment("Bob", "gift", 0, 0, new Money(10, SEK), DanskeBank, "Nobody");
+		SweBank.tick();
+		SweBank.tick();
+		SweBank.tick();
+		SweBank.removeTimedPayment("Bob", "gift");
+	}
+
+	/**
+	 * Replays both journals into new banks.
+	 */
+	private Bank[] replay() throws Exception {
+		Bank swe = new Bank("SweBank", SEK);
+		Bank danske = new Bank("DanskeBank", DKK);
+		Map<String, Bank> banks = new HashMap<>();
+		banks.put("SweBank", swe);
+		banks.put("DanskeBank", danske);
+		Journal.replay(sweJournal, swe, banks, currencies);
+		Journal.replay(danskeJournal, danske, banks, currencies);
+		return new Bank[] { swe, danske };
+	}
+
+	/**
+	 * Test case for rebuilding banks from their journals.
+	 *
+	 * @throws Exception If an operation fails.
+	 */
+	@Test
+	public void testReplay() throws Exception {
+		try (Journal swe = new Journal(sweJournal, Journal.Durability.GROUP_COMMIT, 5);
+				Journal danske = new Journal(danskeJournal, Journal.Durability.BUFFERED, 5)) {
+			SweBank.setJournal(swe);
+			DanskeBank.setJournal(danske);
+			runOperations();
+		}
+		SweBank.setJournal(null);
+		DanskeBank.setJournal(null);
+		Bank[] replayed = replay();
+		assertEquals(SweBank.getBalance("Ulrika"), replayed[0].getBalance("Ulrika"));
+		assertEquals(SweBank.getBalance("Bob"), replayed[0].getBalance("Bob"));
+		assertEquals(DanskeBank.getBalance("Gertrud"), replayed[1].getBalance("Gertrud"));
+
+		// The rebuilt schedule continues where the original left off
+		SweBank.tick();
+		replayed[0].tick();
+		assertEquals(SweBank.getBalance("Ulrika"), replayed[0].getBalance("Ulrika"));
+		assertEquals(SweBank.getBalance("Bob"), replayed[0].getBalance("Bob"));
+		assertEquals(DanskeBank.getBalance("Gertrud"), replayed[1].getBalance("Gertrud"));
+	}
+
+	/**
+	 * Test case for replay stopping at a record torn by a crash.
+	 *
+	 * @throws Exception If an operation fails.
+	 */
+	@Test
+	public void testTornRecord() throws Exception {
+		try (Journal swe = new Journal(sweJournal, Journal.Durability.SYNC, 0)) {
+			SweBank.setJournal(swe);
+			SweBank.openAccount("Ulrika");
+			SweBank.deposit("Ulrika", new Money(10000, SEK));
+			SweBank.deposit("Ulrika", new Money(500, SEK));
+		}
+		try (RandomAccessFile file = new RandomAccessFile(sweJournal.toFile(), "rw")) {
+			file.setLength(file.length() - 3);
+		}
+		Bank swe = new Bank("SweBank", SEK);
+		assertEquals(2, Journal.replay(sweJournal, swe, new HashMap<>(), currencies));
+		assertEquals(Integer.valueOf(10000), swe.getBalance("Ulrika"));
+	}
+
+	/**
+	 * Test case for a transfer being journaled as one record: wherever a
+	 * crash cuts the journal, replay restores both legs or neither.
+	 *
+	 * @throws Exception If an operation fails.
+	 */
+	@Test
+	public void testTransferIsAtomic() throws Exception {
+		long before, after;
+		try (Journal swe = new Journal(sweJournal, Journal.Durability.SYNC, 0)) {
+			SweBank.setJournal(swe);
+			SweBank.openAccount("x");
+			SweBank.openAccount("y");
+			SweBank.deposit("x", new Money(100, SEK));
+			before = Files.size(sweJournal);
+			SweBank.transfer("x", "y", new Money(40, SEK));
+			after = Files.size(sweJournal);
+		}
+		SweBank.setJournal(null);
+		Path cut = folder.getRoot().toPath().resolve("cut.journal");
+		for (long length = before; length <= after; length++) {
+			Files.copy(sweJournal, cut, StandardCopyOption.REPLACE_EXISTING);
+			try (RandomAccessFile file = new RandomAccessFile(cut.toFile(), "rw")) {
+				file.setLength(length);
+			}
+			Bank swe = new Bank("SweBank", SEK);
+			Journal.replay(cut, swe, new HashMap<>(), currencies);
+			int x = swe.getBalance("x"), y = swe.getBalance("y");
+			assertEquals(100, x + y);
+			assertEquals(length == after ? 60 : 100, x);
+		}
+	}
+
+	/**
+	 * Test case for account limits surviving replay, including removed ones.
+	 *
+	 * @throws Exception If an operation fails.
+	 */
+	@Test
+	public void testReplayLimits() throws Exception {
+		try (Journal swe = new Journal(sweJournal, Journal.Durability.SYNC, 0)) {
+			SweBank.setJournal(swe);
+			SweBank.openAccount("Ulrika");
+			SweBank.openAccount("Bob");
+			SweBank.deposit("Ulrika", new Money(1000, SEK));
+			SweBank.setLimits("Ulrika", new AccountLimits(new Money(0, SEK), new Money(500, DKK)));
+			SweBank.setLimits("Bob", new AccountLimits(null, new Money(100, SEK)));
+			SweBank.setLimits("Bob", null);
+		}
+		Bank swe = new Bank("SweBank", SEK);
+		Journal.replay(sweJournal, swe, new HashMap<>(), currencies);
+		AccountLimits limits = swe.getLimits("Ulrika");
+		assertEquals(new Money(0, SEK), limits.getFloor());
+		assertEquals(new Money(500, DKK), limits.getPerTick());
+		assertNull(swe.getLimits("Bob"));
+		try {
+			swe.withdraw("Ulrika", new Money(1001, SEK));
+			fail("Expected LimitExceededException");
+		} catch (LimitExceededException e) {
+		}
+		assertEquals(Integer.valueOf(1000), swe.getBalance("Ulrika"));
+	}
+
+	/**
+	 * Test case for group commit: every append from concurrent threads is in
+	 * the file once it returns, without waiting for an interval or a close.
+	 *
+	 * @throws Exception If an operation fails.
+	 */
+	@Test
+	public void testGroupCommit() throws Exception {
+		try (Journal swe = new Journal(sweJournal, Journal.Durability.GROUP_COMMIT, 3600000)) {
+			SweBank.setJournal(swe);
+			Thread[] threads = new Thread[4];
+			for (int t = 0; t < threads.length; t++) {
+				String id = "Account" + t;
+				SweBank.openAccount(id);
+				threads[t] = new Thread(() -> {
+					try {
+						for (int i = 0; i < 200; i++) {
+							SweBank.deposit(id, new Money(1, SEK));
+						}
+					} catch (AccountDoesNotExistException e) {
+						throw new IllegalStateException(e);
+					}
+				});
+			}
+			for (Thread thread : threads) {
+				thread.start();
+			}
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			Bank swe2 = new Bank("SweBank", SEK);
+			assertEquals(threads.length * 201, Journal.replay(sweJournal, swe2, new HashMap<>(), currencies));
+			for (int t = 0; t < threads.length; t++) {
+				assertEquals(Integer.valueOf(200), swe2.getBalance("Account" + t));
+			}
+			assertTrue(swe.forces() <= threads.length * 201);
+		}
+	}
+
+	/**
+	 * Test case for appends from concurrent threads while another thread
+	 * commits: no record is lost or torn when an append has to wait for a
+	 * full buffer to be written. Long account IDs fill the buffer every few
+	 * records.
+	 *
+	 * @throws Exception If an operation fails.
+	 */
+	@Test
+	public void testAppendToFullBuffer() throws Exception {
+		Thread[] threads = new Thread[8];
+		String[] ids = new String[threads.length];
+		try (Journal swe = new Journal(sweJournal, Journal.Durability.GROUP_COMMIT, 1)) {
+			SweBank.setJournal(swe);
+			for (int t = 0; t < threads.length; t++) {
+				String id = "Account" + t + "x".repeat(20000);
+				ids[t] = id;
+				SweBank.openAccount(id);
+				threads[t] = new Thread(() -> {
+					try {
+						for (int i = 0; i < 500; i++) {
+							SweBank.deposit(id, new Money(1, SEK));
+						}
+					} catch (AccountDoesNotExistException e) {
+						throw new IllegalStateException(e);
+					}
+				});
+			}
+			for (Thread thread : threads) {
+				thread.start();
+			}
+			for (Thread thread : threads) {
+				thread.join();
+			}
+		}
+		SweBank.setJournal(null);
+		Bank swe = new Bank("SweBank", SEK);
+		assertEquals(threads.length * 501, Journal.replay(sweJournal, swe, new HashMap<>(), currencies));
+		for (String id : ids) {
+			assertEquals(Integer.valueOf(500), swe.getBalance(id));
+		}
+	}
+
+	/**
+	 * Test case for replaying the part of a journal that follows a snapshot.
+	 *
+	 * @throws Exception If an operation fails.
+	 */
+	@Test
+	public void testReplayFromSnapshot() throws Exception {
+		Path snapshot = folder.getRoot().toPath().resolve("swebank.snapshot");
+		try (Journal swe = new Journal(sweJournal, Journal.Durability.SYNC, 0)) {
+			SweBank.setJournal(swe);
+			SweBank.openAccount("Ulrika");
+			SweBank.openAccount("Bob");
+			SweBank.deposit("Ulrika", new Money(10000, SEK));
+			SweBank.addTimedPayment("Ulrika", "rent", 1, 0, new Money(100, SEK), SweBank, "Bob");
+			SweBank.tick();
+			Snapshot.capture(SweBank).write(snapshot);
+			SweBank.transfer("Ulrika", "Bob", new Money(2000, SEK));
+			SweBank.openAccount("Carl");
+			SweBank.deposit("Carl", new Money(300, SEK));
+			SweBank.setLimits("Bob", new AccountLimits(new Money(0, SEK), null));
+			SweBank.tick();
+			SweBank.removeTimedPayment("Ulrika", "rent");
+			SweBank.addTimedPayment("Carl", "gift", 0, 0, new Money(10, SEK), SweBank, "Ulrika");
+		}
+		SweBank.setJournal(null);
+		Bank loaded = Snapshot.load(snapshot, new HashMap<>(), currencies);
+		Map<String, Bank> banks = new HashMap<>();
+		banks.put("SweBank", loaded);
+		assertEquals(8, Journal.replay(sweJournal, snapshot, loaded, banks, currencies));
+		for (String id : new String[] { "Ulrika", "Bob", "Carl" }) {
+			assertEquals(SweBank.getBalance(id), loaded.getBalance(id));
+		}
+		assertEquals(new Money(0, SEK), loaded.getLimits("Bob").getFloor());
+
+		// The schedule continues where the original left off
+		SweBank.tick();
+		loaded.tick();
+		for (String id : new String[] { "Ulrika", "Bob", "Carl" }) {
+			assertEquals(SweBank.getBalance(id), loaded.getBalance(id));
+		}
+	}
+}
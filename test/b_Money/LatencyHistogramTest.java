@@ -0,0 +1,50 @@
+package b_Money;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Unit tests for the LatencyHistogram class.
+ */
+public class LatencyHistogramTest {
+	/**
+	 * Test case for an empty histogram.
+	 */
+	@Test
+	public void testEmpty() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.count());
+		assertEquals(0, histogram.percentile(99));
+	}
+
+	/**
+	 * Test case for percentiles, which must be exact for small values and
+	 * within 1/16 above the true value otherwise.
+	 */
+	@Test
+	public void testPercentile() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long nanos = 1; nanos <= 1000; nanos++) {
+			histogram.record(nanos);
+		}
+		assertEquals(1000, histogram.count());
+		assertEquals(1, histogram.percentile(0));
+		assertEquals(10, histogram.percentile(1));
+		long p50 = histogram.percentile(50);
+		assertTrue(p50 >= 500 && p50 <= 500 + 500 / 16);
+		long p100 = histogram.percentile(100);
+		assertTrue(p100 >= 1000 && p100 <= 1000 + 1000 / 16);
+	}
+
+	/**
+	 * Test case for extreme values.
+	 */
+	@Test
+	public void testExtremes() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(-5);
+		histogram.record(Long.MAX_VALUE);
+		assertEquals(0, histogram.percentile(50));
+		assertEquals(Long.MAX_VALUE, histogram.percentile(100));
+	}
+}
@@ -0,0 +1,230 @@
+package b_Money;
+
+import static org.junit.Assert.*;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for the LedgerIngest class.
+ */
+public class LedgerIngestTest {
+	Currency SEK;
+	Bank SweBank;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Setup method to initialize test data before each test case.
+	 *
+	 * @throws Exception If an exception occurs during setup.
+	 */
+	@Before
+	public void setUp() throws Exception {
+		SEK = new Currency("SEK", 0.15);
+		SweBank = new Bank("SweBank", SEK);
+		SweBank.openAccount("Ulrika");
+	}
+
+	private Path csv(String text) throws IOException {
+		Path file = folder.newFile().toPath();
+		Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+
+	/**
+	 * Test case for a CSV file with every row type, comments and rejected rows.
+	 *
+	 * @throws Exception If the file cannot be read.
+	 */
+	@Test
+	public void testReadCsv() throws Exception {
+		Path file = csv("# opening balances\r\n"
+				+ "open,Bob,1000\r\n"
+				+ "open,Ulrika,5000\r\n"
+				+ "\r\n"
+				+ "deposit,Ulrika,700\n"
+				+ "withdraw,Bob,200\n"
+				+ "transfer,Ulrika,Bob,300\n"
+				+ "transfer,Ulrika,Nobody,300\n"
+				+ "deposit,Nobody,10\n"
+				+ "deposit,Bob,-50");
+		LedgerIngest ingest = new LedgerIngest(SweBank);
+		assertEquals(5, ingest.readCsv(file));
+		assertEquals(3, ingest.getRejected());
+		assertEquals(Integer.valueOf(400), SweBank.getBalance("Ulrika"));
+		assertEquals(Integer.valueOf(1050), SweBank.getBalance("Bob"));
+	}
+
+	/**
+	 * Test case for withdrawals and transfers from accounts with limits:
+	 * each is checked in row order, and rows breaking the limits are rejected.
+	 *
+	 * @throws Exception If the file cannot be read.
+	 */
+	@Test
+	public void testLimits() throws Exception {
+		SweBank.openAccount("Bob");
+		SweBank.setLimits("Ulrika", new AccountLimits(new Money(0, SEK), new Money(50, SEK)));
+		SweBank.setLimits("Bob", new AccountLimits(new Money(0, SEK), null));
+		Path file = csv("deposit,Ulrika,100\n"
+				+ "withdraw,Ulrika,30\n"
+				+ "withdraw,Ulrika,500\n"
+				+ "transfer,Ulrika,Bob,700\n"
+				+ "transfer,Ulrika,Bob,30\n"
+				+ "transfer,Ulrika,Bob,20\n"
+				+ "withdraw,Bob,21\n"
+				+ "deposit,Bob,1\n"
+				+ "withdraw,Bob,21\n");
+		LedgerIngest ingest = new LedgerIngest(SweBank);
+		assertEquals(5, ingest.readCsv(file));
+		assertEquals(4, ingest.getRejected());
+		assertEquals(Integer.valueOf(50), SweBank.getBalance("Ulrika"));
+		assertEquals(Integer.valueOf(0), SweBank.getBalance("Bob"));
+	}
+
+	/**
+	 * Test case for matching applying rows one by one, with lines straddling
+	 * the read buffer and many small batches.
+	 *
+	 * @throws Exception If the file cannot be read.
+	 */
+	@Test
+	public void testMatchesRowByRow() throws Exception {
+		Bank expected = new Bank("SweBank", SEK);
+		StringBuilder text = new StringBuilder();
+		Random random = new Random(3);
+		for (int i = 0; i < 3000; i++) {
+			text.append("open,account").append(i).append(',').append(i).append('\n');
+			expected.openAccount("account" + i);
+			expected.deposit("account" + i, new Money(i, SEK));
+		}
+		for (int i = 0; i < 20000; i++) {
+			String from = "account" + random.nextInt(3000), to = "account" + random.nextInt(3000);
+			int amount = random.nextInt(1000);
+			text.append("transfer,").append(from).append(',').append(to).append(',').append(amount).append('\n');
+			expected.transfer(from, to, new Money(amount, SEK));
+		}
+		LedgerIngest ingest = new LedgerIngest(SweBank, 7, 64);
+		assertEquals(23000, ingest.readCsv(csv(text.toString())));
+		for (int i = 0; i < 3000; i++) {
+			assertEquals(expected.getBalance("account" + i), SweBank.getBalance("account" + i));
+		}
+	}
+
+	/**
+	 * Test case for a malformed line, which must stop the ingest after the rows before it.
+	 *
+	 * @throws Exception If the balance cannot be read.
+	 */
+	@Test
+	public void testMalformedCsv() throws Exception {
+		Path file = csv("deposit,Ulrika,100\ndeposit,Ulrika,1x0\ndeposit,Ulrika,100\n");
+		try {
+			new LedgerIngest(SweBank).readCsv(file);
+			fail("Expected IOException");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("line 2"));
+		}
+		assertEquals(Integer.valueOf(100), SweBank.getBalance("Ulrika"));
+	}
+
+	/**
+	 * Test case for a binary file.
+	 *
+	 * @throws Exception If the file cannot be read.
+	 */
+	@Test
+	public void testReadBinary() throws Exception {
+		Path file = folder.newFile().toPath();
+		try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+			record(out, LedgerIngest.OPEN, "Bob", "", 1000);
+			record(out, LedgerIngest.DEPOSIT, "Ulrika", "", 500);
+			record(out, LedgerIngest.TRANSFER, "Bob", "Ulrika", 250);
+			record(out, LedgerIngest.WITHDRAW, "Nobody", "", 10);
+		}
+		LedgerIngest ingest = new LedgerIngest(SweBank);
+		assertEquals(3, ingest.readBinary(file, 8));
+		assertEquals(1, ingest.getRejected());
+		assertEquals(Integer.valueOf(750), SweBank.getBalance("Ulrika"));
+		assertEquals(Integer.valueOf(750), SweBank.getBalance("Bob"));
+	}
+
+	/**
+	 * Test case for a binary file ending in a partial record.
+	 *
+	 * @throws Exception If the file cannot be written.
+	 */
+	@Test(expected = IOException.class)
+	public void testTruncatedBinary() throws Exception {
+		Path file = folder.newFile().toPath();
+		try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+			record(out, LedgerIngest.DEPOSIT, "Ulrika", "", 500);
+			out.writeByte(LedgerIngest.DEPOSIT);
+		}
+		new LedgerIngest(SweBank).readBinary(file, 8);
+	}
+
+	private static void record(DataOutputStream out, byte type, String from, String to, long amount) throws IOException {
+		out.writeByte(type);
+		out.write(Arrays.copyOf(from.getBytes(StandardCharsets.UTF_8), 8));
+		out.write(Arrays.copyOf(to.getBytes(StandardCharsets.UTF_8), 8));
+		out.writeLong(amount);
+	}
+
+	/**
+	 * Test case for balance snapshots opened while transfers are ingested:
+	 * every view must add up to the money supply.
+	 *
+	 * @throws Exception If the file cannot be read.
+	 */
+	@Test
+	public void testSnapshotDuringIngest() throws Exception {
+		final int accounts = 32;
+		for (int i = 0; i < accounts; i++) {
+			SweBank.openAccount("acc" + i);
+			SweBank.deposit("acc" + i, new Money(10000, SEK));
+		}
+		final long supply = accounts * 10000L;
+		StringBuilder text = new StringBuilder();
+		Random random = new Random(5);
+		for (int i = 0; i < 100000; i++) {
+			text.append("transfer,acc").append(random.nextInt(accounts)).append(",acc").append(random.nextInt(accounts)).append(',').append(random.nextInt(100)).append('\n');
+		}
+		Path file = csv(text.toString());
+		AtomicBoolean running = new AtomicBoolean(true);
+		ExecutorService pool = Executors.newSingleThreadExecutor();
+		Future<Long> views = pool.submit(() -> {
+			long count = 0;
+			while (running.get()) {
+				try (BalanceSnapshot view = SweBank.snapshotBalances()) {
+					assertEquals(supply, view.total().getAmountLong());
+				}
+				count++;
+			}
+			return count;
+		});
+		try {
+			for (int pass = 0; pass < 5; pass++) {
+				assertEquals(100000, new LedgerIngest(SweBank, 64, 1 << 12).readCsv(file));
+			}
+		} finally {
+			running.set(false);
+			assertTrue(views.get() > 0);
+			pool.shutdown();
+		}
+	}
+}
@@ -125,4 +125,52 @@ public class MoneyTest {
 		Money eur10ConvertedToSEK = new Money(eur10InSEK, SEK);
 		assertTrue(SEK200.compareTo(eur10ConvertedToSEK) > 0);
 	}
+
+	/**
+	 * Test case for the unboxed accessors.
+	 */
+	@Test
+	public void testPrimitiveAccessors() {
+		assertEquals(10000L, SEK100.getAmountLong());
+		assertEquals(1500L, SEK100.universalValueLong());
+		assertTrue(SEK0.isZeroPrimitive());
+		assertFalse(SEK100.isZeroPrimitive());
+	}
+
+	/**
+	 * Test case for amounts that do not fit in an int.
+	 */
+	@Test
+	public void testLongAmounts() {
+		Money large = new Money(Integer.MAX_VALUE, SEK).add(SEK100);
+		assertEquals(Integer.MAX_VALUE + 10000L, large.getAmountLong());
+		assertEquals(SEK100, large.sub(new Money(Integer.MAX_VALUE, SEK)));
+	}
+
+	/**
+	 * Test case for overflowing arithmetic being rejected.
+	 */
+	@Test(expected = ArithmeticException.class)
+	public void testAddOverflow() {
+		new Money(Long.MAX_VALUE, SEK).add(new Money(1, SEK));
+	}
+
+	/**
+	 * Test case for conversions following exchange rate changes.
+	 */
+	@Test
+	public void testAddAfterRateChange() {
+		EUR.setRate(3.0);
+		assertEquals(10000 + 10000, SEK100.add(EUR10).getAmount().intValue());
+	}
+
+	/**
+	 * Test case for large amounts that a double universal value would make compare equal.
+	 */
+	@Test
+	public void testCompareToLargeAmounts() {
+		Currency ONE = new Currency("ONE", 1.0);
+		assertTrue(new Money(9007199254740993L, ONE).compareTo(new Money(9007199254740992L, ONE)) > 0);
+		assertTrue(new Money(Long.MAX_VALUE, SEK).compareTo(new Money(Long.MAX_VALUE - 7, SEK)) > 0);
+	}
 }
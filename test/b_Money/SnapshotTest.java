@@ -0,0 +1,176 @@
+package b_Money;
+
+import static org.junit.Assert.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for the Snapshot class.
+ */
+public class SnapshotTest {
+	Currency SEK, DKK;
+	Bank SweBank, DanskeBank;
+	Map<String, Currency> currencies;
+	Map<String, Bank> banks;
+	Path file;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Setup method to initialize test data before each test case.
+	 *
+	 * @throws Exception If an exception occurs during setup.
+	 */
+	@Before
+	public void setUp() throws Exception {
+		SEK = new Currency("SEK", 0.15);
+		DKK = new Currency("DKK", 0.20);
+		currencies = new HashMap<>();
+		currencies.put("SEK", SEK);
+		currencies.put("DKK", DKK);
+		SweBank = new Bank("SweBank", SEK);
+		DanskeBank = new Bank("DanskeBank", DKK);
+		banks = new HashMap<>();
+		banks.put("DanskeBank", DanskeBank);
+		SweBank.openAccount("Ulrika");
+		SweBank.openAccount("Bob");
+		DanskeBank.openAccount("Gertrud");
+		SweBank.deposit("Ulrika", new Money(10000, SEK));
+		SweBank.addTimedPayment("Ulrika", "rent", 2, 1, new Money(1000, SEK), SweBank, "Bob");
+		SweBank.addTimedPayment("Ulrika", "gift", 0, 0, new Money(100, DKK), DanskeBank, "Gertrud");
+		SweBank.tick();
+		file = folder.getRoot().toPath().resolve("swebank.snapshot");
+	}
+
+	/**
+	 * Test case for writing and loading a snapshot.
+	 *
+	 * @throws Exception If an operation fails.
+	 */
+	@Test
+	public void testWriteLoad() throws Exception {
+		Snapshot snapshot = Snapshot.capture(SweBank);
+		assertEquals(2, snapshot.accounts());
+		snapshot.write(file);
+		Bank loaded = Snapshot.load(file, banks, currencies);
+
+		assertEquals("SweBank", loaded.getName());
+		assertSame(SEK, loaded.getCurrency());
+		assertEquals(SweBank.getBalance("Ulrika"), loaded.getBalance("Ulrika"));
+		assertEquals(SweBank.getBalance("Bob"), loaded.getBalance("Bob"));
+
+		// The loaded payments fall due at the same ticks as the original ones
+		for (int i = 0; i < 5; i++) {
+			SweBank.tick();
+			loaded.tick();
+			assertEquals(SweBank.getBalance("Ulrika"), loaded.getBalance("Ulrika"));
+			assertEquals(SweBank.getBalance("Bob"), loaded.getBalance("Bob"));
+		}
+	}
+
+	/**
+	 * Test case for a write replacing a partial file left by a crash.
+	 *
+	 * @throws Exception If an operation fails.
+	 */
+	@Test
+	public void testWriteOverPartial() throws Exception {
+		Path partial = file.resolveSibling(file.getFileName() + ".partial");
+		Files.write(partial, new byte[1 << 16]);
+		Snapshot.capture(SweBank).write(file);
+		assertFalse(Files.exists(partial));
+		Bank loaded = Snapshot.load(file, banks, currencies);
+		assertEquals(SweBank.getBalance("Ulrika"), loaded.getBalance("Ulrika"));
+		assertEquals(SweBank.getBalance("Bob"), loaded.getBalance("Bob"));
+	}
+
+	/**
+	 * Test case for writing a snapshot in the background.
+	 *
+	 * @throws Exception If an operation fails.
+	 */
+	@Test
+	public void testWriteInBackground() throws Exception {
+		Snapshot.writeInBackground(SweBank, file).get();
+		SweBank.deposit("Bob", new Money(500, SEK));
+		Bank loaded = Snapshot.load(file, banks, currencies);
+		assertEquals(Integer.valueOf(0), loaded.getBalance("Bob"));
+		assertEquals(SweBank.getBalance("Ulrika"), loaded.getBalance("Ulrika"));
+	}
+
+	/**
+	 * Test case for account limits surviving a snapshot.
+	 *
+	 * @throws Exception If an operation fails.
+	 */
+	@Test
+	public void testLimits() throws Exception {
+		SweBank.setLimits("Ulrika", new AccountLimits(new Money(-500, SEK), null));
+		SweBank.setLimits("Bob", new AccountLimits(null, new Money(100, DKK)));
+		Snapshot.capture(SweBank).write(file);
+		Bank loaded = Snapshot.load(file, banks, currencies);
+		assertEquals(new Money(-500, SEK), loaded.getLimits("Ulrika").getFloor());
+		assertNull(loaded.getLimits("Ulrika").getPerTick());
+		assertNull(loaded.getLimits("Bob").getFloor());
+		assertEquals(new Money(100, DKK), loaded.getLimits("Bob").getPerTick());
+		try {
+			loaded.withdraw("Ulrika", loaded.findBalance("Ulrika").add(new Money(501, SEK)));
+			fail("Expected LimitExceededException");
+		} catch (LimitExceededException e) {
+		}
+	}
+
+	/**
+	 * Test case for bringing a loaded snapshot up to date from the journal
+	 * when the snapshot was captured while transfers were running.
+	 *
+	 * @throws Exception If an operation fails.
+	 */
+	@Test
+	public void testReplayAfterCaptureDuringTransfers() throws Exception {
+		Bank bank = new Bank("Nordea", SEK);
+		String[] ids = new String[16];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = "Account" + i;
+			bank.openAccount(ids[i]);
+			bank.deposit(ids[i], new Money(1000, SEK));
+		}
+		Path journal = folder.getRoot().toPath().resolve("nordea.journal");
+		try (Journal log = new Journal(journal, Journal.Durability.BUFFERED, 1)) {
+			bank.setJournal(log);
+			Thread[] threads = new Thread[3];
+			for (int t = 0; t < threads.length; t++) {
+				Random random = new Random(t);
+				threads[t] = new Thread(() -> {
+					try {
+						for (int i = 0; i < 20000; i++) {
+							bank.transfer(ids[random.nextInt(ids.length)], ids[random.nextInt(ids.length)], new Money(random.nextInt(50), SEK));
+						}
+					} catch (AccountDoesNotExistException e) {
+						throw new IllegalStateException(e);
+					}
+				});
+				threads[t].start();
+			}
+			Thread.sleep(5);
+			Snapshot.capture(bank).write(file);
+			for (Thread thread : threads) {
+				thread.join();
+			}
+		}
+		bank.setJournal(null);
+		Bank loaded = Snapshot.load(file, banks, currencies);
+		Journal.replay(journal, file, loaded, banks, currencies);
+		for (String id : ids) {
+			assertEquals(bank.getBalance(id), loaded.getBalance(id));
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package b_Money;
+
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the TimedPaymentSchedule class.
+ */
+public class TimedPaymentScheduleTest {
+	Currency SEK;
+	Bank SweBank;
+	Account account;
+	TimedPaymentSchedule schedule;
+
+	/**
+	 * Setup method to initialize test data before each test case.
+	 *
+	 * @throws Exception If an exception occurs during setup.
+	 */
+	@Before
+	public void setUp() throws Exception {
+		SEK = new Currency("SEK", 0.15);
+		SweBank = new Bank("SweBank", SEK);
+		account = new Account("Ulrika", SEK);
+		schedule = new TimedPaymentSchedule();
+	}
+
+	/**
+	 * Test case for payments only being returned at the tick they are due.
+	 */
+	@Test
+	public void testAdvance() {
+		Account.TimedPayment rent = account.putTimedPayment("rent", 1, 0, new Money(100, SEK), SweBank, "Bob");
+		Account.TimedPayment food = account.putTimedPayment("food", 1, 0, new Money(100, SEK), SweBank, "Bob");
+		schedule.schedule(rent, 2);
+		schedule.schedule(food, 3);
+		assertEquals(2, schedule.size());
+
+		assertNull(schedule.advance());
+		ArrayList<Account.TimedPayment> due = schedule.advance();
+		assertEquals(1, due.size());
+		assertSame(rent, due.get(0));
+		assertSame(food, schedule.advance().get(0));
+		assertEquals(3, schedule.now());
+		assertEquals(0, schedule.size());
+	}
+
+	/**
+	 * Test case for removed and replaced payments being cancelled.
+	 */
+	@Test
+	public void testCancel() {
+		Account.TimedPayment rent = account.putTimedPayment("rent", 1, 0, new Money(100, SEK), SweBank, "Bob");
+		Account.TimedPayment replacement = account.putTimedPayment("rent", 1, 0, new Money(200, SEK), SweBank, "Bob");
+		assertTrue(rent.isCancelled());
+		assertFalse(replacement.isCancelled());
+		account.removeTimedPayment("rent");
+		assertTrue(replacement.isCancelled());
+	}
+}
@@ -0,0 +1,130 @@
+package b_Money;
+
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the TransferPipeline class.
+ */
+public class TransferPipelineTest {
+	Currency SEK, DKK;
+	Bank SweBank, DanskeBank;
+	TransferPipeline pipeline;
+
+	/**
+	 * Setup method to initialize test data before each test case.
+	 *
+	 * @throws Exception If an exception occurs during setup.
+	 */
+	@Before
+	public void setUp() throws Exception {
+		SEK = new Currency("SEK", 0.15);
+		DKK = new Currency("DKK", 0.20);
+		SweBank = new Bank("SweBank", SEK);
+		DanskeBank = new Bank("DanskeBank", DKK);
+		SweBank.openAccount("Ulrika");
+		SweBank.openAccount("Bob");
+		DanskeBank.openAccount("Gertrud");
+		SweBank.deposit("Ulrika", new Money(10000, SEK));
+		pipeline = new TransferPipeline(4, 16);
+	}
+
+	/**
+	 * Stops the pipeline after each test case.
+	 */
+	@After
+	public void tearDown() {
+		pipeline.close();
+	}
+
+	/**
+	 * Test case for transfers within a bank and to another currency.
+	 *
+	 * @throws Exception If a transfer fails.
+	 */
+	@Test
+	public void testSubmit() throws Exception {
+		pipeline.submit(SweBank, "Ulrika", SweBank, "Bob", new Money(1000, SEK)).get();
+		pipeline.submit(SweBank, "Ulrika", DanskeBank, "Gertrud", new Money(2000, SEK)).get();
+		assertEquals(Integer.valueOf(7000), SweBank.getBalance("Ulrika"));
+		assertEquals(Integer.valueOf(1000), SweBank.getBalance("Bob"));
+		assertEquals(Integer.valueOf(1500), DanskeBank.getBalance("Gertrud"));
+	}
+
+	/**
+	 * Test case for a transfer involving a missing account, which must move no money.
+	 *
+	 * @throws Exception If the balance cannot be read.
+	 */
+	@Test
+	public void testSubmitMissingAccount() throws Exception {
+		CompletableFuture<Void> result = pipeline.submit(SweBank, "Ulrika", DanskeBank, "Nobody", new Money(1000, SEK));
+		try {
+			result.get();
+			fail("Expected AccountDoesNotExistException");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof AccountDoesNotExistException);
+		}
+		assertEquals(Integer.valueOf(10000), SweBank.getBalance("Ulrika"));
+	}
+
+	/**
+	 * Test case for many producers on a small pipeline; every transfer must
+	 * complete and the total must be conserved.
+	 *
+	 * @throws Exception If a transfer fails.
+	 */
+	@Test
+	public void testConcurrentSubmit() throws Exception {
+		final int accounts = 32;
+		for (int i = 0; i < accounts; i++) {
+			SweBank.openAccount("acc" + i);
+			SweBank.deposit("acc" + i, new Money(10000, SEK));
+		}
+		ExecutorService producers = Executors.newFixedThreadPool(4);
+		List<Future<?>> results = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			final long seed = t;
+			results.add(producers.submit(() -> {
+				Random random = new Random(seed);
+				List<CompletableFuture<Void>> transfers = new ArrayList<>();
+				for (int i = 0; i < 5000; i++) {
+					transfers.add(pipeline.submit(SweBank, "acc" + random.nextInt(accounts), SweBank, "acc" + random.nextInt(accounts), new Money(random.nextInt(100), SEK)));
+				}
+				CompletableFuture.allOf(transfers.toArray(new CompletableFuture<?>[0])).get();
+				return null;
+			}));
+		}
+		for (Future<?> result : results) {
+			result.get();
+		}
+		producers.shutdown();
+
+		int total = 0;
+		for (int i = 0; i < accounts; i++) {
+			total += SweBank.getBalance("acc" + i);
+		}
+		assertEquals(accounts * 10000, total);
+	}
+
+	/**
+	 * Test case for submitting to a closed pipeline.
+	 *
+	 * @throws InterruptedException If interrupted while submitting.
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testSubmitAfterClose() throws InterruptedException {
+		pipeline.close();
+		pipeline.submit(SweBank, "Ulrika", SweBank, "Bob", new Money(1000, SEK));
+	}
+}